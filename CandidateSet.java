@@ -0,0 +1,119 @@
+// The secrets a round still allows, given everything the player has been
+// told so far: an interval plus the set of last digits still possible.
+//
+// Everything the game tells a player is either a bound (too low, too high,
+// proximity bands, halves, thirds, distance) or a fact about the last digit
+// (parity, last digit), so an interval [low, high] and a 10-bit mask of
+// residues mod 10 hold it in a few fields however wide the range. Updates and
+// size() are O(1): bounds are trimmed to the nearest allowed digit, at most
+// nine steps, and counting is whole decades times the digits allowed plus the
+// two partial decades at the ends.
+//
+// A fact that would split the interval in two (a distance hint ruling out
+// the numbers around a guess in the middle) is kept only when the part ruled
+// out touches an end and dropped otherwise, so the set may hold candidates
+// the player could rule out, but never loses one that is still possible.
+public class CandidateSet {
+    static final int ALL_DIGITS = (1 << 10) - 1;
+    static final int EVEN = 0b0101010101;
+    static final int ODD = ALL_DIGITS & ~EVEN;
+
+    private long low;
+    private long high;
+    private int digits; // bit d set: numbers x with floorMod(x, 10) == d are still possible
+
+    CandidateSet(long min, long max) {
+        reset(min, max);
+    }
+
+    // Everything in min..max is possible again
+    void reset(long min, long max) {
+        low = min;
+        high = max;
+        digits = ALL_DIGITS;
+    }
+
+    // Put back a set saved from low(), high() and allowedDigits()
+    void set(long low, long high, int digits) {
+        this.low = low;
+        this.high = high;
+        this.digits = digits & ALL_DIGITS;
+        trim();
+    }
+
+    // Become a copy of other
+    void copyFrom(CandidateSet other) {
+        low = other.low;
+        high = other.high;
+        digits = other.digits;
+    }
+
+    // The secret is in from..to
+    void within(long from, long to) {
+        low = Math.max(low, from);
+        high = Math.min(high, to);
+        trim();
+    }
+
+    // The secret is not in from..to; only kept when that cuts off an end
+    void outside(long from, long to) {
+        if (from <= low) {
+            low = Math.max(low, to + 1);
+        } else if (to >= high) {
+            high = Math.min(high, from - 1);
+        }
+        trim();
+    }
+
+    // The secret's last digit, as floorMod(secret, 10), is one of these bits
+    void digits(int allowed) {
+        digits &= allowed;
+        trim();
+    }
+
+    boolean contains(long x) {
+        return x >= low && x <= high && (digits >>> Math.floorMod(x, 10) & 1) != 0;
+    }
+
+    long size() {
+        return low > high ? 0 : atMost(high) - atMost(low - 1);
+    }
+
+    boolean isEmpty() {
+        return low > high;
+    }
+
+    // Smallest and largest candidates; meaningless when empty
+    long low() {
+        return low;
+    }
+
+    long high() {
+        return high;
+    }
+
+    int allowedDigits() {
+        return digits;
+    }
+
+    // Candidates up to n, counted from an arbitrary origin that cancels out in size()
+    private long atMost(long n) {
+        int partial = Math.floorMod(n, 10);
+        return Math.floorDiv(n, 10) * Integer.bitCount(digits)
+                + Integer.bitCount(digits & ((2 << partial) - 1));
+    }
+
+    // Move both bounds onto allowed digits, or leave the set empty
+    private void trim() {
+        if (digits == 0) {
+            high = low - 1;
+            return;
+        }
+        while (low <= high && (digits >>> Math.floorMod(low, 10) & 1) == 0) {
+            low++;
+        }
+        while (high >= low && (digits >>> Math.floorMod(high, 10) & 1) == 0) {
+            high--;
+        }
+    }
+}
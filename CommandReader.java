@@ -0,0 +1,393 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+// Console input, read as bytes into a reusable buffer and decoded in place.
+//
+// Stands in for the Scanner the console used to read with, call for call:
+//   command()      nextLine().trim().toUpperCase(), then "Q", "H" or
+//                  Integer.parseInt
+//   nextInt()      hasNextInt() ? nextInt() : next()
+//   nextWordIs()   next().toUpperCase().equals(...)
+//   skipLine()     nextLine()
+// and gives the same answers for every line: the same line ends (\n, \r\n,
+// \r, U+0085, U+2028, U+2029), the same token delimiters, the same numbers
+// accepted and rejected, and NoSuchElementException once input runs out.
+//
+// Plain ASCII, which is nearly all input, is decoded without allocating or
+// throwing. A line or token holding other bytes is decoded as UTF-8 and
+// handled with the JDK's own rules (Character.digit, Character.isWhitespace,
+// a Scanner over the one token for locale-formatted numbers), so Unicode
+// digits and grouping separators still behave as they did.
+public class CommandReader {
+    // What a line holds
+    enum Command { NUMBER, HINT, QUIT, OTHER }
+
+    // What parseInt(byte[], int, int) returns for text that isn't an int
+    static final long NOT_AN_INT = Long.MIN_VALUE;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int pos = 0;
+    private int end = 0;
+    private boolean eof = false;
+    private boolean afterCr = false; // a \r ended the last line; skip a \n right after it
+
+    // The current line or token, copied out of the buffer
+    private byte[] line = new byte[128];
+    private int length = 0;
+    private int from; // the trimmed command within 'line'
+    private int to;
+
+    private int number;
+    private BigInteger bigNumber;
+
+    CommandReader(InputStream in) {
+        this(in, 8192);
+    }
+
+    CommandReader(InputStream in, int capacity) {
+        this.in = in;
+        this.buffer = new byte[capacity];
+    }
+
+    // Read a line as a round command. Surrounding blanks and case are ignored.
+    Command command() {
+        readLine();
+        from = 0;
+        to = length;
+        while (from < to && (line[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (line[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        if (to - from == 1) {
+            byte b = line[from];
+            if (b == 'Q' || b == 'q') {
+                return Command.QUIT;
+            }
+            if (b == 'H' || b == 'h') {
+                return Command.HINT;
+            }
+        }
+        return parseInt(from, to) ? Command.NUMBER : Command.OTHER;
+    }
+
+    // Read a line as a round command in large range mode; numbers go to bigNumber()
+    Command bigCommand() {
+        Command command = command();
+        if (command != Command.OTHER) {
+            if (command == Command.NUMBER) {
+                bigNumber = BigInteger.valueOf(number);
+            }
+            return command;
+        }
+        // Only lines too long for an int get this far
+        if (!digits(from, to)) {
+            return Command.OTHER;
+        }
+        bigNumber = new BigInteger(new String(line, from, to - from, StandardCharsets.UTF_8));
+        return Command.NUMBER;
+    }
+
+    // The number from the last NUMBER or nextInt()
+    int number() {
+        return number;
+    }
+
+    BigInteger bigNumber() {
+        return bigNumber;
+    }
+
+    // Take the next token, skipping blanks and line ends. Returns true and
+    // sets number() if it is an int, else drops it and returns false.
+    boolean nextInt() {
+        nextToken();
+        if (ascii(0, length) && digits(0, length)) {
+            return parseInt(0, length); // false only when out of range
+        }
+        // Anything else, such as grouping separators, by the Scanner's own locale rules
+        Scanner token = new Scanner(new String(line, 0, length, StandardCharsets.UTF_8));
+        if (!token.hasNextInt()) {
+            return false;
+        }
+        number = token.nextInt();
+        return true;
+    }
+
+    // Same as nextInt() for numbers of any size, into bigNumber()
+    boolean nextBigInteger() {
+        nextToken();
+        if (ascii(0, length) && digits(0, length)) {
+            bigNumber = new BigInteger(new String(line, 0, length, StandardCharsets.US_ASCII));
+            return true;
+        }
+        Scanner token = new Scanner(new String(line, 0, length, StandardCharsets.UTF_8));
+        if (!token.hasNextBigInteger()) {
+            return false;
+        }
+        bigNumber = token.nextBigInteger();
+        return true;
+    }
+
+    // Take the next token; true if it is this single letter, in either case
+    boolean nextWordIs(char letter) {
+        nextToken();
+        return length == 1 && Character.toUpperCase((char) line[0]) == letter;
+    }
+
+    // Drop the rest of the current line
+    void skipLine() {
+        readLine();
+    }
+
+    // Copy the rest of the current line into 'line', without its terminator
+    private void readLine() {
+        length = 0;
+        boolean any = false;
+        while (true) {
+            if (pos == end && !fill()) {
+                if (!any) {
+                    throw new NoSuchElementException("No line found");
+                }
+                return;
+            }
+            byte b = buffer[pos++];
+            if (afterCr) {
+                afterCr = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            any = true;
+            if (b == '\n') {
+                return;
+            }
+            if (b == '\r') {
+                afterCr = true;
+                return;
+            }
+            append(b);
+            // U+0085, U+2028 and U+2029 end a line too; they only ever arrive
+            // as the last bytes of a complete character
+            if (length >= 2 && line[length - 2] == (byte) 0xC2 && line[length - 1] == (byte) 0x85) {
+                length -= 2;
+                return;
+            }
+            if (length >= 3 && line[length - 3] == (byte) 0xE2 && line[length - 2] == (byte) 0x80
+                    && (line[length - 1] == (byte) 0xA8 || line[length - 1] == (byte) 0xA9)) {
+                length -= 3;
+                return;
+            }
+        }
+    }
+
+    // Copy the next whitespace-delimited token into 'line', leaving the
+    // delimiter after it unread
+    private void nextToken() {
+        afterCr = false;
+        // Skip delimiters, which may be non-ASCII whitespace
+        while (true) {
+            if (pos == end && !fill()) {
+                throw new NoSuchElementException();
+            }
+            int b = buffer[pos] & 0xFF;
+            if (b < 0x80) {
+                if (!asciiWhitespace(b)) {
+                    break;
+                }
+                pos++;
+            } else {
+                int width = whitespaceWidth();
+                if (width == 0) {
+                    break;
+                }
+                pos += width;
+            }
+        }
+
+        length = 0;
+        while (pos < end || fill()) {
+            int b = buffer[pos] & 0xFF;
+            if (b < 0x80) {
+                if (asciiWhitespace(b)) {
+                    return;
+                }
+            } else if (whitespaceWidth() > 0) {
+                return;
+            }
+            append((byte) b);
+            pos++;
+        }
+    }
+
+    // Length in bytes of the whitespace character starting at pos, 0 if it isn't one
+    private int whitespaceWidth() {
+        int lead = buffer[pos] & 0xFF;
+        int width = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        if (width == 1) {
+            return 0; // stray continuation byte, decodes to U+FFFD
+        }
+        if (end - pos < width) {
+            compact();
+            fillMore(width);
+            if (end - pos < width) {
+                return 0;
+            }
+        }
+        String character = new String(buffer, pos, width, StandardCharsets.UTF_8);
+        return character.length() > 0 && Character.isWhitespace(character.codePointAt(0))
+                && character.codePointCount(0, character.length()) == 1 ? width : 0;
+    }
+
+    // Integer.parseInt over line[from, to), without the exception
+    private boolean parseInt(int from, int to) {
+        if (!ascii(from, to)) {
+            String text = new String(line, from, to - from, StandardCharsets.UTF_8);
+            return parseInt(text);
+        }
+        long value = parseInt(line, from, to);
+        if (value == NOT_AN_INT) {
+            return false;
+        }
+        number = (int) value;
+        return true;
+    }
+
+    // Integer.parseInt over bytes[from, to) read as ASCII, without the String
+    // or the exception: NOT_AN_INT where parseInt would throw. Any byte past
+    // ASCII makes it not a number, as the U+FFFD it decodes to would.
+    static long parseInt(byte[] bytes, int from, int to) {
+        if (from == to) {
+            return NOT_AN_INT;
+        }
+        boolean negative = bytes[from] == '-';
+        if (negative || bytes[from] == '+') {
+            from++;
+            if (from == to) {
+                return NOT_AN_INT;
+            }
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_AN_INT;
+            }
+            value = value * 10 + digit;
+            if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                return NOT_AN_INT;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    // The same for text holding non-ASCII digits, by parseInt's own rules
+    private boolean parseInt(String text) {
+        int i = 0;
+        boolean negative = false;
+        if (!text.isEmpty() && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == text.length()) {
+            return false;
+        }
+        long value = 0;
+        for (; i < text.length(); i++) {
+            int digit = Character.digit(text.charAt(i), 10);
+            if (digit < 0) {
+                return false;
+            }
+            value = value * 10 + digit;
+            if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                return false;
+            }
+        }
+        number = (int) (negative ? -value : value);
+        return true;
+    }
+
+    // Whether line[from, to) is a sign and digits, as new BigInteger(String) accepts
+    private boolean digits(int from, int to) {
+        String text = ascii(from, to) ? null : new String(line, from, to - from, StandardCharsets.UTF_8);
+        int n = text == null ? to - from : text.length();
+        int i = 0;
+        if (n > 0) {
+            char first = text == null ? (char) line[from] : text.charAt(0);
+            if (first == '-' || first == '+') {
+                i = 1;
+            }
+        }
+        if (i == n) {
+            return false;
+        }
+        for (; i < n; i++) {
+            char c = text == null ? (char) line[from + i] : text.charAt(i);
+            if (Character.digit(c, 10) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean ascii(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Character.isWhitespace for ASCII
+    private static boolean asciiWhitespace(int b) {
+        return (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x20);
+    }
+
+    private void append(byte b) {
+        if (length == line.length) {
+            byte[] bigger = new byte[line.length * 2];
+            System.arraycopy(line, 0, bigger, 0, length);
+            line = bigger;
+        }
+        line[length++] = b;
+    }
+
+    // Refill an empty buffer. False at end of input.
+    private boolean fill() {
+        pos = 0;
+        end = 0;
+        return fillMore(1);
+    }
+
+    // Read until at least 'want' bytes from pos are buffered, or input ends
+    private boolean fillMore(int want) {
+        while (!eof && end - pos < want) {
+            int n;
+            try {
+                n = in.read(buffer, end, buffer.length - end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (n < 0) {
+                eof = true;
+            } else {
+                end += n;
+            }
+        }
+        return end > pos;
+    }
+
+    // Move unread bytes to the front to make room
+    private void compact() {
+        System.arraycopy(buffer, pos, buffer, 0, end - pos);
+        end -= pos;
+        pos = 0;
+    }
+}
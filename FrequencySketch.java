@@ -0,0 +1,73 @@
+// Approximate access counts for a cache's admission policy (TinyLFU).
+//
+// A count-min sketch of 4-bit counters, sixteen to a long. Each key bumps
+// one counter in each of four rows and its frequency is the smallest of the
+// four, so collisions can only overestimate. Counters stop at 15, which is
+// plenty to tell a hot key from a cold one. After 10 increments per cache
+// entry every counter is halved, so the counts follow what is popular now
+// rather than what was popular an hour ago.
+//
+// The table holds a counter per row for every cache entry, 8 bytes per
+// entry. Not thread-safe; the owner serializes access.
+public class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int size = Integer.highestOneBit(Math.max(8, capacity) - 1) << 1;
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = (int) Math.min(10L * Math.max(1, capacity), Integer.MAX_VALUE);
+    }
+
+    // Estimated recent accesses of the key with this hash, 0 to 15
+    int frequency(long hash) {
+        int start = (int) (hash & 3) << 2;
+        int frequency = 15;
+        for (int row = 0; row < 4; row++) {
+            int shift = (start + row) << 2;
+            frequency = Math.min(frequency, (int) (table[index(hash, row)] >>> shift) & 0xF);
+        }
+        return frequency;
+    }
+
+    // Count one access
+    void increment(long hash) {
+        int start = (int) (hash & 3) << 2;
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            int i = index(hash, row);
+            int shift = (start + row) << 2;
+            if (((table[i] >>> shift) & 0xF) != 0xF) {
+                table[i] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    // Halve every counter. Odd counters lose their half a count, which is taken off the total too.
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    private int index(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+}
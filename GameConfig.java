@@ -0,0 +1,94 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+
+// Everything that defines a round apart from its secret: the difficulty it
+// counts towards, the range, the attempts and hints allowed, and the base
+// points the score is a share of. Immutable, so one instance serves every
+// round played with it.
+//
+// The presets are built once from Difficulty. LARGE has none: large range
+// rounds are LargeRangeSessions with their own range. Custom configs are interned by
+// range, so calculateMaxGuesses and calculateHints run once per range rather
+// than once per game, and the same range always gives the same instance.
+// Interning stops at INTERN_LIMIT ranges; past that a custom config is built
+// fresh each time, which is what every game used to pay anyway.
+public final class GameConfig {
+    private static final int INTERN_LIMIT = 1 << 16;
+
+    private static final GameConfig[] presets = presets();
+    private static final ConcurrentHashMap<Long, GameConfig> custom = new ConcurrentHashMap<>();
+
+    final Main.Difficulty difficulty;
+    final int min;
+    final int max;
+    final int maxGuesses;
+    final int hints;
+    final int basePoints;
+
+    private GameConfig(Main.Difficulty difficulty, int min, int max, int maxGuesses, int hints, int basePoints) {
+        this.difficulty = difficulty;
+        this.min = min;
+        this.max = max;
+        this.maxGuesses = maxGuesses;
+        this.hints = hints;
+        this.basePoints = basePoints;
+    }
+
+    private static GameConfig[] presets() {
+        Main.Difficulty[] difficulties = Main.Difficulty.values();
+        GameConfig[] configs = new GameConfig[difficulties.length];
+        for (Main.Difficulty d : difficulties) {
+            if (d == Main.Difficulty.LARGE) {
+                continue;
+            }
+            configs[d.ordinal()] = new GameConfig(d, d.min, d.max, d.maxGuesses, d.hints, d.basePoints);
+        }
+        return configs;
+    }
+
+    // The settings a difficulty was declared with
+    static GameConfig of(Main.Difficulty difficulty) {
+        GameConfig config = presets[difficulty.ordinal()];
+        if (config == null) {
+            throw new IllegalArgumentException("No preset for " + difficulty + " rounds");
+        }
+        return config;
+    }
+
+    // A CUSTOM round over min..max; attempts and hints scale with the range
+    // and base points grow with it, up to 300
+    static GameConfig custom(int min, int max) {
+        Long key = ((long) min << 32) | (max & 0xFFFFFFFFL);
+        GameConfig config = custom.get(key);
+        if (config != null) {
+            return config;
+        }
+        int range = max - min + 1;
+        config = new GameConfig(Main.Difficulty.CUSTOM, min, max, Main.calculateMaxGuesses(range),
+                Main.calculateHints(range), Math.min(300, 50 + range / 2));
+        if (custom.size() >= INTERN_LIMIT) {
+            return config;
+        }
+        GameConfig raced = custom.putIfAbsent(key, config);
+        return raced != null ? raced : config;
+    }
+
+    // The config a round of this difficulty over min..max was played with
+    static GameConfig of(Main.Difficulty difficulty, int min, int max) {
+        return difficulty == Main.Difficulty.CUSTOM ? custom(min, max) : of(difficulty);
+    }
+
+    GameSession newSession(int secret, RandomGenerator random) {
+        return new GameSession(this, secret, random);
+    }
+
+    // Score for a round won in this many attempts: fewer attempts means a
+    // bigger share of the base points
+    int points(int attempts) {
+        return Main.calculatePoints(maxGuesses, basePoints, attempts);
+    }
+
+    boolean isCustom() {
+        return difficulty == Main.Difficulty.CUSTOM;
+    }
+}
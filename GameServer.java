@@ -0,0 +1,556 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.random.RandomGenerator;
+
+// Line-protocol front end: every connection gets its own virtual thread and session.
+//
+// Client sends one command per line, the same ones the console accepts:
+//   <number>   a guess
+//   H          a hint
+//   Q          quit
+//   NAME <id>  play under this name on the leaderboard; guests aren't ranked
+//   RANK       your place on this server's leaderboard
+//   PROFILE    your profile, once named, when the server keeps profiles
+//   RACE       leave ordinary rounds for the shared race room, see RaceRoom
+//   STATS      this server's totals
+//
+// Server answers each command with exactly one line:
+//   LOW <band> / HIGH <band>   wrong guess, band is BURNING, WARM, COLD or ICE
+//   WIN <attempts> <points>    correct guess
+//   LOSE <secret>              out of attempts
+//   RANGE <min> <max>          guess outside the range, not counted
+//   HINT <text> / NOHINT       hint, or none left
+//   OK                         reply to NAME
+//   RANK <rank> <players> <points>
+//   PROFILE <points> <streak> <best streak> <wins> <losses> <best round> <fewest attempts>
+//                              the last four for this server's difficulty
+//   NOPROFILE                  no profile for this player, or profiles are off
+//   STATS <totals>             as GameStats.encode writes them
+//   ERR <text>                 anything else
+//   BYE <secret>               reply to Q, then the connection closes
+//   EXPIRED                    the round was parked too long and dropped; the
+//                              command wasn't applied and a new ROUND follows
+//
+// A new round starts right after WIN/LOSE and on connect, announced as
+//   ROUND <min> <max> <attempts> <hints>
+// It counts as started, and as cancelled if quit, only from its first guess
+// or hint, so a connection that just asks for STATS, or that a router hands
+// on to another shard before playing, leaves no round behind.
+//
+// Finished rounds, hints and quits go to a RoundEvents ring, and its consumer
+// thread updates the statistics, leaderboard, history, profiles and metrics,
+// so a reply never waits on those.
+//
+// A connection that sends nothing for -Dguess.idle.seconds (default 30) has
+// its round parked in a SessionTable, which keeps it in a few primitive
+// words instead of a GameSession, and the next line it sends resumes it.
+// Rounds parked for longer than -Dguess.parked.minutes (default 30) are
+// dropped. The table holds -Dguess.parked (default 262144) rounds; past that,
+// idle rounds simply stay live.
+//
+// Race rooms seat up to -Dguess.race.players players each (default 10000);
+// a new room opens when the last one is full.
+public class GameServer {
+    // Longest command we accept; anything longer is an error
+    private static final int MAX_LINE = 64;
+
+    // Round events that can be waiting to be applied before connections have to wait
+    private static final int EVENT_CAPACITY = 1 << 16;
+
+    // Commands, matched against the line's bytes ignoring case
+    private static final byte[] CMD_QUIT = Renderer.utf8("Q");
+    private static final byte[] CMD_HINT = Renderer.utf8("H");
+    private static final byte[] CMD_NAME = Renderer.utf8("NAME ");
+    private static final byte[] CMD_RANK = Renderer.utf8("RANK");
+    private static final byte[] CMD_STATS = Renderer.utf8("STATS");
+    private static final byte[] CMD_PROFILE = Renderer.utf8("PROFILE");
+    private static final byte[] CMD_RACE = Renderer.utf8("RACE");
+
+    // Pre-encoded reply words
+    private static final byte[] ROUND = Renderer.utf8("ROUND ");
+    private static final byte[] LOW = Renderer.utf8("LOW ");
+    private static final byte[] HIGH = Renderer.utf8("HIGH ");
+    private static final byte[] WIN = Renderer.utf8("WIN ");
+    private static final byte[] LOSE = Renderer.utf8("LOSE ");
+    private static final byte[] RANGE = Renderer.utf8("RANGE ");
+    private static final byte[] HINT = Renderer.utf8("HINT ");
+    private static final byte[] NOHINT = Renderer.utf8("NOHINT");
+    private static final byte[] ERR = Renderer.utf8("ERR Enter a number, 'H' for hint, or 'Q' to quit!");
+    private static final byte[] BYE = Renderer.utf8("BYE ");
+    private static final byte[] EXPIRED = Renderer.utf8("EXPIRED");
+    private static final byte[] OK = Renderer.utf8("OK");
+    private static final byte[] RANK = Renderer.utf8("RANK ");
+    private static final byte[] STATS = Renderer.utf8("STATS ");
+    private static final byte[] PROFILE = Renderer.utf8("PROFILE ");
+    private static final byte[] NOPROFILE = Renderer.utf8("NOPROFILE");
+    private static final byte[] SPACE = Renderer.utf8(" ");
+    private static final byte[][] PROXIMITY = new byte[GameSession.Proximity.values().length][];
+
+    static {
+        for (GameSession.Proximity proximity : GameSession.Proximity.values()) {
+            PROXIMITY[proximity.ordinal()] = Renderer.utf8(proximity.name());
+        }
+    }
+
+    private final int port;
+    private final Main.Difficulty difficulty;
+    private final GameStats stats = new GameStats();
+    private final Rng rng = Rng.fromProperties();
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final HistoryStore history;
+    private final ProfileStore profiles;
+    private final RoundEvents events;
+    private final RaceRoom.Lobby lobby;
+    private final AtomicLong guests = new AtomicLong();
+    private final SessionTable parked;
+    private final int idleMillis;
+    private final long keepMillis;
+    private final Thread evictor;
+    private volatile boolean closed = false;
+
+    // History and profiles are optional; the history's totals are added to the server's statistics
+    GameServer(int port, Main.Difficulty difficulty, Path history, Path profiles) throws IOException {
+        this.port = port;
+        this.difficulty = difficulty;
+        this.history = history != null ? HistoryStore.open(history, stats) : null;
+        this.profiles = profiles != null ?
+                ProfileStore.open(profiles, Integer.getInteger("guess.profiles.cache", 1 << 20)) : null;
+        this.events = RoundEvents.start(EVENT_CAPACITY, stats, leaderboard, this.history, this.profiles);
+        this.lobby = new RaceRoom.Lobby(GameConfig.of(difficulty), rng,
+                Integer.getInteger("guess.race.players", 10_000));
+        this.parked = new SessionTable(Integer.getInteger("guess.parked", 1 << 18));
+        this.idleMillis = Integer.getInteger("guess.idle.seconds", 30) * 1000;
+        this.keepMillis = Integer.getInteger("guess.parked.minutes", 30) * 60_000L;
+        this.evictor = Thread.ofPlatform().name("parked-evictor").daemon().start(this::evictLoop);
+    }
+
+    // Usage: --server [port] [EASY|MEDIUM|HARD]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        Main.Difficulty difficulty = args.length > 1 ?
+                Main.Difficulty.valueOf(args[1].toUpperCase()) : Main.Difficulty.MEDIUM;
+        if (difficulty == Main.Difficulty.LARGE) {
+            System.out.println("Usage: --server [port] [EASY|MEDIUM|HARD]; the server has no large range mode");
+            return;
+        }
+
+        // Unlike the console, the server keeps no history or profiles unless given a directory
+        String directory = System.getProperty("guess.history", "");
+        String profiles = System.getProperty("guess.profiles", "");
+        GameServer server = new GameServer(port, difficulty, directory.isEmpty() ? null : Path.of(directory),
+                profiles.isEmpty() ? null : Path.of(profiles));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+
+        Metrics.open();
+        server.serve();
+    }
+
+    // Apply the rounds still in flight and save the history and profiles
+    void close() {
+        closed = true;
+        LockSupport.unpark(evictor);
+        lobby.close();
+        try {
+            events.close();
+            if (history != null) {
+                history.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not save game history: " + e.getMessage());
+        }
+        try {
+            if (profiles != null) {
+                profiles.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not save player profiles: " + e.getMessage());
+        }
+        Metrics.close();
+    }
+
+    void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket()) {
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(port), 4096);
+            System.out.println("Guess the number server on port " + port + " (" + difficulty + ")");
+
+            while (true) {
+                Socket socket = server.accept();
+                Thread.ofVirtual().start(() -> handle(socket));
+            }
+        }
+    }
+
+    // Drop rounds parked for too long, checking a few times per keep period
+    private void evictLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(Math.max(1_000, keepMillis / 4) * 1_000_000);
+            if (!closed) {
+                parked.evictIdle(keepMillis);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(idleMillis);
+            new Connection(socket.getInputStream(), socket.getOutputStream(), difficulty, events, rng, stats,
+                    leaderboard, profiles, lobby, parked, "guest-" + guests.incrementAndGet()).run();
+        } catch (IOException | UncheckedIOException e) {
+            // Client went away; nothing to clean up beyond the socket
+        } catch (IllegalStateException e) {
+            // The server is shutting down and its events or profiles are closed
+        }
+    }
+
+    // One client's conversation. Confined to its own thread, so nothing here is shared.
+    static class Connection {
+        // readLine() result when the client has been idle for the socket's timeout
+        private static final int IDLE = -2;
+
+        private final InputStream in;
+        private final OutputStream out;
+        private final Renderer reply;
+        private final Main.Difficulty difficulty;
+        private final GameConfig config;
+        private final RoundEvents events;
+        private final Rng rng;
+        private final GameStats stats;
+        private final Leaderboard leaderboard;
+        private final ProfileStore profiles; // null when profiles are off
+        private final RaceRoom.Lobby lobby;
+        private final SessionTable parked;
+        private long parkedId = -1; // the round's id in 'parked' while it's there
+        private long seed; // stream seed of the round under way, for parking it
+        private String player;
+        private boolean named = false; // guests get no profile
+        private boolean played = false; // the round under way has had a guess or a hint
+        private long lastEvent = -1; // position of this connection's latest event
+        private final byte[] line = new byte[MAX_LINE];
+        private final byte[] buffer = new byte[128];
+        private int bufferPos = 0;
+        private int bufferEnd = 0;
+        private int partial = 0; // length of a line cut off by an idle timeout
+        private int from; // the line's command, trimmed, within 'line'
+        private int to;
+
+        Connection(InputStream in, OutputStream out, Main.Difficulty difficulty, RoundEvents events, Rng rng,
+                   GameStats stats, Leaderboard leaderboard, ProfileStore profiles, RaceRoom.Lobby lobby,
+                   SessionTable parked, String player) {
+            this.in = in;
+            this.out = out;
+            this.reply = new Renderer(out, false, 256);
+            this.difficulty = difficulty;
+            this.config = GameConfig.of(difficulty);
+            this.events = events;
+            this.rng = rng;
+            this.stats = stats;
+            this.leaderboard = leaderboard;
+            this.profiles = profiles;
+            this.lobby = lobby;
+            this.parked = parked;
+            this.player = player;
+        }
+
+        void run() throws IOException {
+            try {
+                converse();
+            } finally {
+                if (parkedId >= 0) {
+                    parked.remove(parkedId);
+                }
+            }
+        }
+
+        private void converse() throws IOException {
+            GameSession session = newRound();
+            reply.newline().flush();
+
+            while (true) {
+                int length = readLine();
+                if (length == IDLE) {
+                    if (session != null) {
+                        session = park(session);
+                    }
+                    continue;
+                }
+                if (length < 0) {
+                    return;
+                }
+                if (session == null) {
+                    session = resume();
+                    if (session == null) {
+                        reply.text(EXPIRED).newline();
+                        session = newRound();
+                        reply.newline().flush();
+                        continue;
+                    }
+                }
+                trim(length);
+
+                if (length > MAX_LINE) {
+                    reply.text(ERR);
+                } else if (is(CMD_QUIT)) {
+                    session.cancel();
+                    if (played) {
+                        lastEvent = events.cancelled(config);
+                    }
+                    reply.text(BYE).num(session.getSecret()).newline().flush();
+                    return;
+                } else if (to - from > CMD_NAME.length && startsWith(CMD_NAME)) {
+                    player = new String(line, from + CMD_NAME.length, to - from - CMD_NAME.length,
+                            StandardCharsets.US_ASCII).trim();
+                    named = true;
+                    reply.text(OK).newline().flush();
+                    // Load it now, while the player reads the reply, so this round's result finds it cached
+                    profile();
+                    continue;
+                } else if (is(CMD_RANK)) {
+                    // Count this player's own rounds, which may still be on their way
+                    if (lastEvent >= 0) {
+                        events.awaitApplied(lastEvent);
+                    }
+                    reply.text(RANK).num(leaderboard.rank(player, difficulty)).text(SPACE)
+                            .num(leaderboard.players(difficulty)).text(SPACE)
+                            .num(leaderboard.score(player, difficulty));
+                } else if (is(CMD_STATS)) {
+                    if (lastEvent >= 0) {
+                        events.awaitApplied(lastEvent);
+                    }
+                    reply.text(STATS).text(GameStats.encode(stats.snapshot()));
+                } else if (is(CMD_PROFILE)) {
+                    if (lastEvent >= 0) {
+                        events.awaitApplied(lastEvent);
+                    }
+                    ProfileStore.Profile profile = profile();
+                    if (profile == null) {
+                        reply.text(NOPROFILE);
+                    } else {
+                        reply.text(PROFILE).num(profile.points).text(SPACE).num(profile.streak)
+                                .text(SPACE).num(profile.bestStreak).text(SPACE).num(profile.wins(difficulty))
+                                .text(SPACE).num(profile.losses(difficulty)).text(SPACE)
+                                .num(profile.best(difficulty)).text(SPACE).num(profile.fewest(difficulty));
+                    }
+                } else if (is(CMD_RACE)) {
+                    // The round under way counts as quit; the room does all the talking from here
+                    session.cancel();
+                    if (played) {
+                        lastEvent = events.cancelled(config);
+                    }
+                    reply.flush();
+                    race();
+                    return;
+                } else if (is(CMD_HINT)) {
+                    play();
+                    GameSession.Hint hint = session.requestHint();
+                    if (hint != null) {
+                        lastEvent = events.hint(config, hint);
+                        reply.text(HINT).text(session.describe(hint));
+                    } else {
+                        reply.text(NOHINT);
+                    }
+                } else {
+                    session = guess(session);
+                }
+                reply.newline().flush();
+            }
+        }
+
+        // Move an idle round into the parked table. Returns null once it's
+        // there, or the session itself when the table is full.
+        private GameSession park(GameSession session) {
+            try {
+                parkedId = parked.park(difficulty, seed, session);
+                return null;
+            } catch (IllegalStateException e) {
+                return session;
+            }
+        }
+
+        // Take the round back out of the parked table, or null if it was
+        // dropped meanwhile, in which case it counts as quit
+        private GameSession resume() {
+            GameSession session = parked.resume(parkedId);
+            parked.remove(parkedId);
+            parkedId = -1;
+            if (session == null && played) {
+                lastEvent = events.cancelled(config);
+            }
+            return session;
+        }
+
+        // This player's profile, or null without one. A disk error is reported and treated as none.
+        private ProfileStore.Profile profile() {
+            if (profiles == null || !named) {
+                return null;
+            }
+            try {
+                return profiles.get(player);
+            } catch (UncheckedIOException e) {
+                System.err.println("Player profile unavailable: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private GameSession guess(GameSession session) {
+            long parsed = CommandReader.parseInt(line, from, to);
+            if (parsed == CommandReader.NOT_AN_INT) {
+                reply.text(ERR);
+                return session;
+            }
+            int guess = (int) parsed;
+
+            play();
+            long start = Metrics.start();
+            GameSession.Outcome outcome = session.submitGuess(guess);
+            switch (outcome) {
+                case OUT_OF_RANGE:
+                    reply.text(RANGE).num(session.getMin()).text(SPACE).num(session.getMax());
+                    Metrics.guess(start);
+                    return session;
+                case CORRECT:
+                    lastEvent = events.finished(session, player, named);
+                    Metrics.guess(start);
+                    reply.text(WIN).num(session.getAttempts()).text(SPACE).num(session.pointsEarned()).newline();
+                    return newRound();
+                default:
+                    if (session.isFinished()) {
+                        lastEvent = events.finished(session, player, named);
+                        Metrics.guess(start);
+                        reply.text(LOSE).num(session.getSecret()).newline();
+                        return newRound();
+                    }
+                    GameSession.Proximity proximity = GameSession.Proximity.of(session.getSecret(), guess);
+                    reply.text(outcome == GameSession.Outcome.TOO_LOW ? LOW : HIGH).text(PROXIMITY[proximity.ordinal()]);
+                    Metrics.guess(start);
+                    return session;
+            }
+        }
+
+        // Guess in the race room until Q or the connection drops
+        private void race() throws IOException {
+            RaceRoom.Member member = lobby.join(player, out);
+            try {
+                while (true) {
+                    int length = readLine();
+                    if (length == IDLE) {
+                        continue;
+                    }
+                    if (length < 0) {
+                        return;
+                    }
+                    trim(length);
+                    if (is(CMD_QUIT)) {
+                        return;
+                    }
+                    long guess = length > MAX_LINE ? CommandReader.NOT_AN_INT : CommandReader.parseInt(line, from, to);
+                    if (guess == CommandReader.NOT_AN_INT) {
+                        member.reject();
+                    } else {
+                        member.guess((int) guess);
+                    }
+                }
+            } finally {
+                member.leave();
+            }
+        }
+
+        // Start a round and announce it. The announcement is left unterminated
+        // so the caller's newline() ends it, like every other reply.
+        private GameSession newRound() {
+            seed = rng.nextSeed();
+            RandomGenerator random = Rng.stream(seed);
+            int secret = Rng.between(random, config.min, config.max);
+            GameSession session = config.newSession(secret, random);
+            played = false;
+            reply.text(ROUND).num(config.min).text(SPACE).num(config.max).text(SPACE)
+                    .num(config.maxGuesses).text(SPACE).num(config.hints);
+            return session;
+        }
+
+        // Count the round under way as started, on its first guess or hint
+        private void play() {
+            if (!played) {
+                played = true;
+                Metrics.roundStarted(difficulty);
+            }
+        }
+
+        // Find the command in the line just read, blanks around it dropped as String.trim would
+        private void trim(int length) {
+            from = 0;
+            to = Math.min(length, MAX_LINE);
+            while (from < to && (line[from] & 0xFF) <= ' ') {
+                from++;
+            }
+            while (to > from && (line[to - 1] & 0xFF) <= ' ') {
+                to--;
+            }
+        }
+
+        // Whether the command is this word, in either case
+        private boolean is(byte[] word) {
+            return to - from == word.length && startsWith(word);
+        }
+
+        private boolean startsWith(byte[] word) {
+            if (to - from < word.length) {
+                return false;
+            }
+            for (int i = 0; i < word.length; i++) {
+                int b = line[from + i];
+                if (b >= 'a' && b <= 'z') {
+                    b -= 'a' - 'A';
+                }
+                if (b != word[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Read one line into 'line'. Returns its full length (which may exceed
+        // the buffer, in which case the rest was dropped), -1 at end of stream,
+        // or IDLE if nothing came within the socket's timeout; the next call
+        // then carries on with the same line.
+        private int readLine() throws IOException {
+            int length = partial;
+            partial = 0;
+            while (true) {
+                if (bufferPos == bufferEnd) {
+                    bufferPos = 0;
+                    try {
+                        bufferEnd = in.read(buffer, 0, buffer.length);
+                    } catch (SocketTimeoutException e) {
+                        bufferEnd = 0;
+                        partial = length;
+                        return IDLE;
+                    }
+                    if (bufferEnd <= 0) {
+                        bufferEnd = 0;
+                        return length > 0 ? length : -1;
+                    }
+                }
+                byte b = buffer[bufferPos++];
+                if (b == '\n') {
+                    return length;
+                }
+                if (length < MAX_LINE) {
+                    line[length] = b;
+                }
+                length++;
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+import java.util.random.RandomGenerator;
+
+// One round of the guessing game, independent of any console or socket.
+// All state lives in the instance, so any number of sessions can run side by side.
+public class GameSession {
+    // Result of submitting a guess
+    enum Outcome {
+        TOO_LOW,
+        TOO_HIGH,
+        CORRECT,
+        OUT_OF_RANGE,
+        FINISHED
+    }
+
+    // Kinds of hint handed out by requestHint()
+    enum Hint {
+        PARITY,
+        THIRD,
+        LAST_DIGIT,
+        DISTANCE,
+        HALF
+    }
+
+    // How close a wrong guess was
+    enum Proximity {
+        BURNING(3),
+        WARM(10),
+        COLD(25),
+        ICE(Integer.MAX_VALUE);
+
+        // Largest distance from the secret that still gets this band
+        final int maxDistance;
+
+        Proximity(int maxDistance) {
+            this.maxDistance = maxDistance;
+        }
+
+        static Proximity of(int secret, int guess) {
+            int difference = Math.abs(secret - guess);
+
+            if (difference <= BURNING.maxDistance) {
+                return BURNING;
+            } else if (difference <= WARM.maxDistance) {
+                return WARM;
+            } else if (difference <= COLD.maxDistance) {
+                return COLD;
+            }
+            return ICE;
+        }
+    }
+
+    private static final Hint[] HINTS = Hint.values();
+    private static final Proximity[] BANDS = Proximity.values();
+
+    private final GameConfig config;
+    private final int min;
+    private final int max;
+    private final int maxGuesses;
+    private final int hints;
+    private int secret;
+    private final RandomGenerator random; // this session's own stream, see Rng
+
+    private int attempts = 0;
+    private int hintsUsed = 0;
+    private int lastGuess = -1;
+    private boolean won = false;
+    private boolean cancelled = false;
+    private CandidateSet candidates; // secrets not yet ruled out by replies and hints
+    private CandidateSet trial; // requestHint() tries each kind of hint on this one
+
+    // The limits are copied out of the config so the checks on every guess read this object only
+    GameSession(GameConfig config, int secret, RandomGenerator random) {
+        this.config = config;
+        this.min = config.min;
+        this.max = config.max;
+        this.maxGuesses = config.maxGuesses;
+        this.hints = config.hints;
+        this.secret = secret;
+        this.random = random;
+        this.candidates = new CandidateSet(min, max);
+        this.trial = new CandidateSet(min, max);
+    }
+
+    // Session for one of the preset difficulties
+    static GameSession of(Main.Difficulty difficulty, int secret, RandomGenerator random) {
+        return new GameSession(GameConfig.of(difficulty), secret, random);
+    }
+
+    // Start a new round over the same range, so batch play can reuse one session
+    void reset(int secret) {
+        this.secret = secret;
+        attempts = 0;
+        hintsUsed = 0;
+        lastGuess = -1;
+        won = false;
+        cancelled = false;
+        candidates.reset(min, max);
+    }
+
+    // Pick up a round where it was parked, see SessionTable. The candidates
+    // aren't touched; a caller that kept them puts them back with getCandidates().set().
+    void restore(int attempts, int hintsUsed, int lastGuess, boolean won, boolean cancelled) {
+        this.attempts = attempts;
+        this.hintsUsed = hintsUsed;
+        this.lastGuess = lastGuess;
+        this.won = won;
+        this.cancelled = cancelled;
+    }
+
+    // Submit a guess. Out-of-range guesses are not counted as attempts.
+    Outcome submitGuess(int guess) {
+        if (isFinished()) {
+            return Outcome.FINISHED;
+        }
+
+        lastGuess = guess;
+
+        if (guess < min || guess > max) {
+            return Outcome.OUT_OF_RANGE;
+        }
+
+        attempts++;
+
+        if (guess == secret) {
+            won = true;
+            candidates.within(guess, guess);
+            return Outcome.CORRECT;
+        }
+
+        // Every front end answers with the direction and the proximity band
+        Proximity band = Proximity.of(secret, guess);
+        long nearest = band.ordinal() == 0 ? 1 : BANDS[band.ordinal() - 1].maxDistance + 1L;
+        if (guess < secret) {
+            candidates.within(guess + nearest, (long) guess + band.maxDistance);
+            return Outcome.TOO_LOW;
+        }
+        candidates.within((long) guess - band.maxDistance, guess - nearest);
+        return Outcome.TOO_HIGH;
+    }
+
+    // Whether an in-range guess can't be the secret, going by what the player has been told
+    boolean isRuledOut(int guess) {
+        return guess >= min && guess <= max && !candidates.contains(guess);
+    }
+
+    // Secrets still possible given every reply and hint so far
+    long candidatesLeft() {
+        return candidates.size();
+    }
+
+    // The live set, for SessionTable to save and put back
+    CandidateSet getCandidates() {
+        return candidates;
+    }
+
+    // Use up one hint, or return null when none are left. Hints don't cost an attempt.
+    // The kind is drawn at random, then moved on to the next kind that tells the player
+    // something new, if there is one. Still one draw per hint, so replays line up.
+    Hint requestHint() {
+        if (isFinished() || hintsUsed >= hints) {
+            return null;
+        }
+        hintsUsed++;
+        int first = random.nextInt(HINTS.length);
+        long left = candidates.size();
+        for (int i = 0; i < HINTS.length; i++) {
+            Hint hint = HINTS[(first + i) % HINTS.length];
+            trial.copyFrom(candidates);
+            narrow(trial, hint);
+            if (trial.size() < left) {
+                CandidateSet narrowed = trial;
+                trial = candidates;
+                candidates = narrowed;
+                return hint;
+            }
+        }
+        return HINTS[first];
+    }
+
+    // Apply what describe(hint) tells the player to a candidate set
+    private void narrow(CandidateSet set, Hint hint) {
+        switch (hint) {
+            case PARITY:
+                set.digits(secret % 2 == 0 ? CandidateSet.EVEN : CandidateSet.ODD);
+                break;
+            case THIRD:
+                int range = max - min + 1;
+                if (secret < min + range / 3) {
+                    set.within(min, min + range / 3 - 1L);
+                } else if (secret > max - range / 3) {
+                    set.within(max - range / 3 + 1L, max);
+                } else {
+                    set.within(min + range / 3, max - range / 3);
+                }
+                break;
+            case LAST_DIGIT:
+                // "ends with -3" also says the secret is negative, "ends with 3" that it's positive
+                int digit = secret % 10;
+                set.digits(1 << Math.floorMod(digit, 10));
+                if (digit < 0) {
+                    set.within(Long.MIN_VALUE, -1);
+                } else if (digit > 0) {
+                    set.within(1, Long.MAX_VALUE);
+                }
+                break;
+            case DISTANCE:
+                if (lastGuess != -1) {
+                    int diff = Math.abs(secret - lastGuess);
+                    if (diff <= 10) {
+                        set.within(lastGuess - 10L, lastGuess + 10L);
+                    } else if (diff <= 25) {
+                        set.within(lastGuess - 25L, lastGuess + 25L);
+                        set.outside(lastGuess - 10L, lastGuess + 10L);
+                    } else {
+                        set.outside(lastGuess - 25L, lastGuess + 25L);
+                    }
+                }
+                break;
+            default:
+                if (secret < (min + max) / 2) {
+                    set.within(min, (min + max) / 2 - 1L);
+                } else {
+                    set.within((min + max) / 2, max);
+                }
+                break;
+        }
+    }
+
+    // Plain-text wording of a hint for this session
+    String describe(Hint hint) {
+        switch (hint) {
+            case PARITY:
+                return "The number is " + (secret % 2 == 0 ? "even" : "odd");
+            case THIRD:
+                int range = max - min + 1;
+                if (secret < min + range / 3) {
+                    return "The number is in the lower third";
+                } else if (secret > max - range / 3) {
+                    return "The number is in the upper third";
+                }
+                return "The number is in the middle third";
+            case LAST_DIGIT:
+                return "The number ends with " + (secret % 10);
+            case DISTANCE:
+                if (lastGuess != -1) {
+                    int diff = Math.abs(secret - lastGuess);
+                    if (diff <= 10) {
+                        return "Very close! Within 10 numbers";
+                    } else if (diff <= 25) {
+                        return "Getting warmer! Within 25 numbers";
+                    }
+                    return "Pretty far away!";
+                }
+                return "The number is between " + min + " and " + max;
+            default:
+                if (secret < (min + max) / 2) {
+                    return "The number is in the first half";
+                }
+                return "The number is in the second half";
+        }
+    }
+
+    // Give up on the round (the 'Q' command)
+    void cancel() {
+        cancelled = true;
+    }
+
+    // Points for a won round: fewer attempts means a bigger share of the base points
+    int pointsEarned() {
+        if (!won) {
+            return 0;
+        }
+        return config.points(attempts);
+    }
+
+    boolean isFinished() {
+        return won || cancelled || attempts >= maxGuesses;
+    }
+
+    boolean isWon() {
+        return won;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    int getMin() {
+        return min;
+    }
+
+    int getMax() {
+        return max;
+    }
+
+    int getMaxGuesses() {
+        return maxGuesses;
+    }
+
+    GameConfig getConfig() {
+        return config;
+    }
+
+    int getHints() {
+        return hints;
+    }
+
+    int getHintsLeft() {
+        return hints - hintsUsed;
+    }
+
+    int getHintsUsed() {
+        return hintsUsed;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+
+    int getLastGuess() {
+        return lastGuess;
+    }
+
+    int getSecret() {
+        return secret;
+    }
+}
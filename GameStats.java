@@ -0,0 +1,346 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Running totals for finished rounds, safe to update from any number of threads.
+//
+// Counters are striped across padded cells the way LongAdder stripes its cells,
+// so threads finishing games rarely touch the same cache line. Each cell is
+// guarded by its own sequence number: a writer makes it odd while updating and
+// even again when done, and a reader retries a cell whose number moved. A round
+// therefore shows up in a snapshot all at once or not at all, so
+// wins + losses always equals games played.
+//
+// Per difficulty, wins are also counted by number of attempts in a fixed
+// array (attempts never exceed maxGuesses), so median and p90 come from a
+// walk over at most a few dozen buckets however many games were played.
+public class GameStats {
+    // Histogram size for CUSTOM and LARGE rounds, whose attempt limit depends on the range
+    private static final int CUSTOM_BUCKETS = 128;
+
+    private static final Main.Difficulty[] DIFFICULTIES = Main.Difficulty.values();
+
+    // Wins and losses for one difficulty, with wins bucketed by attempts
+    static class DifficultySnapshot {
+        final Main.Difficulty difficulty;
+        final long wins;
+        final long losses;
+        private final long[] winAttempts;
+
+        DifficultySnapshot(Main.Difficulty difficulty, long wins, long losses, long[] winAttempts) {
+            this.difficulty = difficulty;
+            this.wins = wins;
+            this.losses = losses;
+            this.winAttempts = winAttempts;
+        }
+
+        long gamesPlayed() {
+            return wins + losses;
+        }
+
+        // Number of attempt buckets; the last one also holds anything longer
+        int buckets() {
+            return winAttempts.length;
+        }
+
+        // Number of wins that took exactly this many attempts
+        long winsIn(int attempts) {
+            return attempts >= 0 && attempts < winAttempts.length ? winAttempts[attempts] : 0;
+        }
+
+        int median() {
+            return percentile(50);
+        }
+
+        // Attempts needed by the given percentage of wins, or 0 with no wins yet
+        int percentile(double percent) {
+            if (wins == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(wins * percent / 100.0));
+            long seen = 0;
+            for (int attempts = 0; attempts < winAttempts.length; attempts++) {
+                seen += winAttempts[attempts];
+                if (seen >= rank) {
+                    return attempts;
+                }
+            }
+            return winAttempts.length - 1;
+        }
+    }
+
+    // Point-in-time totals
+    static class Snapshot {
+        final long gamesPlayed;
+        final long wins;
+        final long losses;
+        final long totalGuesses;
+        final long score;
+        final int bestScore; // Integer.MAX_VALUE until the first win
+        private final DifficultySnapshot[] byDifficulty;
+
+        Snapshot(long gamesPlayed, long wins, long losses, long totalGuesses, long score, int bestScore,
+                 DifficultySnapshot[] byDifficulty) {
+            this.gamesPlayed = gamesPlayed;
+            this.wins = wins;
+            this.losses = losses;
+            this.totalGuesses = totalGuesses;
+            this.score = score;
+            this.bestScore = bestScore;
+            this.byDifficulty = byDifficulty;
+        }
+
+        DifficultySnapshot of(Main.Difficulty difficulty) {
+            return byDifficulty[difficulty.ordinal()];
+        }
+
+        double averageGuesses() {
+            return gamesPlayed == 0 ? 0 : (double) totalGuesses / gamesPlayed;
+        }
+
+        double winRate() {
+            return gamesPlayed == 0 ? 0 : wins * 100.0 / gamesPlayed;
+        }
+
+        boolean hasBestScore() {
+            return bestScore != Integer.MAX_VALUE;
+        }
+    }
+
+    // A snapshot as one line of text, for sending totals between processes: the
+    // totals, the number of difficulties, then per difficulty its losses, its
+    // number of buckets and the win histogram; the fields HistoryStore's
+    // snapshot file holds.
+    static String encode(Snapshot totals) {
+        StringBuilder line = new StringBuilder(256);
+        line.append(totals.wins).append(' ').append(totals.losses).append(' ').append(totals.totalGuesses)
+                .append(' ').append(totals.score).append(' ').append(totals.bestScore)
+                .append(' ').append(DIFFICULTIES.length);
+        for (Main.Difficulty difficulty : DIFFICULTIES) {
+            DifficultySnapshot played = totals.of(difficulty);
+            // Buckets past the last win are left out; they're zero
+            int buckets = played.buckets();
+            while (buckets > 0 && played.winsIn(buckets - 1) == 0) {
+                buckets--;
+            }
+            line.append(' ').append(played.losses).append(' ').append(buckets);
+            for (int attempts = 0; attempts < buckets; attempts++) {
+                line.append(' ').append(played.winsIn(attempts));
+            }
+        }
+        return line.toString();
+    }
+
+    // Read encode()'s output back. Throws IllegalArgumentException if it's malformed.
+    static Snapshot decode(String text) {
+        String[] fields = text.trim().split(" ");
+        int[] next = {0};
+        try {
+            long wins = field(fields, next);
+            long losses = field(fields, next);
+            long totalGuesses = field(fields, next);
+            long score = field(fields, next);
+            int bestScore = (int) field(fields, next);
+            long sent = field(fields, next);
+
+            DifficultySnapshot[] byDifficulty = new DifficultySnapshot[DIFFICULTIES.length];
+            for (Main.Difficulty difficulty : DIFFICULTIES) {
+                // A sender that knows fewer difficulties has played none of the rest
+                if (difficulty.ordinal() >= sent) {
+                    byDifficulty[difficulty.ordinal()] = new DifficultySnapshot(difficulty, 0, 0, new long[0]);
+                    continue;
+                }
+                long difficultyLosses = field(fields, next);
+                long[] winAttempts = new long[(int) field(fields, next)];
+                long difficultyWins = 0;
+                for (int attempts = 0; attempts < winAttempts.length; attempts++) {
+                    winAttempts[attempts] = field(fields, next);
+                    difficultyWins += winAttempts[attempts];
+                }
+                byDifficulty[difficulty.ordinal()] = new DifficultySnapshot(difficulty, difficultyWins,
+                        difficultyLosses, winAttempts);
+            }
+            return new Snapshot(wins + losses, wins, losses, totalGuesses, score, bestScore, byDifficulty);
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated statistics: " + text);
+        }
+    }
+
+    private static long field(String[] fields, int[] next) {
+        return Long.parseLong(fields[next[0]++]);
+    }
+
+    // One stripe. The padding keeps neighbouring cells off each other's cache lines.
+    @SuppressWarnings("unused")
+    private static final class Cell {
+        long p0, p1, p2, p3, p4, p5, p6;
+        volatile long sequence;
+        long wins;
+        long losses;
+        long totalGuesses;
+        long score;
+        final long[] lossesBy = new long[DIFFICULTIES.length];
+        final long[][] winAttempts = newHistograms();
+        long q0, q1, q2, q3, q4, q5, q6;
+    }
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(Cell.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Cell[] cells;
+    private final int mask;
+    private final AtomicInteger bestScore = new AtomicInteger(Integer.MAX_VALUE);
+
+    GameStats() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    GameStats(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        cells = new Cell[size];
+        for (int i = 0; i < size; i++) {
+            cells[i] = new Cell();
+        }
+        mask = size - 1;
+    }
+
+    // One attempts histogram per difficulty, indexed by ordinal
+    private static long[][] newHistograms() {
+        long[][] histograms = new long[DIFFICULTIES.length][];
+        for (Main.Difficulty difficulty : DIFFICULTIES) {
+            boolean ranged = difficulty == Main.Difficulty.CUSTOM || difficulty == Main.Difficulty.LARGE;
+            int buckets = ranged ? CUSTOM_BUCKETS : difficulty.maxGuesses + 1;
+            histograms[difficulty.ordinal()] = new long[buckets];
+        }
+        return histograms;
+    }
+
+    // Record a finished (not cancelled) round
+    void record(Main.Difficulty difficulty, boolean won, int attempts, int points) {
+        Cell cell = acquire();
+        if (won) {
+            cell.wins++;
+            cell.score += points;
+            long[] histogram = cell.winAttempts[difficulty.ordinal()];
+            histogram[Math.min(attempts, histogram.length - 1)]++;
+        } else {
+            cell.losses++;
+            cell.lossesBy[difficulty.ordinal()]++;
+        }
+        cell.totalGuesses += attempts;
+        SEQUENCE.setRelease(cell, cell.sequence + 1);
+
+        if (won) {
+            updateBest(attempts);
+        }
+    }
+
+    // Add previously saved totals, e.g. from a history snapshot
+    void restore(Snapshot saved) {
+        Cell cell = acquire();
+        cell.wins += saved.wins;
+        cell.losses += saved.losses;
+        cell.totalGuesses += saved.totalGuesses;
+        cell.score += saved.score;
+        for (Main.Difficulty difficulty : DIFFICULTIES) {
+            int d = difficulty.ordinal();
+            DifficultySnapshot played = saved.of(difficulty);
+            cell.lossesBy[d] += played.losses;
+            long[] histogram = cell.winAttempts[d];
+            for (int attempts = 0; attempts < played.buckets(); attempts++) {
+                histogram[Math.min(attempts, histogram.length - 1)] += played.winsIn(attempts);
+            }
+        }
+        SEQUENCE.setRelease(cell, cell.sequence + 1);
+
+        updateBest(saved.bestScore);
+    }
+
+    // Lower the best score if this game beat it
+    private void updateBest(int attempts) {
+        int best = bestScore.get();
+        while (attempts < best && !bestScore.compareAndSet(best, attempts)) {
+            best = bestScore.get();
+        }
+    }
+
+    // Claim a cell for writing: start at this thread's home cell and move on if it's busy
+    private Cell acquire() {
+        int index = home();
+        while (true) {
+            Cell cell = cells[index];
+            long sequence = cell.sequence;
+            if ((sequence & 1) == 0 && SEQUENCE.compareAndSet(cell, sequence, sequence + 1)) {
+                return cell;
+            }
+            index = (index + 1) & mask;
+            Thread.onSpinWait();
+        }
+    }
+
+    private int home() {
+        long h = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    // Totals across all cells, each cell read consistently
+    Snapshot snapshot() {
+        long wins = 0;
+        long losses = 0;
+        long totalGuesses = 0;
+        long score = 0;
+        long[] lossesBy = new long[DIFFICULTIES.length];
+        long[][] winAttempts = newHistograms();
+        long[] cellLossesBy = new long[DIFFICULTIES.length];
+        long[][] cellWinAttempts = newHistograms();
+
+        for (Cell cell : cells) {
+            while (true) {
+                long before = (long) SEQUENCE.getAcquire(cell);
+                if ((before & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                long cellWins = cell.wins;
+                long cellLosses = cell.losses;
+                long cellGuesses = cell.totalGuesses;
+                long cellScore = cell.score;
+                System.arraycopy(cell.lossesBy, 0, cellLossesBy, 0, cellLossesBy.length);
+                for (int d = 0; d < cellWinAttempts.length; d++) {
+                    System.arraycopy(cell.winAttempts[d], 0, cellWinAttempts[d], 0, cellWinAttempts[d].length);
+                }
+                VarHandle.loadLoadFence();
+                if (cell.sequence == before) {
+                    wins += cellWins;
+                    losses += cellLosses;
+                    totalGuesses += cellGuesses;
+                    score += cellScore;
+                    for (int d = 0; d < lossesBy.length; d++) {
+                        lossesBy[d] += cellLossesBy[d];
+                        for (int a = 0; a < winAttempts[d].length; a++) {
+                            winAttempts[d][a] += cellWinAttempts[d][a];
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        DifficultySnapshot[] byDifficulty = new DifficultySnapshot[DIFFICULTIES.length];
+        for (Main.Difficulty difficulty : DIFFICULTIES) {
+            int d = difficulty.ordinal();
+            long difficultyWins = 0;
+            for (long count : winAttempts[d]) {
+                difficultyWins += count;
+            }
+            byDifficulty[d] = new DifficultySnapshot(difficulty, difficultyWins, lossesBy[d], winAttempts[d]);
+        }
+        return new Snapshot(wins + losses, wins, losses, totalGuesses, score, bestScore.get(), byDifficulty);
+    }
+}
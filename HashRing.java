@@ -0,0 +1,76 @@
+import java.util.Arrays;
+
+// Consistent hashing of session ids onto shards.
+//
+// Every shard gets VNODES points on a 64-bit ring, and an id belongs to the
+// shard owning the first point at or after the id's hash, wrapping around.
+// Adding or removing a shard only moves the ids between its points and their
+// neighbours, about 1/n of them, and with many points per shard each one gets
+// close to an equal share. Points are sorted primitive arrays, so a lookup is
+// one hash and a binary search.
+//
+// Shard i's points depend only on i, so every router built with the same
+// shard count routes every id the same way.
+public class HashRing {
+    static final int VNODES = 160;
+
+    private final long[] points;
+    private final int[] owners;
+    private final int shards;
+
+    HashRing(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Need at least one shard");
+        }
+        this.shards = shards;
+        long[] hashes = new long[shards * VNODES];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int v = 0; v < VNODES; v++) {
+                hashes[shard * VNODES + v] = hash("shard-" + shard + "#" + v);
+            }
+        }
+        // Sort the points, carrying their owners along
+        Integer[] order = new Integer[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compareUnsigned(hashes[a], hashes[b]));
+        points = new long[hashes.length];
+        owners = new int[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / VNODES;
+        }
+    }
+
+    int shards() {
+        return shards;
+    }
+
+    // The shard that owns this id
+    int owner(String id) {
+        long h = hash(id);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], h) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    // FNV-1a over the chars, then the MurmurHash3 finalizer so nearby ids spread over the whole ring
+    static long hash(String id) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h = (h ^ id.charAt(i)) * 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
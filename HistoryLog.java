@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+// Append-only binary log of finished rounds.
+//
+// Every record has the same size, so the log can be replayed with plain
+// offset arithmetic over a memory-mapped file. Appends land in a direct buffer;
+// a background thread writes the buffer out and fsyncs it every commit
+// interval, so one fsync covers every round finished in that window (group
+// commit). HistoryStore uses one of these per segment and drives the
+// commits itself.
+//
+// A crash can leave a torn record at the tail, or whole records of zeros or
+// garbage where the file had been extended but not yet written. Each record
+// carries a 16-bit check over its other fields, and replay stops at the
+// first record that fails it or holds an impossible value (a difficulty out
+// of range, no attempts, no timestamp). Opening the log cuts it off there,
+// so new records never land behind a bad one.
+//
+// File layout: a 16-byte header (magic, version, record size, reserved)
+// followed by 32-byte records, all little-endian:
+//   0  difficulty, won, attempts (short), hints used (short), check (short)
+//   8  min, max, secret, points (ints), then the timestamp (long)
+// Version 1 logs have 0 for the check and are only checked for impossible values.
+public class HistoryLog implements AutoCloseable {
+    static final int MAGIC = 0x484E5247; // "GRNH"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 32;
+
+    // Largest mapping made at once during replay; a multiple of RECORD_SIZE
+    private static final long MAP_CHUNK = (1L << 30) / RECORD_SIZE * RECORD_SIZE;
+
+    // Receives each record during replay
+    interface Visitor {
+        void round(Main.Difficulty difficulty, boolean won, int attempts, int hintsUsed,
+                   int min, int max, int secret, int points, long timestamp);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final long commitMillis;
+    private final Thread committer; // null when the owner commits
+    private volatile boolean closed = false;
+    private long position;
+
+    private HistoryLog(Path path, FileChannel channel, int bufferSize, long commitMillis) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize / RECORD_SIZE * RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.commitMillis = commitMillis;
+        this.position = channel.size();
+
+        if (commitMillis > 0) {
+            committer = new Thread(this::commitLoop, "history-commit");
+            committer.setDaemon(true);
+            committer.start();
+        } else {
+            committer = null;
+        }
+    }
+
+    // Open (creating if needed) a log with a 64 KB buffer and 20 ms group commit
+    static HistoryLog open(Path path) throws IOException {
+        return open(path, 64 * 1024, 20);
+    }
+
+    // A commitMillis of zero or less leaves commits to the caller's sync()
+    static HistoryLog open(Path path, int bufferSize, long commitMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                writeHeader(channel);
+            } else {
+                int version = checkHeader(channel, path);
+                long whole = HEADER_SIZE + scan(channel, version, 0, null) * RECORD_SIZE;
+                if (whole != size) {
+                    channel.truncate(whole);
+                }
+            }
+            return new HistoryLog(path, channel, bufferSize, commitMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+        channel.truncate(0);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+    }
+
+    // Returns the log's version
+    private static int checkHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading
+        }
+        header.flip();
+        int magic = header.getInt();
+        int version = header.getInt();
+        if (magic != MAGIC || version < 1 || version > VERSION || header.getInt() != RECORD_SIZE) {
+            throw new IOException("Not a game history log: " + path);
+        }
+        return version;
+    }
+
+    // Append one finished round. Durable after the next group commit or sync().
+    synchronized void append(Main.Difficulty difficulty, boolean won, int attempts, int hintsUsed,
+                             int min, int max, int secret, int points) {
+        if (closed) {
+            throw new IllegalStateException("History log is closed");
+        }
+        if (buffer.remaining() < RECORD_SIZE) {
+            writeBuffer();
+        }
+        long head = difficulty.ordinal() | (won ? 1L : 0L) << 8 | (attempts & 0xFFFFL) << 16 |
+                (hintsUsed & 0xFFFFL) << 32;
+        long bounds = (min & 0xFFFFFFFFL) | (long) max << 32;
+        long outcome = (secret & 0xFFFFFFFFL) | (long) points << 32;
+        long timestamp = System.currentTimeMillis();
+        buffer.putLong(head | (long) check(head, bounds, outcome, timestamp) << 48)
+                .putLong(bounds)
+                .putLong(outcome)
+                .putLong(timestamp);
+    }
+
+    // 16 bits mixed from a record's fields, the check field itself left out.
+    // Never 0 for a record of zeros, which is what an extended file reads as.
+    private static int check(long head, long bounds, long outcome, long timestamp) {
+        long h = 0x9E3779B97F4A7C15L;
+        h = (h ^ head) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ bounds ^ (h >>> 29)) * 0x94D049BB133111EBL;
+        h = (h ^ outcome ^ (h >>> 32)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ timestamp ^ (h >>> 29)) * 0x94D049BB133111EBL;
+        return (int) (h >>> 48);
+    }
+
+    // Write out everything appended so far and fsync it
+    void sync() {
+        writeOut();
+        force();
+    }
+
+    // Hand everything appended so far to the OS, without waiting for the disk
+    synchronized void writeOut() {
+        writeBuffer();
+    }
+
+    // Wait until everything written out is on disk. A closed log was forced when it closed.
+    void force() {
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Closed (and forced) by close() meanwhile
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Records in the log, including ones still buffered
+    synchronized long records() {
+        return (position - HEADER_SIZE + buffer.position()) / RECORD_SIZE;
+    }
+
+    // Caller holds the lock
+    private void writeBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    // Woken early by close(), never interrupted: an interrupt during force()
+    // would close the channel under everyone
+    private void commitLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(commitMillis * 1_000_000);
+            try {
+                if (!closed) {
+                    sync();
+                }
+            } catch (UncheckedIOException | IllegalStateException e) {
+                System.err.println("History commit failed: " + e.getMessage());
+            }
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            writeBuffer();
+            closed = true;
+        }
+        if (committer != null) {
+            LockSupport.unpark(committer);
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        channel.force(true);
+        channel.close();
+    }
+
+    // Replay every whole record in the log. Returns the number of records read.
+    static long replay(Path path, Visitor visitor) throws IOException {
+        return replay(path, 0, visitor);
+    }
+
+    // Replay whole records from the given record index on. Returns the number read.
+    static long replay(Path path, long fromRecord, Visitor visitor) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return 0;
+            }
+            int version = checkHeader(channel, path);
+            long first = Math.max(0, fromRecord);
+            return Math.max(0, scan(channel, version, first, visitor) - first);
+        }
+    }
+
+    // Check records from the given index on, handing each good one to the
+    // visitor if there is one. Returns the index of the first record that is
+    // missing, torn or bad; records before fromRecord are taken as good.
+    private static long scan(FileChannel channel, int version, long fromRecord, Visitor visitor)
+            throws IOException {
+        Main.Difficulty[] difficulties = Main.Difficulty.values();
+        long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        long end = HEADER_SIZE + records * RECORD_SIZE;
+        long first = Math.min(fromRecord, records);
+
+        for (long start = HEADER_SIZE + first * RECORD_SIZE; start < end; start += MAP_CHUNK) {
+            long length = Math.min(MAP_CHUNK, end - start);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int at = 0; at < length; at += RECORD_SIZE) {
+                long head = map.getLong(at);
+                int difficulty = (int) head & 0xFF;
+                int won = (int) (head >>> 8) & 0xFF;
+                short attempts = map.getShort(at + 2);
+                short hintsUsed = map.getShort(at + 4);
+                long timestamp = map.getLong(at + 24);
+                boolean bad = difficulty >= difficulties.length || won > 1 || attempts < 1 || hintsUsed < 0 ||
+                        timestamp <= 0 || version >= 2 && (int) (head >>> 48) !=
+                        check(head & 0xFFFFFFFFFFFFL, map.getLong(at + 8), map.getLong(at + 16), timestamp);
+                if (bad) {
+                    return (start - HEADER_SIZE + at) / RECORD_SIZE;
+                }
+                if (visitor != null) {
+                    visitor.round(difficulties[difficulty], won != 0, attempts, hintsUsed,
+                            map.getInt(at + 8),
+                            map.getInt(at + 12),
+                            map.getInt(at + 16),
+                            map.getInt(at + 20),
+                            timestamp);
+                }
+            }
+        }
+        return records;
+    }
+
+    // Rebuild statistics from a log
+    static long replay(Path path, GameStats stats) throws IOException {
+        return replay(path, (difficulty, won, attempts, hintsUsed, min, max, secret, points, timestamp) ->
+                stats.record(difficulty, won, attempts, points));
+    }
+}
@@ -0,0 +1,377 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+// Game history as a directory of log segments plus a snapshot of the totals.
+//
+// Rounds are appended to the newest segment (a HistoryLog), named after the
+// index of its first record, and a new segment starts every segmentRecords
+// rounds. Every snapshotEvery rounds or snapshotMillis, whichever comes
+// first, the totals for everything durable so far are written to
+// snapshot.bin via a temp file and an atomic rename. Segments the snapshot
+// fully covers are then deleted. Startup loads the snapshot and replays only
+// the records after it, so it costs about the same however long the history is.
+//
+// The snapshot is built from a private GameStats that sees exactly the
+// records in the log, so it lines up with a record index even while other
+// threads are finishing rounds.
+public class HistoryStore implements AutoCloseable {
+    private static final int SNAPSHOT_MAGIC = 0x534E5247; // "GRNS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "rounds-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentRecords;
+    private final long snapshotEvery;
+    private final long snapshotMillis;
+    private final GameStats logged = new GameStats(1);
+    private final Thread committer;
+    private final Object snapshotLock = new Object();
+    private volatile boolean closed = false;
+
+    private HistoryLog segment;
+    private long segmentStart;
+    private long records;
+    private long snapshotRecords;
+    private long snapshotTime = System.currentTimeMillis();
+
+    private HistoryStore(Path directory, long segmentRecords, long snapshotEvery, long snapshotMillis,
+                         long commitMillis) {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.snapshotEvery = snapshotEvery;
+        this.snapshotMillis = snapshotMillis;
+
+        committer = new Thread(() -> commitLoop(commitMillis), "history-commit");
+        committer.setDaemon(true);
+    }
+
+    // Open with 1M-record segments, a snapshot every 100k rounds or minute, and 20 ms group commit
+    static HistoryStore open(Path directory, GameStats stats) throws IOException {
+        return open(directory, stats, 1 << 20, 100_000, 60_000, 20);
+    }
+
+    // Open the store, adding everything it holds to stats
+    static HistoryStore open(Path directory, GameStats stats, long segmentRecords, long snapshotEvery,
+                             long snapshotMillis, long commitMillis) throws IOException {
+        Files.createDirectories(directory);
+        HistoryStore store = new HistoryStore(directory, segmentRecords, snapshotEvery, snapshotMillis,
+                commitMillis);
+        store.recover();
+        stats.restore(store.logged.snapshot());
+        store.committer.start();
+        return store;
+    }
+
+    // Load the snapshot, replay the segments after it and reopen the last one
+    private void recover() throws IOException {
+        GameStats.Snapshot saved = readSnapshot();
+        if (saved != null) {
+            logged.restore(saved);
+        }
+        long covered = snapshotRecords;
+
+        List<Long> starts = segments();
+        long next = covered;
+        for (long start : starts) {
+            Path path = segmentPath(start);
+            if (start > next) {
+                throw new IOException("History segment missing before " + path);
+            }
+            long skip = Math.max(0, covered - start);
+            long read = HistoryLog.replay(path, skip,
+                    (difficulty, won, attempts, hintsUsed, min, max, secret, points, timestamp) ->
+                            logged.record(difficulty, won, attempts, points));
+            next = Math.max(next, start + skip + read);
+        }
+        records = next;
+
+        if (!starts.isEmpty() && starts.get(starts.size() - 1) + segmentRecords > records) {
+            segmentStart = starts.get(starts.size() - 1);
+        } else {
+            segmentStart = records;
+        }
+        segment = HistoryLog.open(segmentPath(segmentStart), 64 * 1024, 0);
+    }
+
+    // Append a finished round; durable after the next group commit or sync()
+    synchronized void append(Main.Difficulty difficulty, boolean won, int attempts, int hintsUsed,
+                             int min, int max, int secret, int points) {
+        if (closed) {
+            throw new IllegalStateException("History store is closed");
+        }
+        if (records - segmentStart >= segmentRecords) {
+            roll();
+        }
+        segment.append(difficulty, won, attempts, hintsUsed, min, max, secret, points);
+        logged.record(difficulty, won, attempts, points);
+        records++;
+    }
+
+    // Start a new segment. Caller holds the lock.
+    private void roll() {
+        try {
+            segment.close();
+            segmentStart = records;
+            segment = HistoryLog.open(segmentPath(segmentStart), 64 * 1024, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Make everything appended so far durable, then snapshot and compact if due
+    void sync() {
+        HistoryLog current;
+        GameStats.Snapshot totals;
+        long covered;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            segment.writeOut();
+            current = segment;
+            totals = logged.snapshot();
+            covered = records;
+        }
+        current.force();
+
+        synchronized (snapshotLock) {
+            long now = System.currentTimeMillis();
+            boolean due = covered - snapshotRecords >= snapshotEvery ||
+                    (covered > snapshotRecords && now - snapshotTime >= snapshotMillis);
+            if (due) {
+                try {
+                    writeSnapshot(totals, covered);
+                    snapshotRecords = covered;
+                    snapshotTime = now;
+                    compact();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    // Force a snapshot of everything appended so far
+    void snapshot() throws IOException {
+        GameStats.Snapshot totals;
+        long covered;
+        synchronized (this) {
+            segment.sync();
+            totals = logged.snapshot();
+            covered = records;
+        }
+        synchronized (snapshotLock) {
+            if (covered > snapshotRecords) {
+                writeSnapshot(totals, covered);
+                snapshotRecords = covered;
+                snapshotTime = System.currentTimeMillis();
+                compact();
+            }
+        }
+    }
+
+    // Woken early by close(), never interrupted, since an interrupt would
+    // close whichever channel the committer is using at the time
+    private void commitLoop(long commitMillis) {
+        while (!closed) {
+            LockSupport.parkNanos(commitMillis * 1_000_000);
+            try {
+                sync();
+            } catch (UncheckedIOException | IllegalStateException e) {
+                if (!closed) {
+                    System.err.println("History commit failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Delete segments whose records are all in the snapshot, never the one being written
+    private void compact() throws IOException {
+        long active;
+        synchronized (this) {
+            active = segmentStart;
+        }
+        List<Long> starts = segments();
+        for (int i = 0; i + 1 < starts.size(); i++) {
+            long end = starts.get(i + 1);
+            if (end <= snapshotRecords && starts.get(i) != active) {
+                Files.deleteIfExists(segmentPath(starts.get(i)));
+            }
+        }
+    }
+
+    // Record index the snapshot covers up to
+    long snapshotRecords() {
+        synchronized (snapshotLock) {
+            return snapshotRecords;
+        }
+    }
+
+    synchronized long records() {
+        return records;
+    }
+
+    // Snapshots on the way out, so the next start has no tail to replay
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        snapshot();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segment.close();
+        }
+        LockSupport.unpark(committer);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Path segmentPath(long start) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+    }
+
+    // First-record indexes of the segments on disk, in order
+    private List<Long> segments() throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        starts.sort(null);
+        return starts;
+    }
+
+    // Snapshot layout: magic, version, records covered, totals, then per
+    // difficulty its losses and win histogram, then a CRC32 of all of that.
+    private void writeSnapshot(GameStats.Snapshot totals, long covered) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(covered);
+        out.writeLong(totals.wins);
+        out.writeLong(totals.losses);
+        out.writeLong(totals.totalGuesses);
+        out.writeLong(totals.score);
+        out.writeInt(totals.bestScore);
+        for (Main.Difficulty difficulty : Main.Difficulty.values()) {
+            GameStats.DifficultySnapshot played = totals.of(difficulty);
+            out.writeLong(played.losses);
+            out.writeInt(played.buckets());
+            for (int attempts = 0; attempts < played.buckets(); attempts++) {
+                out.writeLong(played.winsIn(attempts));
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+
+        Path temp = directory.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        // Make the rename itself durable where the platform allows syncing a directory
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported here; the rename is still atomic
+        }
+    }
+
+    // Load snapshot.bin into snapshotRecords and return its totals, or null if there is none
+    private GameStats.Snapshot readSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < 8) {
+            throw new IOException("Corrupt game history snapshot: " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+            throw new IOException("Corrupt game history snapshot: " + path);
+        }
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a game history snapshot: " + path);
+        }
+        long covered = in.readLong();
+        long wins = in.readLong();
+        long losses = in.readLong();
+        long totalGuesses = in.readLong();
+        long score = in.readLong();
+        int bestScore = in.readInt();
+
+        Main.Difficulty[] difficulties = Main.Difficulty.values();
+        GameStats.DifficultySnapshot[] byDifficulty = new GameStats.DifficultySnapshot[difficulties.length];
+        for (Main.Difficulty difficulty : difficulties) {
+            // Snapshots written before a difficulty was added stop short of it, right before the CRC
+            if (in.available() <= 8) {
+                byDifficulty[difficulty.ordinal()] = new GameStats.DifficultySnapshot(difficulty, 0, 0, new long[0]);
+                continue;
+            }
+            long difficultyLosses = in.readLong();
+            long[] winAttempts = new long[in.readInt()];
+            long difficultyWins = 0;
+            for (int attempts = 0; attempts < winAttempts.length; attempts++) {
+                winAttempts[attempts] = in.readLong();
+                difficultyWins += winAttempts[attempts];
+            }
+            byDifficulty[difficulty.ordinal()] = new GameStats.DifficultySnapshot(
+                    difficulty, difficultyWins, difficultyLosses, winAttempts);
+        }
+        snapshotRecords = covered;
+        return new GameStats.Snapshot(wins + losses, wins, losses, totalGuesses, score, bestScore,
+                byDifficulty);
+    }
+
+    // Move a single-file log from before segments existed into an empty store directory
+    static void migrate(Path legacyLog, Path directory) throws IOException {
+        if (!Files.isRegularFile(legacyLog)) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Path first = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, 0, SEGMENT_SUFFIX));
+        if (!Files.exists(first) && !Files.exists(directory.resolve(SNAPSHOT))) {
+            Files.move(legacyLog, first, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
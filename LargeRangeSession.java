@@ -0,0 +1,228 @@
+import java.math.BigInteger;
+import java.util.random.RandomGenerator;
+
+// One round over an arbitrarily large range, bounds and secret held as BigInteger.
+//
+// Everything a hint or a proximity band compares against (the thirds, the
+// midpoint, the band limits) depends only on the range, so it is worked out
+// once when the session starts; answering a hint or a guess is then a couple
+// of comparisons, however wide the range. The proximity bands scale with the
+// range: each covers the same share of it as the classic 3/10/25 bands do of
+// 1-100, and never less than the classic distance, so ranges up to 100 play
+// exactly like the preset modes.
+public class LargeRangeSession {
+    private static final GameSession.Hint[] HINTS = GameSession.Hint.values();
+    private static final GameSession.Proximity[] BANDS = GameSession.Proximity.values();
+    private static final BigInteger HUNDRED = BigInteger.valueOf(100);
+
+    private final BigInteger min;
+    private final BigInteger max;
+    private final BigInteger secret;
+    private final int maxGuesses;
+    private final int hints;
+    private final int basePoints;
+    private final RandomGenerator random;
+
+    // Precomputed from the range
+    private final BigInteger lowerThirdEnd;  // secrets below this are in the lower third
+    private final BigInteger upperThirdStart; // secrets above this are in the upper third
+    private final BigInteger middle;
+    private final BigInteger[] bandLimits;   // largest distance per band, ICE excluded
+
+    // Precomputed from the secret
+    private final boolean even;
+    private final int lastDigit;
+
+    private int attempts = 0;
+    private int hintsUsed = 0;
+    private BigInteger lastGuess = null;
+    private boolean won = false;
+    private boolean cancelled = false;
+
+    LargeRangeSession(BigInteger min, BigInteger max, int maxGuesses, int hints, BigInteger secret,
+                      RandomGenerator random) {
+        this.min = min;
+        this.max = max;
+        this.secret = secret;
+        this.maxGuesses = maxGuesses;
+        this.hints = hints;
+        this.random = random;
+
+        BigInteger size = size(min, max);
+        // Base points keep growing past custom mode's 300 cap, by 10 per bit of range size past 10
+        this.basePoints = 300 + 10 * Math.max(0, size.bitLength() - 10);
+
+        BigInteger third = size.divide(BigInteger.valueOf(3));
+        this.lowerThirdEnd = min.add(third);
+        this.upperThirdStart = max.subtract(third);
+        this.middle = min.add(max).divide(BigInteger.TWO);
+        this.bandLimits = new BigInteger[BANDS.length - 1];
+        for (int i = 0; i < bandLimits.length; i++) {
+            BigInteger classic = BigInteger.valueOf(BANDS[i].maxDistance);
+            bandLimits[i] = classic.max(size.multiply(classic).divide(HUNDRED));
+        }
+
+        this.even = !secret.testBit(0);
+        this.lastDigit = secret.abs().mod(BigInteger.TEN).intValue();
+    }
+
+    // Number of values in [min, max]
+    static BigInteger size(BigInteger min, BigInteger max) {
+        return max.subtract(min).add(BigInteger.ONE);
+    }
+
+    // Uniform secret in [min, max]. Ranges that fit a long use the generator's
+    // bounded nextLong, which already rejects rather than reducing modulo the
+    // bound. Wider ranges draw just enough random bits to cover the range and
+    // retry anything past its end; at least half of all draws land inside, so
+    // this takes under two tries on average.
+    static BigInteger uniform(BigInteger min, BigInteger max, RandomGenerator random) {
+        BigInteger size = size(min, max);
+        int bits = size.bitLength();
+        if (bits < Long.SIZE) {
+            return min.add(BigInteger.valueOf(random.nextLong(size.longValue())));
+        }
+        byte[] bytes = new byte[(bits + 7) / 8];
+        int excess = bytes.length * 8 - bits;
+        while (true) {
+            random.nextBytes(bytes);
+            bytes[0] &= (byte) (0xFF >>> excess);
+            BigInteger candidate = new BigInteger(1, bytes);
+            if (candidate.compareTo(size) < 0) {
+                return min.add(candidate);
+            }
+        }
+    }
+
+    // Submit a guess. Out-of-range guesses are not counted as attempts.
+    GameSession.Outcome submitGuess(BigInteger guess) {
+        if (isFinished()) {
+            return GameSession.Outcome.FINISHED;
+        }
+
+        lastGuess = guess;
+
+        if (guess.compareTo(min) < 0 || guess.compareTo(max) > 0) {
+            return GameSession.Outcome.OUT_OF_RANGE;
+        }
+
+        attempts++;
+
+        int comparison = guess.compareTo(secret);
+        if (comparison == 0) {
+            won = true;
+            return GameSession.Outcome.CORRECT;
+        }
+        return comparison < 0 ? GameSession.Outcome.TOO_LOW : GameSession.Outcome.TOO_HIGH;
+    }
+
+    // Band for a wrong guess, scaled to the range
+    GameSession.Proximity proximity(BigInteger guess) {
+        BigInteger distance = secret.subtract(guess).abs();
+        for (int i = 0; i < bandLimits.length; i++) {
+            if (distance.compareTo(bandLimits[i]) <= 0) {
+                return BANDS[i];
+            }
+        }
+        return GameSession.Proximity.ICE;
+    }
+
+    // Use up one hint, or return null when none are left. Hints don't cost an attempt.
+    GameSession.Hint requestHint() {
+        if (isFinished() || hintsUsed >= hints) {
+            return null;
+        }
+        hintsUsed++;
+        return HINTS[random.nextInt(HINTS.length)];
+    }
+
+    // Plain-text wording of a hint for this session
+    String describe(GameSession.Hint hint) {
+        switch (hint) {
+            case PARITY:
+                return "The number is " + (even ? "even" : "odd");
+            case THIRD:
+                if (secret.compareTo(lowerThirdEnd) < 0) {
+                    return "The number is in the lower third";
+                } else if (secret.compareTo(upperThirdStart) > 0) {
+                    return "The number is in the upper third";
+                }
+                return "The number is in the middle third";
+            case LAST_DIGIT:
+                return "The number ends with " + lastDigit;
+            case DISTANCE:
+                if (lastGuess != null) {
+                    GameSession.Proximity band = proximity(lastGuess);
+                    if (band.compareTo(GameSession.Proximity.WARM) <= 0) {
+                        return "Very close! Within " + bandLimits[GameSession.Proximity.WARM.ordinal()] + " numbers";
+                    } else if (band == GameSession.Proximity.COLD) {
+                        return "Getting warmer! Within " + bandLimits[GameSession.Proximity.COLD.ordinal()] + " numbers";
+                    }
+                    return "Pretty far away!";
+                }
+                return "The number is between " + min + " and " + max;
+            default:
+                if (secret.compareTo(middle) < 0) {
+                    return "The number is in the first half";
+                }
+                return "The number is in the second half";
+        }
+    }
+
+    // Give up on the round (the 'Q' command)
+    void cancel() {
+        cancelled = true;
+    }
+
+    // Points for a won round: fewer attempts means a bigger share of the base points
+    int pointsEarned() {
+        if (!won) {
+            return 0;
+        }
+        return Main.calculatePoints(maxGuesses, basePoints, attempts);
+    }
+
+    boolean isFinished() {
+        return won || cancelled || attempts >= maxGuesses;
+    }
+
+    boolean isWon() {
+        return won;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    BigInteger getMin() {
+        return min;
+    }
+
+    BigInteger getMax() {
+        return max;
+    }
+
+    int getMaxGuesses() {
+        return maxGuesses;
+    }
+
+    int getHints() {
+        return hints;
+    }
+
+    int getHintsLeft() {
+        return hints - hintsUsed;
+    }
+
+    int getHintsUsed() {
+        return hintsUsed;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+
+    BigInteger getSecret() {
+        return secret;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size histogram of nanosecond latencies, laid out the way HdrHistogram
+// lays out its buckets: every power of two is split into 32 linear
+// sub-buckets, so any recorded value is known to within 1/32 (about 3%).
+// Values up to 32 are exact; values past MAX land in the last bucket.
+//
+// Recording is an index computation and one atomic add, with no allocation,
+// from any number of threads. Percentiles walk the buckets.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+
+    // About 18 minutes; anything slower is clamped here
+    static final long MAX = (1L << 40) - 1;
+
+    private static final int BUCKETS = index(MAX) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX));
+        counts.getAndIncrement(index(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Total of all recorded values, in nanoseconds
+    long sum() {
+        return sum.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    // Smallest value that at least this percentage of recordings are at or
+    // below, to bucket precision; 0 when nothing has been recorded
+    long percentile(double percent) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percent / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), max());
+            }
+        }
+        return max();
+    }
+
+    private static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) | (int) ((value >>> shift) & (SUB - 1));
+    }
+
+    // Largest value that falls in a bucket
+    private static long highest(int index) {
+        if (index < SUB) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        long lowest = (long) (SUB | (index & (SUB - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
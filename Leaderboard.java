@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Per-difficulty leaderboards of players' total points.
+//
+// Each board keeps three things:
+//   - every player's running total, in a ConcurrentHashMap keyed by player id
+//   - how many players hold each total, in a Fenwick tree over pages of
+//     AtomicIntegerArray, so "how many players are ahead of me" is a prefix
+//     sum in O(log n) and moving a player is at most O(log n) atomic adds.
+//     A page is allocated when an update first reaches it, so a board with a
+//     handful of players, like the console's, takes under 200 KB, not 4 MB.
+//   - the top K totals, in a ConcurrentSkipListSet that readers walk freely
+//
+// Totals only ever grow, so a player can only enter the top K by scoring,
+// never by someone else dropping out. An update that doesn't beat the lowest
+// total in a full top K (the common case) touches no shared lock at all;
+// only updates that make the top K take the board's lock to keep it at K
+// entries. Updates for one player are serialized on that player.
+//
+// Totals past the Fenwick tree's range all count in its last slot; players
+// up there are ranked from the top K instead, which is exact for anyone in
+// it. A rank read while other players are scoring can be off by the players
+// moving at that moment.
+public class Leaderboard {
+    // Totals counted exactly by the Fenwick tree
+    static final int SCORE_RANGE = 1 << 20;
+
+    // Entries kept in each top list
+    static final int TOP = 100;
+
+    // Fenwick tree cells per page
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private static final Main.Difficulty[] DIFFICULTIES = Main.Difficulty.values();
+
+    // One place on a top list
+    static final class Entry implements Comparable<Entry> {
+        final long score;
+        final String player;
+
+        Entry(long score, String player) {
+            this.score = score;
+            this.player = player;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Long.compare(score, other.score);
+            return byScore != 0 ? byScore : player.compareTo(other.player);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry && compareTo((Entry) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(score) * 31 + player.hashCode();
+        }
+    }
+
+    // One player's total on one board; guarded by its own monitor
+    private static final class Player {
+        final String id;
+        long score;
+
+        Player(String id) {
+            this.id = id;
+        }
+    }
+
+    private final class Board {
+        final ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<>();
+        final AtomicLong playerCount = new AtomicLong();
+        // 1-based cells; a page that was never needed reads as zeros
+        final AtomicReferenceArray<AtomicIntegerArray> tree =
+                new AtomicReferenceArray<>((SCORE_RANGE >>> PAGE_SHIFT) + 1);
+        final ConcurrentSkipListSet<Entry> top = new ConcurrentSkipListSet<>();
+        final Object topLock = new Object();
+        volatile long floor = -1; // lowest total on a full top list, -1 while it has room
+
+        Player player(String id) {
+            return players.computeIfAbsent(id, key -> {
+                playerCount.incrementAndGet();
+                add(0, 1);
+                return new Player(key);
+            });
+        }
+
+        // Fenwick update: one more (or fewer) player holding this total
+        void add(long score, int delta) {
+            for (int i = slot(score) + 1; i <= SCORE_RANGE; i += i & -i) {
+                page(i).getAndAdd(i & PAGE_MASK, delta);
+            }
+        }
+
+        // Fenwick update for one player going from one total to another. The
+        // two update paths join at a common ancestor, past which the +1 and -1
+        // cancel, so walking the lower path until they meet is enough. Points
+        // per round are small, so they usually meet within a few steps.
+        void move(long from, long to) {
+            int down = slot(from) + 1;
+            int up = slot(to) + 1;
+            while (down != up && (down <= SCORE_RANGE || up <= SCORE_RANGE)) {
+                if (down < up) {
+                    page(down).getAndAdd(down & PAGE_MASK, -1);
+                    down += down & -down;
+                } else {
+                    page(up).getAndAdd(up & PAGE_MASK, 1);
+                    up += up & -up;
+                }
+            }
+        }
+
+        // Players holding a total of at most this
+        long atMost(long score) {
+            long count = 0;
+            for (int i = slot(score) + 1; i > 0; i -= i & -i) {
+                AtomicIntegerArray page = tree.get(i >>> PAGE_SHIFT);
+                if (page != null) {
+                    count += page.get(i & PAGE_MASK);
+                }
+            }
+            return count;
+        }
+
+        // The page holding a cell, allocated on first use
+        AtomicIntegerArray page(int cell) {
+            AtomicIntegerArray page = tree.get(cell >>> PAGE_SHIFT);
+            if (page == null) {
+                tree.compareAndSet(cell >>> PAGE_SHIFT, null, new AtomicIntegerArray(PAGE_MASK + 1));
+                page = tree.get(cell >>> PAGE_SHIFT);
+            }
+            return page;
+        }
+
+        void enterTop(Player player, long before, long after) {
+            synchronized (topLock) {
+                top.remove(new Entry(before, player.id));
+                top.add(new Entry(after, player.id));
+                if (top.size() > capacity) {
+                    top.pollFirst();
+                }
+                floor = top.size() >= capacity ? top.first().score : -1;
+            }
+        }
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<Board> boards = new AtomicReferenceArray<>(DIFFICULTIES.length);
+
+    Leaderboard() {
+        this(TOP);
+    }
+
+    Leaderboard(int capacity) {
+        this.capacity = capacity;
+    }
+
+    private static int slot(long score) {
+        return (int) Math.min(score, SCORE_RANGE - 1);
+    }
+
+    // Boards are created on first use, and their Fenwick trees fill in page by page
+    private Board board(Main.Difficulty difficulty) {
+        Board board = boards.get(difficulty.ordinal());
+        if (board == null) {
+            boards.compareAndSet(difficulty.ordinal(), null, new Board());
+            board = boards.get(difficulty.ordinal());
+        }
+        return board;
+    }
+
+    // Add a finished round's points to a player's total. A lost round (0 points) still enters the player.
+    void record(String id, Main.Difficulty difficulty, int points) {
+        Board board = board(difficulty);
+        Player player = board.player(id);
+        synchronized (player) {
+            long before = player.score;
+            long after = before + points;
+            player.score = after;
+            if (after != before) {
+                board.move(before, after);
+            }
+            if (after > board.floor) {
+                board.enterTop(player, before, after);
+            }
+        }
+    }
+
+    // A player's total on a board, 0 if they haven't played it
+    long score(String id, Main.Difficulty difficulty) {
+        Board board = boards.get(difficulty.ordinal());
+        Player player = board == null ? null : board.players.get(id);
+        if (player == null) {
+            return 0;
+        }
+        synchronized (player) {
+            return player.score;
+        }
+    }
+
+    // 1 for the leader, ties share a rank; 0 if the player hasn't played this board
+    long rank(String id, Main.Difficulty difficulty) {
+        Board board = boards.get(difficulty.ordinal());
+        if (board == null || !board.players.containsKey(id)) {
+            return 0;
+        }
+        long score = score(id, difficulty);
+        if (score < SCORE_RANGE - 1) {
+            return Math.max(1, board.playerCount.get() - board.atMost(score) + 1);
+        }
+        // Off the end of the tree: count who is ahead on the top list
+        return board.top.tailSet(new Entry(score + 1, ""), true).size() + 1;
+    }
+
+    // Players on a board
+    long players(Main.Difficulty difficulty) {
+        Board board = boards.get(difficulty.ordinal());
+        return board == null ? 0 : board.playerCount.get();
+    }
+
+    // Up to n leaders, best first
+    List<Entry> top(Main.Difficulty difficulty, int n) {
+        List<Entry> leaders = new ArrayList<>(n);
+        Board board = boards.get(difficulty.ordinal());
+        if (board == null) {
+            return leaders;
+        }
+        Iterator<Entry> best = board.top.descendingIterator();
+        while (best.hasNext() && leaders.size() < n) {
+            leaders.add(best.next());
+        }
+        return leaders;
+    }
+}
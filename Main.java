@@ -1,32 +1,105 @@
-import java.util.Random;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
 
 public class Main {
     // Game settings
-    private static int score = 0;
-    private static int gamesPlayed = 0;
-    private static int bestScore = Integer.MAX_VALUE; // Lower is better
-    private static int totalGuesses = 0;
-    private static Random random = new Random();
-    private static Scanner scanner = new Scanner(System.in);
-
-    // ANSI color codes
-    private static final String RESET = "\u001B[0m";
-    private static final String RED = "\u001B[31m";
-    private static final String GREEN = "\u001B[32m";
-    private static final String YELLOW = "\u001B[33m";
-    private static final String BLUE = "\u001B[34m";
-    private static final String PURPLE = "\u001B[35m";
-    private static final String CYAN = "\u001B[36m";
-    private static final String BOLD = "\u001B[1m";
-    private static final String ORANGE = "\u001B[38;5;214m";
+    private static final GameStats stats = new GameStats();
+    private static final Leaderboard leaderboard = new Leaderboard();
+    private static final String PLAYER = System.getProperty("guess.player", System.getProperty("user.name", "player"));
+    private static HistoryStore history; // null when persistence is off
+    private static ProfileStore profiles; // null when profiles are off
+    private static RoundRecording recording; // null unless -Dguess.record is set
+    private static final Rng rng = Rng.fromProperties(); // -Dguess.seed replays a whole run
+    private static Terminal terminal; // null unless the console is running on a terminal
+    private static CommandReader console = new CommandReader(System.in);
+
+    // ANSI color codes (left empty when NO_COLOR is set or -Dguess.noColor=true)
+    private static final boolean COLOR = System.getenv("NO_COLOR") == null && !Boolean.getBoolean("guess.noColor");
+    private static final String RESET = COLOR ? "\u001B[0m" : "";
+    private static final String RED = COLOR ? "\u001B[31m" : "";
+    private static final String GREEN = COLOR ? "\u001B[32m" : "";
+    private static final String YELLOW = COLOR ? "\u001B[33m" : "";
+    private static final String BLUE = COLOR ? "\u001B[34m" : "";
+    private static final String PURPLE = COLOR ? "\u001B[35m" : "";
+    private static final String CYAN = COLOR ? "\u001B[36m" : "";
+    private static final String BOLD = COLOR ? "\u001B[1m" : "";
+    private static final String ORANGE = COLOR ? "\u001B[38;5;214m" : "";
+
+    // Round output goes through a reusable buffer, flushed once per turn.
+    // Replaced when the console opens the terminal, which replaces System.out.
+    static Renderer screen = new Renderer(System.out, COLOR);
+
+    // Fixed screens, rendered once for this color mode and terminal width
+    private static final Screens screens = Screens.of(COLOR, Screens.columns());
+
+    // Pre-encoded round text
+    private static final byte[] COMMANDS_HELP = Renderer.utf8("💡 Commands: Type 'H' for hint, 'Q' to quit\n");
+    private static final byte[] ATTEMPT = Renderer.utf8("Attempt ");
+    private static final byte[] SLASH = Renderer.utf8("/");
+    private static final byte[] HINTS_OPEN = Renderer.utf8(" [");
+    private static final byte[] HINTS_LEFT = Renderer.utf8(" hints left]: ");
+    private static final byte[] CANCELLED = Renderer.utf8("\nGame cancelled. The number was: ");
+    private static final byte[] NO_HINTS = Renderer.utf8("No hints left!");
+    private static final byte[] OUT_OF_RANGE = Renderer.utf8("Number must be between ");
+    private static final byte[] AND = Renderer.utf8(" and ");
+    private static final byte[] BANG = Renderer.utf8("!");
+    private static final byte[] TOO_LOW = Renderer.utf8("📈 Too low!");
+    private static final byte[] TOO_HIGH = Renderer.utf8("📉 Too high!");
+    private static final byte[] NOT_A_NUMBER = Renderer.utf8("Enter a number, 'H' for hint, or 'Q' to quit!");
+    private static final byte[] HINT_HEADER = Renderer.utf8("\n💡 HINT:");
+    private static final byte[] INDENT = Renderer.utf8("  ");
+    private static final byte[] BURNING = Renderer.utf8("  🔥 Burning hot! You're really close!");
+    private static final byte[] WARM = Renderer.utf8("  🌡️ Getting warm!");
+    private static final byte[] COLD = Renderer.utf8("  ❄️ A bit cold...");
+    private static final byte[] ICE = Renderer.utf8("  🥶 Ice cold! Far away!");
+    private static final byte[] RULED_OUT = Renderer.utf8("  🤔 Earlier replies had already ruled that out");
+    private static final byte[] CANDIDATES = Renderer.utf8("  🔎 ");
+    private static final byte[] CANDIDATES_LEFT = Renderer.utf8(" candidates left");
+    private static final byte[] CANDIDATE_LEFT = Renderer.utf8(" candidate left");
+    private static final byte[] RULE = Renderer.utf8("══════════════════════════════════════════════════════════");
+    private static final byte[] CONGRATULATIONS = Renderer.utf8("               🎉 CONGRATULATIONS! 🎉");
+    private static final byte[] GUESSED = Renderer.utf8("        You guessed the number ");
+    private static final byte[] IN = Renderer.utf8(" in ");
+    private static final byte[] ATTEMPTS_BANG = Renderer.utf8(" attempts!");
+    private static final byte[] GAME_OVER = Renderer.utf8("               💀 GAME OVER! 💀");
+    private static final byte[] SECRET_WAS = Renderer.utf8("        The secret number was: ");
+    private static final byte[] YOU_USED = Renderer.utf8("        You used ");
+    private static final byte[] OF = Renderer.utf8(" of ");
+    private static final byte[] ATTEMPTS = Renderer.utf8(" attempts");
+    private static final byte[] GAMES_PLAYED = Renderer.utf8("  Games Played: ");
+    private static final byte[] TOTAL_SCORE = Renderer.utf8("  Total Score: ");
+    private static final byte[] FINAL_SCORE = Renderer.utf8("  Final Score: ");
+    private static final byte[] POINTS = Renderer.utf8(" points");
+    private static final byte[] AVERAGE_GUESSES = Renderer.utf8("  Average Guesses: ");
+    private static final byte[] AVERAGE_PER_GAME = Renderer.utf8("  Average Guesses per Game: ");
+    private static final byte[] BEST_GAME = Renderer.utf8("  Best Game: ");
+    private static final byte[] GUESSES = Renderer.utf8(" guesses");
+    private static final byte[] YOU_GUESSED = Renderer.utf8("        You guessed ");
+    private static final byte[] EFFICIENCY = Renderer.utf8("        Efficiency: ");
+    private static final byte[] PERCENT_DASH = Renderer.utf8("% - ");
+    private static final byte[] OUTSTANDING = Renderer.utf8("Outstanding! ⭐⭐⭐");
+    private static final byte[] GREAT_JOB = Renderer.utf8("Great job! ⭐⭐");
+    private static final byte[] GOOD_EFFORT = Renderer.utf8("Good effort! ⭐");
+    private static final byte[] KEEP_PRACTICING = Renderer.utf8("Keep practicing!");
+    private static final byte[] NUMBER_WAS = Renderer.utf8("        The number was: ");
+    private static final byte[] RANGE = Renderer.utf8("        Range: ");
+    private static final byte[] TO = Renderer.utf8(" to ");
+    private static final byte[] POINTS_EARNED = Renderer.utf8("🏅 Points earned: ");
+    private static final byte[] TOTAL_OPEN = Renderer.utf8(" (Total: ");
+    private static final byte[] CLOSE = Renderer.utf8(")");
 
     // Difficulty levels
     enum Difficulty {
         EASY(1, 50, 10, 3, 100),
         MEDIUM(1, 100, 15, 2, 200),
         HARD(1, 200, 20, 1, 300),
-        CUSTOM(1, 100, 15, 2, 250);
+        CUSTOM(1, 100, 15, 2, 250),
+        // Only names large range rounds in the statistics; each sets its own range, see LargeRangeSession
+        LARGE(1, Integer.MAX_VALUE, 33, 1, 300);
 
         final int min;
         final int max;
@@ -43,17 +116,46 @@ public class Main {
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--solve")) {
+            Solver.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            Simulator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--replay")) {
+            Playback.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--router")) {
+            ShardRouter.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--stats")) {
+            // A server's totals, or every shard's when it's a router
+            printStatistics(ShardRouter.queryStats(ShardRouter.address(args.length > 1 ? args[1] : "7777")));
+            return;
+        }
+
         boolean playing = true;
 
-        clearScreen();
+        openTerminal();
+        openHistory();
+        openProfiles();
+        openRecording();
+        Metrics.open();
         showWelcomeScreen();
 
         while (playing) {
-            clearScreen();
             showMainMenu();
 
-            int choice = getMenuChoice(1, 6);
+            int choice = getMenuChoice(1, 8);
 
             switch (choice) {
                 case 1:
@@ -69,26 +171,35 @@ public class Main {
                     playCustomGame();
                     break;
                 case 5:
-                    showStatistics();
+                    playLargeRangeGame();
                     break;
                 case 6:
+                    showStatistics();
+                    break;
+                case 7:
+                    showLeaderboard();
+                    break;
+                case 8:
                     playing = false;
                     break;
             }
 
-            if (choice != 6) {
+            if (choice != 8) {
                 System.out.print("\n" + CYAN + BOLD + "Return to main menu? (Y/N): " + RESET);
-                String response = scanner.next().toUpperCase();
-                scanner.nextLine(); // Clear buffer
+                boolean again = console.nextWordIs('Y');
+                console.skipLine(); // Clear buffer
 
-                if (!response.equals("Y")) {
+                if (!again) {
                     playing = false;
                 }
             }
         }
 
         showGoodbyeScreen();
-        scanner.close();
+        closeHistory();
+        closeProfiles();
+        closeRecording();
+        Metrics.close();
     }
 
     // Clear screen
@@ -99,65 +210,30 @@ public class Main {
 
     // Show welcome screen
     private static void showWelcomeScreen() {
-        System.out.println(CYAN + "╔══════════════════════════════════════════════════════════╗" + RESET);
-        System.out.println(PURPLE + BOLD + "           🔢 WELCOME TO GUESS THE NUMBER! 🔢" + RESET);
-        System.out.println(CYAN + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
-
-        System.out.println(YELLOW + BOLD + "🎯 HOW TO PLAY:\n" + RESET);
-        System.out.println("1. " + GREEN + "Choose a difficulty level or set custom range" + RESET);
-        System.out.println("2. " + GREEN + "I'll think of a secret number in that range" + RESET);
-        System.out.println("3. " + GREEN + "You have limited attempts to guess it" + RESET);
-        System.out.println("4. " + GREEN + "I'll tell you if your guess is too high or too low" + RESET);
-        System.out.println("5. " + GREEN + "Use hints wisely to help you guess faster!\n" + RESET);
-
-        System.out.println(YELLOW + BOLD + "🏆 SCORING:\n" + RESET);
-        System.out.println("• " + CYAN + "Fewer guesses = More points" + RESET);
-        System.out.println("• " + CYAN + "Harder difficulty = Higher base points" + RESET);
-        System.out.println("• " + CYAN + "Track your best game (fewest guesses)" + RESET);
-
-        System.out.print("\n" + GREEN + BOLD + "Press Enter to start..." + RESET);
-        scanner.nextLine();
+        screen.text(screens.welcome).flush();
+        console.skipLine();
     }
 
-    // Show main menu
+    // Show main menu, with the current statistics spliced into the cached frame
     private static void showMainMenu() {
-        System.out.println(PURPLE + "══════════════════════════════════════════════════════════" + RESET);
-        System.out.println(CYAN + BOLD + "                     MAIN MENU" + RESET);
-        System.out.println(PURPLE + "══════════════════════════════════════════════════════════\n" + RESET);
+        GameStats.Snapshot snapshot = stats.snapshot();
+        screen.text(screens.menuHead)
+                .text(GAMES_PLAYED).num(snapshot.gamesPlayed).newline()
+                .text(TOTAL_SCORE).num(snapshot.score).text(POINTS).newline();
 
-        // Show current stats
-        System.out.println(YELLOW + BOLD + "📊 CURRENT STATISTICS:\n" + RESET);
-        System.out.println("  Games Played: " + gamesPlayed);
-        System.out.println("  Total Score: " + score + " points");
+        if (snapshot.gamesPlayed > 0) {
+            double avgGuesses = (double) snapshot.totalGuesses / snapshot.gamesPlayed;
+            screen.text(AVERAGE_GUESSES).oneDecimal(avgGuesses).newline();
 
-        if (gamesPlayed > 0) {
-            double avgGuesses = (double) totalGuesses / gamesPlayed;
-            System.out.printf("  Average Guesses: %.1f\n", avgGuesses);
-
-            if (bestScore != Integer.MAX_VALUE) {
-                System.out.println("  Best Game: " + bestScore + " guesses");
+            if (snapshot.bestScore != Integer.MAX_VALUE) {
+                screen.text(BEST_GAME).num(snapshot.bestScore).text(GUESSES).newline();
             }
         }
 
-        System.out.println("\n" + GREEN + BOLD + "🎯 SELECT DIFFICULTY:\n" + RESET);
-        System.out.println("  " + GREEN + "1. Easy Mode (1-50)" + RESET);
-        System.out.println("     • 10 attempts, 3 hints");
-        System.out.println("     • Base points: 100\n");
-
-        System.out.println("  " + BLUE + "2. Medium Mode (1-100)" + RESET);
-        System.out.println("     • 15 attempts, 2 hints");
-        System.out.println("     • Base points: 200\n");
-
-        System.out.println("  " + RED + "3. Hard Mode (1-200)" + RESET);
-        System.out.println("     • 20 attempts, 1 hint");
-        System.out.println("     • Base points: 300\n");
-
-        System.out.println("  " + PURPLE + "4. Custom Range" + RESET);
-        System.out.println("     • Set your own range (1-1000)");
-        System.out.println("     • Dynamic attempts & hints\n");
-
-        System.out.println("  " + CYAN + "5. View Detailed Statistics" + RESET + " 📊\n");
-        System.out.println("  " + ORANGE + "6. Exit Game" + RESET + " 🚪\n");
+        screen.text(screens.menuTail).flush();
+        if (terminal != null) {
+            terminal.keep();
+        }
     }
 
     // Get menu choice
@@ -165,15 +241,13 @@ public class Main {
         while (true) {
             System.out.print(YELLOW + BOLD + "Enter choice (" + min + "-" + max + "): " + RESET);
 
-            if (scanner.hasNextInt()) {
-                int choice = scanner.nextInt();
-                scanner.nextLine();
+            if (console.nextInt()) {
+                int choice = console.number();
+                console.skipLine();
 
                 if (choice >= min && choice <= max) {
                     return choice;
                 }
-            } else {
-                scanner.next();
             }
 
             System.out.println(RED + "Invalid! Enter " + min + "-" + max + RESET);
@@ -182,382 +256,661 @@ public class Main {
 
     // Play game with given difficulty
     private static void playGame(Difficulty difficulty) {
-        clearScreen();
+        // Goes out with the round's first prompt
+        screen.text(screens.banner(difficulty));
 
-        switch (difficulty) {
-            case EASY:
-                System.out.println(GREEN + BOLD + "╔══════════════════════════════════════════════════════════╗" + RESET);
-                System.out.println(GREEN + BOLD + "                         EASY MODE" + RESET);
-                System.out.println(GREEN + BOLD + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
-                break;
-            case MEDIUM:
-                System.out.println(BLUE + BOLD + "╔══════════════════════════════════════════════════════════╗" + RESET);
-                System.out.println(BLUE + BOLD + "                       MEDIUM MODE" + RESET);
-                System.out.println(BLUE + BOLD + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
-                break;
-            case HARD:
-                System.out.println(RED + BOLD + "╔══════════════════════════════════════════════════════════╗" + RESET);
-                System.out.println(RED + BOLD + "                         HARD MODE" + RESET);
-                System.out.println(RED + BOLD + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
-                break;
-        }
-
-        System.out.println(YELLOW + "🎯 I'm thinking of a number between " +
-                difficulty.min + " and " + difficulty.max + RESET);
-        System.out.println(YELLOW + "📊 You have " + difficulty.maxGuesses +
-                " attempts and " + difficulty.hints + " hint(s)\n" + RESET);
-
-        int secretNumber = random.nextInt(difficulty.max - difficulty.min + 1) + difficulty.min;
-        playRound(difficulty, secretNumber);
+        GameConfig config = GameConfig.of(difficulty);
+        RandomGenerator random = beginRound();
+        int secretNumber = Rng.between(random, config.min, config.max);
+        playRound(config, secretNumber, random);
     }
 
     // Play custom game
     private static void playCustomGame() {
-        clearScreen();
-        System.out.println(PURPLE + BOLD + "╔══════════════════════════════════════════════════════════╗" + RESET);
-        System.out.println(PURPLE + BOLD + "                       CUSTOM MODE" + RESET);
-        System.out.println(PURPLE + BOLD + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
-
-        System.out.println(YELLOW + "Create your own challenge!\n" + RESET);
+        screen.text(screens.banner(Difficulty.CUSTOM)).flush();
 
         int min = getNumberInput("Enter minimum number (1-500): ", 1, 500);
         int max = getNumberInput("Enter maximum number (" + (min + 1) + "-1000): ", min + 1, 1000);
 
-        int range = max - min + 1;
+        GameConfig config = GameConfig.custom(min, max);
+
+        System.out.println("\n" + GREEN + BOLD + "🎮 CUSTOM GAME SETTINGS:" + RESET);
+        System.out.println(YELLOW + "  Range: " + min + " to " + max);
+        System.out.println("  Attempts: " + config.maxGuesses);
+        System.out.println("  Hints: " + config.hints);
+        System.out.println("  Range size: " + (max - min + 1) + " numbers\n" + RESET);
+
+        RandomGenerator random = beginRound();
+        int secretNumber = Rng.between(random, min, max);
+
+        System.out.println(YELLOW + "🎯 I'm thinking of a number between " + min + " and " + max + RESET);
+        System.out.println(YELLOW + "📊 You have " + config.maxGuesses + " attempts and " + config.hints +
+                " hint(s)\n" + RESET);
+
+        playRound(config, secretNumber, random);
+    }
+
+    // Play a game over a range of any size
+    private static void playLargeRangeGame() {
+        screen.text(screens.banner(Difficulty.LARGE)).flush();
+
+        BigInteger min = getBigNumberInput("Enter minimum number: ", null);
+        BigInteger max = getBigNumberInput("Enter maximum number (above " + min + "): ", min.add(BigInteger.ONE));
+
+        BigInteger range = LargeRangeSession.size(min, max);
         int maxGuesses = calculateMaxGuesses(range);
         int hints = calculateHints(range);
 
-        System.out.println("\n" + GREEN + BOLD + "🎮 CUSTOM GAME SETTINGS:" + RESET);
+        System.out.println("\n" + GREEN + BOLD + "🎮 LARGE RANGE SETTINGS:" + RESET);
         System.out.println(YELLOW + "  Range: " + min + " to " + max);
         System.out.println("  Attempts: " + maxGuesses);
         System.out.println("  Hints: " + hints);
         System.out.println("  Range size: " + range + " numbers\n" + RESET);
 
-        int secretNumber = random.nextInt(max - min + 1) + min;
+        RandomGenerator random = rng.next();
+        BigInteger secretNumber = LargeRangeSession.uniform(min, max, random);
 
-        // Create custom difficulty
-        Difficulty custom = Difficulty.CUSTOM;
         System.out.println(YELLOW + "🎯 I'm thinking of a number between " + min + " and " + max + RESET);
         System.out.println(YELLOW + "📊 You have " + maxGuesses + " attempts and " + hints + " hint(s)\n" + RESET);
 
-        playRoundCustom(min, max, maxGuesses, hints, secretNumber);
+        playRoundLarge(new LargeRangeSession(min, max, maxGuesses, hints, secretNumber, random));
+    }
+
+    // Play a round with the given settings, preset or custom
+    static void playRound(GameConfig config, int secretNumber, RandomGenerator random) {
+        Difficulty difficulty = config.difficulty;
+        GameSession session = config.newSession(secretNumber, random);
+        Metrics.roundStarted(difficulty);
+
+        if (!playSession(new IntRound(session))) {
+            Metrics.roundCancelled(difficulty);
+            recordRound(difficulty, session, 0);
+            return;
+        }
+
+        if (config.isCustom()) {
+            showCustomRoundResult(session.isWon(), session.getAttempts(), config.maxGuesses, secretNumber,
+                    config.min, config.max);
+        } else {
+            showRoundResult(session.isWon(), session.getAttempts(), config.maxGuesses, secretNumber, difficulty);
+        }
+
+        // Update stats
+        int pointsEarned = updateStats(config, session.isWon(), session.getAttempts());
+        Metrics.roundFinished(difficulty, session.isWon(), pointsEarned);
+        logRound(difficulty, session, pointsEarned);
+        recordRound(difficulty, session, pointsEarned);
     }
 
-    // Play a round
-    private static void playRound(Difficulty difficulty, int secretNumber) {
-        int attempts = 0;
-        int hintsUsed = 0;
-        boolean won = false;
-        int lastGuess = -1;
+    // Play large range round
+    private static void playRoundLarge(LargeRangeSession session) {
+        Metrics.roundStarted(Difficulty.LARGE);
+
+        if (!playSession(new LargeRound(session))) {
+            Metrics.roundCancelled(Difficulty.LARGE);
+            return;
+        }
+
+        int attempts = session.getAttempts();
+        showLargeRoundResult(session);
+
+        int pointsEarned = session.pointsEarned();
+        stats.record(Difficulty.LARGE, session.isWon(), attempts, pointsEarned);
+        Metrics.roundFinished(Difficulty.LARGE, session.isWon(), pointsEarned);
+        leaderboard.record(PLAYER, Difficulty.LARGE, pointsEarned);
+        recordProfile(Difficulty.LARGE, session.isWon(), attempts, pointsEarned);
+        logRound(session, pointsEarned);
+
+        if (session.isWon()) {
+            screen.color(Renderer.GREEN).text(POINTS_EARNED).num(pointsEarned).color(Renderer.RESET).newline();
+            screen.flush();
+        }
+    }
+
+    // One round as the console loop sees it, over an int range or a large one
+    private interface ConsoleRound {
+        boolean isFinished();
+
+        int getAttempts();
+
+        int getMaxGuesses();
+
+        int getHintsLeft();
+
+        GameSession.Hint requestHint();
+
+        // Read the next command; a number is then the one guess() plays
+        CommandReader.Command read();
+
+        // Play the number just read and show the answer
+        void guess();
 
-        System.out.println(CYAN + "💡 Commands: Type 'H' for hint, 'Q' to quit\n" + RESET);
+        void showHint(GameSession.Hint hint);
 
-        while (attempts < difficulty.maxGuesses && !won) {
-            attempts++;
-            System.out.print(YELLOW + BOLD + "Attempt " + attempts + "/" + difficulty.maxGuesses +
-                    " [" + (difficulty.hints - hintsUsed) + " hints left]: " + RESET);
+        // Give up the round and show its secret
+        void quit();
+    }
+
+    // Drive a round from console input. Returns false if the player quit.
+    private static boolean playSession(ConsoleRound round) {
+        screen.color(Renderer.CYAN).text(COMMANDS_HELP).color(Renderer.RESET).newline();
+
+        while (!round.isFinished()) {
+            screen.color(Renderer.YELLOW).color(Renderer.BOLD)
+                    .text(ATTEMPT).num(round.getAttempts() + 1).text(SLASH).num(round.getMaxGuesses())
+                    .text(HINTS_OPEN).num(round.getHintsLeft()).text(HINTS_LEFT)
+                    .color(Renderer.RESET);
+            screen.flush();
 
-            String input = scanner.nextLine().trim().toUpperCase();
+            CommandReader.Command command = round.read();
 
-            if (input.equals("Q")) {
-                System.out.println(RED + "\nGame cancelled. The number was: " + secretNumber + RESET);
-                return;
+            if (command == CommandReader.Command.QUIT) {
+                round.quit();
+                screen.flush();
+                return false;
             }
 
-            if (input.equals("H")) {
-                if (hintsUsed < difficulty.hints) {
-                    giveHint(secretNumber, lastGuess, difficulty.min, difficulty.max);
-                    hintsUsed++;
-                    attempts--; // Don't count hint as attempt
-                    continue;
+            if (command == CommandReader.Command.HINT) {
+                GameSession.Hint hint = round.requestHint();
+                if (hint != null) {
+                    round.showHint(hint);
                 } else {
-                    System.out.println(RED + "No hints left!" + RESET);
-                    attempts--;
-                    continue;
+                    screen.color(Renderer.RED).text(NO_HINTS).color(Renderer.RESET).newline();
                 }
+                continue;
             }
 
-            try {
-                int guess = Integer.parseInt(input);
-                lastGuess = guess;
-
-                if (guess < difficulty.min || guess > difficulty.max) {
-                    System.out.println(RED + "Number must be between " + difficulty.min +
-                            " and " + difficulty.max + "!" + RESET);
-                    attempts--;
-                } else if (guess == secretNumber) {
-                    won = true;
-                } else if (guess < secretNumber) {
-                    System.out.println(BLUE + "📈 Too low!" + RESET);
-                    giveProximityHint(secretNumber, guess);
-                } else {
-                    System.out.println(RED + "📉 Too high!" + RESET);
-                    giveProximityHint(secretNumber, guess);
-                }
-            } catch (NumberFormatException e) {
-                System.out.println(RED + "Enter a number, 'H' for hint, or 'Q' to quit!" + RESET);
-                attempts--;
+            if (command == CommandReader.Command.NUMBER) {
+                long start = Metrics.start();
+                round.guess();
+                Metrics.guess(start);
+            } else {
+                screen.color(Renderer.RED).text(NOT_A_NUMBER).color(Renderer.RESET).newline();
             }
         }
+        screen.flush();
+        return true;
+    }
 
-        showRoundResult(won, attempts, difficulty.maxGuesses, secretNumber, difficulty);
+    // A preset or custom round; every command goes into the recording, if one is being made
+    private static final class IntRound implements ConsoleRound {
+        private final GameSession session;
 
-        // Update stats
-        updateStats(won, attempts, difficulty);
-    }
+        IntRound(GameSession session) {
+            this.session = session;
+        }
 
-    // Play custom round
-    private static void playRoundCustom(int min, int max, int maxGuesses, int hints, int secretNumber) {
-        int attempts = 0;
-        int hintsUsed = 0;
-        boolean won = false;
-        int lastGuess = -1;
+        public boolean isFinished() {
+            return session.isFinished();
+        }
 
-        System.out.println(CYAN + "💡 Commands: Type 'H' for hint, 'Q' to quit\n" + RESET);
+        public int getAttempts() {
+            return session.getAttempts();
+        }
 
-        while (attempts < maxGuesses && !won) {
-            attempts++;
-            System.out.print(YELLOW + BOLD + "Attempt " + attempts + "/" + maxGuesses +
-                    " [" + (hints - hintsUsed) + " hints left]: " + RESET);
+        public int getMaxGuesses() {
+            return session.getMaxGuesses();
+        }
 
-            String input = scanner.nextLine().trim().toUpperCase();
+        public int getHintsLeft() {
+            return session.getHintsLeft();
+        }
 
-            if (input.equals("Q")) {
-                System.out.println(RED + "\nGame cancelled. The number was: " + secretNumber + RESET);
-                return;
-            }
+        public GameSession.Hint requestHint() {
+            return session.requestHint();
+        }
 
-            if (input.equals("H")) {
-                if (hintsUsed < hints) {
-                    giveHint(secretNumber, lastGuess, min, max);
-                    hintsUsed++;
-                    attempts--;
-                    continue;
-                } else {
-                    System.out.println(RED + "No hints left!" + RESET);
-                    attempts--;
-                    continue;
-                }
+        public CommandReader.Command read() {
+            CommandReader.Command command = console.command();
+            switch (command) {
+                case QUIT:
+                    recordInput(RoundRecording.QUIT, 0);
+                    break;
+                case HINT:
+                    recordInput(RoundRecording.HINT, 0);
+                    break;
+                case NUMBER:
+                    recordInput(RoundRecording.GUESS, console.number());
+                    break;
+                default:
+                    recordInput(RoundRecording.INVALID, 0);
+                    break;
             }
+            return command;
+        }
 
-            try {
-                int guess = Integer.parseInt(input);
-                lastGuess = guess;
-
-                if (guess < min || guess > max) {
-                    System.out.println(RED + "Number must be between " + min +
-                            " and " + max + "!" + RESET);
-                    attempts--;
-                } else if (guess == secretNumber) {
-                    won = true;
-                } else if (guess < secretNumber) {
-                    System.out.println(BLUE + "📈 Too low!" + RESET);
-                    giveProximityHint(secretNumber, guess);
-                } else {
-                    System.out.println(RED + "📉 Too high!" + RESET);
-                    giveProximityHint(secretNumber, guess);
-                }
-            } catch (NumberFormatException e) {
-                System.out.println(RED + "Enter a number, 'H' for hint, or 'Q' to quit!" + RESET);
-                attempts--;
+        public void guess() {
+            int guess = console.number();
+            boolean ruledOut = session.isRuledOut(guess);
+
+            switch (session.submitGuess(guess)) {
+                case OUT_OF_RANGE:
+                    screen.color(Renderer.RED).text(OUT_OF_RANGE).num(session.getMin())
+                            .text(AND).num(session.getMax()).text(BANG).color(Renderer.RESET).newline();
+                    break;
+                case TOO_LOW:
+                    screen.color(Renderer.BLUE).text(TOO_LOW).color(Renderer.RESET).newline();
+                    giveProximityHint(session.getSecret(), guess);
+                    showCandidates(session, ruledOut);
+                    break;
+                case TOO_HIGH:
+                    screen.color(Renderer.RED).text(TOO_HIGH).color(Renderer.RESET).newline();
+                    giveProximityHint(session.getSecret(), guess);
+                    showCandidates(session, ruledOut);
+                    break;
+                default:
+                    break;
             }
         }
 
-        showCustomRoundResult(won, attempts, maxGuesses, secretNumber, min, max);
-
-        // Update stats for custom game
-        gamesPlayed++;
-        totalGuesses += attempts;
-        if (won && attempts < bestScore) {
-            bestScore = attempts;
+        public void showHint(GameSession.Hint hint) {
+            giveHint(session, hint);
         }
 
-        // Calculate points for custom game
-        if (won) {
-            int range = max - min + 1;
-            int basePoints = Math.min(300, 50 + range / 2);
-            double efficiency = (double) (maxGuesses - attempts + 1) / maxGuesses;
-            int pointsEarned = (int) (basePoints * efficiency);
-            score += pointsEarned;
-            System.out.println(GREEN + "🏅 Points earned: " + pointsEarned + RESET);
+        public void quit() {
+            session.cancel();
+            screen.color(Renderer.RED).text(CANCELLED).num(session.getSecret()).color(Renderer.RESET).newline();
         }
     }
 
-    // Give hint
-    private static void giveHint(int secret, int lastGuess, int min, int max) {
-        Random rand = new Random();
-        int hintType = rand.nextInt(5);
+    // A large range round, guesses parsed as BigInteger
+    private static final class LargeRound implements ConsoleRound {
+        private final LargeRangeSession session;
 
-        System.out.println(ORANGE + "\n💡 HINT:" + RESET);
+        LargeRound(LargeRangeSession session) {
+            this.session = session;
+        }
 
-        switch (hintType) {
-            case 0:
-                System.out.println(ORANGE + "  The number is " +
-                        (secret % 2 == 0 ? "even" : "odd") + RESET);
-                break;
+        public boolean isFinished() {
+            return session.isFinished();
+        }
 
-            case 1:
-                int range = max - min + 1;
-                if (secret < min + range/3) {
-                    System.out.println(ORANGE + "  The number is in the lower third" + RESET);
-                } else if (secret > max - range/3) {
-                    System.out.println(ORANGE + "  The number is in the upper third" + RESET);
-                } else {
-                    System.out.println(ORANGE + "  The number is in the middle third" + RESET);
-                }
-                break;
+        public int getAttempts() {
+            return session.getAttempts();
+        }
 
-            case 2:
-                if (secret % 10 == 0) {
-                    System.out.println(ORANGE + "  The number ends with 0" + RESET);
-                } else {
-                    System.out.println(ORANGE + "  The number ends with " + (secret % 10) + RESET);
-                }
-                break;
+        public int getMaxGuesses() {
+            return session.getMaxGuesses();
+        }
 
-            case 3:
-                if (lastGuess != -1) {
-                    int diff = Math.abs(secret - lastGuess);
-                    if (diff <= 10) {
-                        System.out.println(ORANGE + "  Very close! Within 10 numbers" + RESET);
-                    } else if (diff <= 25) {
-                        System.out.println(ORANGE + "  Getting warmer! Within 25 numbers" + RESET);
-                    } else {
-                        System.out.println(ORANGE + "  Pretty far away!" + RESET);
-                    }
-                } else {
-                    System.out.println(ORANGE + "  The number is between " + min + " and " + max + RESET);
-                }
-                break;
+        public int getHintsLeft() {
+            return session.getHintsLeft();
+        }
 
-            case 4:
-                if (secret < (min + max) / 2) {
-                    System.out.println(ORANGE + "  The number is in the first half" + RESET);
-                } else {
-                    System.out.println(ORANGE + "  The number is in the second half" + RESET);
-                }
-                break;
+        public GameSession.Hint requestHint() {
+            return session.requestHint();
+        }
+
+        public CommandReader.Command read() {
+            return console.bigCommand();
+        }
+
+        public void guess() {
+            BigInteger guess = console.bigNumber();
+
+            switch (session.submitGuess(guess)) {
+                case OUT_OF_RANGE:
+                    screen.color(Renderer.RED).text(OUT_OF_RANGE).text(session.getMin().toString())
+                            .text(AND).text(session.getMax().toString()).text(BANG)
+                            .color(Renderer.RESET).newline();
+                    break;
+                case TOO_LOW:
+                    screen.color(Renderer.BLUE).text(TOO_LOW).color(Renderer.RESET).newline();
+                    showProximity(session.proximity(guess));
+                    break;
+                case TOO_HIGH:
+                    screen.color(Renderer.RED).text(TOO_HIGH).color(Renderer.RESET).newline();
+                    showProximity(session.proximity(guess));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        public void showHint(GameSession.Hint hint) {
+            Metrics.hint(hint);
+            giveHint(session.describe(hint));
         }
-        System.out.println();
+
+        public void quit() {
+            session.cancel();
+            screen.color(Renderer.RED).text(CANCELLED).text(session.getSecret().toString())
+                    .color(Renderer.RESET).newline();
+        }
+    }
+
+    // Give hint
+    static void giveHint(GameSession session, GameSession.Hint hint) {
+        Metrics.hint(hint);
+        showHint(session.describe(hint));
+        showCandidates(session, false);
+        screen.newline();
+    }
+
+    private static void giveHint(String text) {
+        showHint(text);
+        screen.newline();
+    }
+
+    private static void showHint(String text) {
+        screen.color(Renderer.ORANGE).text(HINT_HEADER).color(Renderer.RESET).newline();
+        screen.color(Renderer.ORANGE).text(INDENT).text(text).color(Renderer.RESET).newline();
+    }
+
+    // How many secrets are still possible, and whether the guess just made was one of them
+    private static void showCandidates(GameSession session, boolean ruledOut) {
+        if (ruledOut) {
+            screen.color(Renderer.ORANGE).text(RULED_OUT).color(Renderer.RESET).newline();
+        }
+        long left = session.candidatesLeft();
+        screen.color(Renderer.CYAN).text(CANDIDATES).num(left).text(left == 1 ? CANDIDATE_LEFT : CANDIDATES_LEFT)
+                .color(Renderer.RESET).newline();
     }
 
     // Give proximity hint
-    private static void giveProximityHint(int secret, int guess) {
-        int difference = Math.abs(secret - guess);
-
-        if (difference <= 3) {
-            System.out.println(GREEN + "  🔥 Burning hot! You're really close!" + RESET);
-        } else if (difference <= 10) {
-            System.out.println(YELLOW + "  🌡️ Getting warm!" + RESET);
-        } else if (difference <= 25) {
-            System.out.println(BLUE + "  ❄️ A bit cold..." + RESET);
-        } else {
-            System.out.println(PURPLE + "  🥶 Ice cold! Far away!" + RESET);
+    static void giveProximityHint(int secret, int guess) {
+        showProximity(GameSession.Proximity.of(secret, guess));
+    }
+
+    private static void showProximity(GameSession.Proximity proximity) {
+        switch (proximity) {
+            case BURNING:
+                screen.color(Renderer.GREEN).text(BURNING);
+                break;
+            case WARM:
+                screen.color(Renderer.YELLOW).text(WARM);
+                break;
+            case COLD:
+                screen.color(Renderer.BLUE).text(COLD);
+                break;
+            case ICE:
+                screen.color(Renderer.PURPLE).text(ICE);
+                break;
         }
+        screen.color(Renderer.RESET).newline();
     }
 
     // Show round result
     private static void showRoundResult(boolean won, int attempts, int maxGuesses,
                                         int secretNumber, Difficulty difficulty) {
-        System.out.println("\n" + PURPLE + "══════════════════════════════════════════════════════════" + RESET);
+        screen.newline().color(Renderer.PURPLE).text(RULE).color(Renderer.RESET).newline();
 
         if (won) {
-            System.out.println(GREEN + BOLD + "               🎉 CONGRATULATIONS! 🎉" + RESET);
-            System.out.println(GREEN + "        You guessed the number " + secretNumber +
-                    " in " + attempts + " attempts!" + RESET);
+            screen.color(Renderer.GREEN).color(Renderer.BOLD).text(CONGRATULATIONS).color(Renderer.RESET).newline();
+            screen.color(Renderer.GREEN).text(GUESSED).num(secretNumber)
+                    .text(IN).num(attempts).text(ATTEMPTS_BANG).color(Renderer.RESET).newline();
         } else {
-            System.out.println(RED + BOLD + "               💀 GAME OVER! 💀" + RESET);
-            System.out.println(RED + "        The secret number was: " + secretNumber + RESET);
-            System.out.println(RED + "        You used " + attempts + " of " + maxGuesses +
-                    " attempts" + RESET);
+            screen.color(Renderer.RED).color(Renderer.BOLD).text(GAME_OVER).color(Renderer.RESET).newline();
+            screen.color(Renderer.RED).text(SECRET_WAS).num(secretNumber).color(Renderer.RESET).newline();
+            screen.color(Renderer.RED).text(YOU_USED).num(attempts).text(OF).num(maxGuesses)
+                    .text(ATTEMPTS).color(Renderer.RESET).newline();
         }
 
-        System.out.println(PURPLE + "══════════════════════════════════════════════════════════" + RESET);
+        screen.color(Renderer.PURPLE).text(RULE).color(Renderer.RESET).newline();
+        screen.flush();
     }
 
     // Show custom round result
     private static void showCustomRoundResult(boolean won, int attempts, int maxGuesses,
                                               int secretNumber, int min, int max) {
-        System.out.println("\n" + PURPLE + "══════════════════════════════════════════════════════════" + RESET);
+        screen.newline().color(Renderer.PURPLE).text(RULE).color(Renderer.RESET).newline();
 
         if (won) {
-            System.out.println(GREEN + BOLD + "               🎉 CONGRATULATIONS! 🎉" + RESET);
-            System.out.println(GREEN + "        You guessed " + secretNumber +
-                    " in " + attempts + "/" + maxGuesses + " attempts!" + RESET);
+            screen.color(Renderer.GREEN).color(Renderer.BOLD).text(CONGRATULATIONS).color(Renderer.RESET).newline();
+            screen.color(Renderer.GREEN).text(YOU_GUESSED).num(secretNumber).text(IN).num(attempts)
+                    .text(SLASH).num(maxGuesses).text(ATTEMPTS_BANG).color(Renderer.RESET).newline();
 
             // Performance rating
             double efficiency = (attempts * 100.0) / maxGuesses;
-            System.out.print(YELLOW + "        Efficiency: " +
-                    String.format("%.1f", efficiency) + "% - " + RESET);
+            screen.color(Renderer.YELLOW).text(EFFICIENCY).oneDecimal(efficiency).text(PERCENT_DASH)
+                    .color(Renderer.RESET);
 
             if (efficiency < 30) {
-                System.out.println(GREEN + "Outstanding! ⭐⭐⭐" + RESET);
+                screen.color(Renderer.GREEN).text(OUTSTANDING);
             } else if (efficiency < 50) {
-                System.out.println(BLUE + "Great job! ⭐⭐" + RESET);
+                screen.color(Renderer.BLUE).text(GREAT_JOB);
             } else if (efficiency < 70) {
-                System.out.println(YELLOW + "Good effort! ⭐" + RESET);
+                screen.color(Renderer.YELLOW).text(GOOD_EFFORT);
             } else {
-                System.out.println(ORANGE + "Keep practicing!" + RESET);
+                screen.color(Renderer.ORANGE).text(KEEP_PRACTICING);
             }
+            screen.color(Renderer.RESET).newline();
         } else {
-            System.out.println(RED + BOLD + "               💀 GAME OVER! 💀" + RESET);
-            System.out.println(RED + "        The number was: " + secretNumber + RESET);
-            System.out.println(RED + "        Range: " + min + " to " + max + RESET);
+            screen.color(Renderer.RED).color(Renderer.BOLD).text(GAME_OVER).color(Renderer.RESET).newline();
+            screen.color(Renderer.RED).text(NUMBER_WAS).num(secretNumber).color(Renderer.RESET).newline();
+            screen.color(Renderer.RED).text(RANGE).num(min).text(TO).num(max).color(Renderer.RESET).newline();
         }
 
-        System.out.println(PURPLE + "══════════════════════════════════════════════════════════" + RESET);
+        screen.color(Renderer.PURPLE).text(RULE).color(Renderer.RESET).newline();
+        screen.flush();
+    }
+
+    // Show large range round result
+    private static void showLargeRoundResult(LargeRangeSession session) {
+        screen.newline().color(Renderer.PURPLE).text(RULE).color(Renderer.RESET).newline();
+
+        if (session.isWon()) {
+            screen.color(Renderer.GREEN).color(Renderer.BOLD).text(CONGRATULATIONS).color(Renderer.RESET).newline();
+            screen.color(Renderer.GREEN).text(YOU_GUESSED).text(session.getSecret().toString())
+                    .text(IN).num(session.getAttempts()).text(SLASH).num(session.getMaxGuesses())
+                    .text(ATTEMPTS_BANG).color(Renderer.RESET).newline();
+        } else {
+            screen.color(Renderer.RED).color(Renderer.BOLD).text(GAME_OVER).color(Renderer.RESET).newline();
+            screen.color(Renderer.RED).text(NUMBER_WAS).text(session.getSecret().toString())
+                    .color(Renderer.RESET).newline();
+            screen.color(Renderer.RED).text(RANGE).text(session.getMin().toString())
+                    .text(TO).text(session.getMax().toString()).color(Renderer.RESET).newline();
+        }
+
+        screen.color(Renderer.PURPLE).text(RULE).color(Renderer.RESET).newline();
+        screen.flush();
     }
 
     // Update statistics
-    private static void updateStats(boolean won, int attempts, Difficulty difficulty) {
-        gamesPlayed++;
-        totalGuesses += attempts;
+    static int updateStats(GameConfig config, boolean won, int attempts) {
+        int pointsEarned = won ? config.points(attempts) : 0;
+
+        stats.record(config.difficulty, won, attempts, pointsEarned);
+        leaderboard.record(PLAYER, config.difficulty, pointsEarned);
+        recordProfile(config.difficulty, won, attempts, pointsEarned);
 
         if (won) {
-            if (attempts < bestScore) {
-                bestScore = attempts;
+            screen.color(Renderer.GREEN).text(POINTS_EARNED).num(pointsEarned);
+            if (!config.isCustom()) {
+                screen.text(TOTAL_OPEN).num(stats.snapshot().score).text(CLOSE);
             }
+            screen.color(Renderer.RESET).newline();
+            screen.flush();
+        }
+        return pointsEarned;
+    }
+
+    // Take the terminal over for repainting, if there is one. Only the
+    // interactive console does; the other modes keep a plain System.out.
+    private static void openTerminal() {
+        terminal = Terminal.open();
+        if (terminal != null) {
+            console = new CommandReader(terminal.input(System.in));
+            screen = new Renderer(System.out, COLOR);
+        }
+    }
 
-            // Calculate points
-            double efficiency = (double) (difficulty.maxGuesses - attempts + 1) / difficulty.maxGuesses;
-            int pointsEarned = (int) (difficulty.basePoints * efficiency);
-            score += pointsEarned;
+    // Rebuild statistics from the history store (-Dguess.history, empty to disable) and keep it open
+    private static void openHistory() {
+        String directory = System.getProperty("guess.history", "guess-history");
+        if (directory.isEmpty()) {
+            return;
+        }
+        Path path = Path.of(directory);
+        try {
+            HistoryStore.migrate(Path.of("guess-history.log"), path);
+            history = HistoryStore.open(path, stats);
+        } catch (IOException e) {
+            System.out.println(RED + "Game history unavailable (" + e.getMessage() + "), playing without it" + RESET);
+        }
+    }
 
-            System.out.println(GREEN + "🏅 Points earned: " + pointsEarned +
-                    " (Total: " + score + ")" + RESET);
+    // Load the player's profile store (-Dguess.profiles, empty to disable). One player, so a small cache.
+    private static void openProfiles() {
+        String directory = System.getProperty("guess.profiles", "guess-profiles");
+        if (directory.isEmpty()) {
+            return;
+        }
+        try {
+            profiles = ProfileStore.open(Path.of(directory), 64);
+        } catch (IOException e) {
+            System.out.println(RED + "Player profiles unavailable (" + e.getMessage() + "), playing without them" +
+                    RESET);
+        }
+    }
+
+    private static void recordProfile(Difficulty difficulty, boolean won, int attempts, int pointsEarned) {
+        if (profiles != null) {
+            try {
+                profiles.record(PLAYER, difficulty, won, attempts, pointsEarned);
+            } catch (UncheckedIOException e) {
+                System.out.println(RED + "Could not update your profile: " + e.getMessage() + RESET);
+            }
+        }
+    }
+
+    // Append a finished round to the history store
+    private static void logRound(Difficulty difficulty, GameSession session, int pointsEarned) {
+        if (history != null) {
+            history.append(difficulty, session.isWon(), session.getAttempts(), session.getHintsUsed(),
+                    session.getMin(), session.getMax(), session.getSecret(), pointsEarned);
+        }
+    }
+
+    // Bounds and secrets past the int range are logged as 0; replay only needs the outcome
+    private static void logRound(LargeRangeSession session, int pointsEarned) {
+        if (history != null) {
+            history.append(Difficulty.LARGE, session.isWon(), session.getAttempts(), session.getHintsUsed(),
+                    loggable(session.getMin()), loggable(session.getMax()), loggable(session.getSecret()),
+                    pointsEarned);
+        }
+    }
+
+    private static int loggable(BigInteger value) {
+        return value.bitLength() < Integer.SIZE ? value.intValue() : 0;
+    }
+
+    // Stream for a new round, noted in the recording when one is being made
+    private static RandomGenerator beginRound() {
+        long seed = rng.nextSeed();
+        if (recording != null) {
+            recording.begin(seed);
+        }
+        return Rng.stream(seed);
+    }
+
+    // Record rounds to replay later with --replay (-Dguess.record=<file>); large range rounds aren't recorded
+    private static void openRecording() {
+        String file = System.getProperty("guess.record", "");
+        if (file.isEmpty()) {
+            return;
+        }
+        try {
+            recording = RoundRecording.open(Path.of(file));
+        } catch (IOException e) {
+            System.out.println(RED + "Cannot record rounds (" + e.getMessage() + "), playing without it" + RESET);
+        }
+    }
+
+    private static void recordInput(byte tag, int value) {
+        if (recording != null) {
+            recording.input(tag, value);
+        }
+    }
+
+    private static void recordRound(Difficulty difficulty, GameSession session, int pointsEarned) {
+        if (recording != null) {
+            recording.finish(difficulty, session, pointsEarned);
+            recording.flush();
+        }
+    }
+
+    private static void closeRecording() {
+        if (recording != null) {
+            try {
+                recording.close();
+            } catch (IOException e) {
+                System.out.println(RED + "Could not save recorded rounds: " + e.getMessage() + RESET);
+            }
+        }
+    }
+
+    private static void closeHistory() {
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.out.println(RED + "Could not save game history: " + e.getMessage() + RESET);
+            }
+        }
+    }
+
+    private static void closeProfiles() {
+        if (profiles != null) {
+            try {
+                profiles.close();
+            } catch (IOException e) {
+                System.out.println(RED + "Could not save player profiles: " + e.getMessage() + RESET);
+            }
         }
     }
 
     // Show statistics
     private static void showStatistics() {
         clearScreen();
+        printStatistics(stats.snapshot());
+        printProfile();
+
+        System.out.print("\n" + CYAN + BOLD + "Press Enter to continue..." + RESET);
+        console.skipLine();
+    }
+
+    private static void printStatistics(GameStats.Snapshot snapshot) {
         System.out.println(CYAN + "╔══════════════════════════════════════════════════════════╗" + RESET);
         System.out.println(YELLOW + BOLD + "                  GAME STATISTICS" + RESET);
         System.out.println(CYAN + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
 
         System.out.println(YELLOW + BOLD + "📊 OVERALL PERFORMANCE:\n" + RESET);
-        System.out.println("  Games Played: " + gamesPlayed);
-        System.out.println("  Total Score: " + score + " points");
+        System.out.println("  Games Played: " + snapshot.gamesPlayed);
+        System.out.println("  Total Score: " + snapshot.score + " points");
 
-        if (gamesPlayed > 0) {
-            double avgGuesses = (double) totalGuesses / gamesPlayed;
-            double winRate = (gamesPlayed > 0 ?
-                    ((gamesPlayed - countLosses()) * 100.0) / gamesPlayed : 0);
+        if (snapshot.gamesPlayed > 0) {
+            double avgGuesses = (double) snapshot.totalGuesses / snapshot.gamesPlayed;
 
             System.out.printf("  Average Guesses: %.1f\n", avgGuesses);
-            System.out.printf("  Win Rate: %.1f%%\n", winRate);
+            System.out.printf("  Win Rate: %.1f%% (%d won, %d lost)\n",
+                    snapshot.winRate(), snapshot.wins, snapshot.losses);
+
+            if (snapshot.bestScore != Integer.MAX_VALUE) {
+                System.out.println("  Best Game: " + snapshot.bestScore + " guesses");
+            }
 
-            if (bestScore != Integer.MAX_VALUE) {
-                System.out.println("  Best Game: " + bestScore + " guesses");
+            System.out.println("\n" + BLUE + BOLD + "🎚️ BY DIFFICULTY:\n" + RESET);
+            for (Difficulty difficulty : Difficulty.values()) {
+                GameStats.DifficultySnapshot played = snapshot.of(difficulty);
+                if (played.gamesPlayed() == 0) {
+                    continue;
+                }
+                System.out.printf("  %-7s %d won, %d lost", difficulty, played.wins, played.losses);
+                if (played.wins > 0) {
+                    System.out.printf(" | median %d, p90 %d guesses to win",
+                            played.median(), played.percentile(90));
+                }
+                System.out.println();
             }
         }
 
         System.out.println("\n" + GREEN + BOLD + "🏆 PERFORMANCE RATING:\n" + RESET);
 
-        if (gamesPlayed == 0) {
+        if (snapshot.gamesPlayed == 0) {
             System.out.println("  🎯 Play your first game to get a rating!");
         } else {
-            double avgGuesses = (double) totalGuesses / gamesPlayed;
+            double avgGuesses = (double) snapshot.totalGuesses / snapshot.gamesPlayed;
 
             if (avgGuesses <= 5) {
                 System.out.println(GREEN + "  🥇 NUMBER GUESSING MASTER!" + RESET);
@@ -579,16 +932,76 @@ public class Main {
         System.out.println("  2. Use binary search strategy");
         System.out.println("  3. Save hints for when you're stuck");
         System.out.println("  4. Pay attention to proximity hints");
+    }
 
-        System.out.print("\n" + CYAN + BOLD + "Press Enter to continue..." + RESET);
-        scanner.nextLine();
+    // The player's own record, kept across runs in the profile store
+    private static void printProfile() {
+        ProfileStore.Profile profile = null;
+        if (profiles != null) {
+            try {
+                profile = profiles.get(PLAYER);
+            } catch (UncheckedIOException e) {
+                System.out.println(RED + "Could not load your profile: " + e.getMessage() + RESET);
+            }
+        }
+        if (profile == null) {
+            return;
+        }
+        System.out.println("\n" + CYAN + BOLD + "👤 YOUR PROFILE (" + PLAYER + "):\n" + RESET);
+        System.out.println("  Points: " + profile.points + " over " + profile.gamesPlayed() + " games");
+        System.out.println("  Win Streak: " + profile.streak + " (best " + profile.bestStreak + ")");
+        for (Difficulty difficulty : Difficulty.values()) {
+            int wins = profile.wins(difficulty);
+            int losses = profile.losses(difficulty);
+            if (wins + losses == 0) {
+                continue;
+            }
+            System.out.printf("  %-7s %d won, %d lost", difficulty, wins, losses);
+            if (wins > 0) {
+                System.out.printf(" | best round %d points, fewest %d guesses", profile.best(difficulty),
+                        profile.fewest(difficulty));
+            }
+            System.out.println();
+        }
     }
 
-    // Helper method to count losses (simplified)
-    private static int countLosses() {
-        // In a real game, you'd track wins/losses separately
-        // For simplicity, we'll estimate
-        return gamesPlayed / 3; // Rough estimate
+    // Show leaderboard
+    private static void showLeaderboard() {
+        clearScreen();
+        System.out.println(CYAN + "╔══════════════════════════════════════════════════════════╗" + RESET);
+        System.out.println(YELLOW + BOLD + "                    LEADERBOARD" + RESET);
+        System.out.println(CYAN + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
+
+        boolean any = false;
+        for (Difficulty difficulty : Difficulty.values()) {
+            long players = leaderboard.players(difficulty);
+            if (players == 0) {
+                continue;
+            }
+            any = true;
+            System.out.println(YELLOW + BOLD + "🏆 " + difficulty + " (" + players + " players):\n" + RESET);
+
+            int place = 0;
+            for (Leaderboard.Entry entry : leaderboard.top(difficulty, 10)) {
+                place++;
+                String color = entry.player.equals(PLAYER) ? GREEN + BOLD : "";
+                System.out.printf("%s  %2d. %-20s %8d points%s%n", color, place, entry.player, entry.score, RESET);
+            }
+
+            long rank = leaderboard.rank(PLAYER, difficulty);
+            if (rank > 0) {
+                System.out.println(CYAN + "  You (" + PLAYER + "): #" + rank + " of " + players + ", " +
+                        leaderboard.score(PLAYER, difficulty) + " points" + RESET);
+            }
+            System.out.println();
+        }
+
+        if (!any) {
+            System.out.println("  🎯 Finish a round to get on the board!");
+        }
+
+        System.out.print("\n" + CYAN + BOLD + "Press Enter to continue..." + RESET);
+        console.skipLine();
     }
 
     // Get number input with validation
@@ -596,68 +1009,90 @@ public class Main {
         while (true) {
             System.out.print(YELLOW + prompt + RESET);
 
-            if (scanner.hasNextInt()) {
-                int num = scanner.nextInt();
-                scanner.nextLine();
+            if (console.nextInt()) {
+                int num = console.number();
+                console.skipLine();
 
                 if (num >= min && num <= max) {
                     return num;
                 }
-            } else {
-                scanner.next();
             }
 
             System.out.println(RED + "Enter a number between " + min + " and " + max + RESET);
         }
     }
 
+    // Get a number of any size, at least min when min is given
+    private static BigInteger getBigNumberInput(String prompt, BigInteger min) {
+        while (true) {
+            System.out.print(YELLOW + prompt + RESET);
+
+            if (console.nextBigInteger()) {
+                BigInteger num = console.bigNumber();
+                console.skipLine();
+
+                if (min == null || num.compareTo(min) >= 0) {
+                    return num;
+                }
+            }
+
+            System.out.println(RED + (min == null ? "Enter a whole number" : "Enter a number of at least " + min) + RESET);
+        }
+    }
+
     // Calculate max guesses based on range
-    private static int calculateMaxGuesses(int range) {
+    static int calculateMaxGuesses(int range) {
         return (int) Math.ceil(Math.log(range) / Math.log(2)) + 2;
     }
 
+    // Exact ceil(log2(range)) + 2 for ranges of any size, where doubles run out of precision
+    static int calculateMaxGuesses(BigInteger range) {
+        return range.subtract(BigInteger.ONE).bitLength() + 2;
+    }
+
+    // Calculate points for a win: fewer attempts means a bigger share of the base points
+    static int calculatePoints(int maxGuesses, int basePoints, int attempts) {
+        double efficiency = (double) (maxGuesses - attempts + 1) / maxGuesses;
+        return (int) (basePoints * efficiency);
+    }
+
     // Calculate hints based on range
-    private static int calculateHints(int range) {
+    static int calculateHints(int range) {
         if (range <= 50) return 3;
         if (range <= 100) return 2;
         return 1;
     }
 
-    // Show goodbye screen
-    private static void showGoodbyeScreen() {
-        clearScreen();
-        System.out.println(CYAN + "╔══════════════════════════════════════════════════════════╗" + RESET);
-        System.out.println(PURPLE + BOLD + "            THANK YOU FOR PLAYING!" + RESET);
-        System.out.println(CYAN + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
-
-        System.out.println(YELLOW + "🔢 GUESS THE NUMBER - FINAL STATISTICS\n" + RESET);
+    private static int calculateHints(BigInteger range) {
+        return range.bitLength() < Integer.SIZE ? calculateHints(range.intValue()) : 1;
+    }
 
-        System.out.println("  Games Played: " + gamesPlayed);
-        System.out.println("  Final Score: " + score + " points");
+    // Show goodbye screen, with the final statistics spliced into the cached frame
+    private static void showGoodbyeScreen() {
+        GameStats.Snapshot snapshot = stats.snapshot();
+        screen.text(screens.goodbyeHead)
+                .text(GAMES_PLAYED).num(snapshot.gamesPlayed).newline()
+                .text(FINAL_SCORE).num(snapshot.score).text(POINTS).newline();
 
-        if (gamesPlayed > 0) {
-            double avgGuesses = (double) totalGuesses / gamesPlayed;
-            System.out.printf("  Average Guesses per Game: %.1f\n", avgGuesses);
+        if (snapshot.gamesPlayed > 0) {
+            double avgGuesses = (double) snapshot.totalGuesses / snapshot.gamesPlayed;
+            screen.text(AVERAGE_PER_GAME).oneDecimal(avgGuesses).newline();
 
-            if (bestScore != Integer.MAX_VALUE) {
-                System.out.println("  Best Game: " + bestScore + " guesses");
+            if (snapshot.bestScore != Integer.MAX_VALUE) {
+                screen.text(BEST_GAME).num(snapshot.bestScore).text(GUESSES).newline();
             }
 
-            // Final rating
-            System.out.println("\n" + GREEN + "🏆 YOUR FINAL RATING:" + RESET);
+            screen.text(screens.rating(avgGuesses));
+        }
 
-            if (avgGuesses <= 5) {
-                System.out.println(GREEN + "  🥇 NUMBER GENIUS!" + RESET);
-            } else if (avgGuesses <= 8) {
-                System.out.println(BLUE + "  🥈 EXCELLENT PLAYER!" + RESET);
-            } else if (avgGuesses <= 12) {
-                System.out.println(YELLOW + "  🥉 GOOD PLAYER!" + RESET);
-            } else {
-                System.out.println(ORANGE + "  🎯 KEEP PRACTICING!" + RESET);
+        screen.text(screens.goodbyeTail).flush();
+        if (terminal != null) {
+            // Nothing reads input after this screen, which is what would send it
+            try {
+                terminal.close();
+            } catch (IOException e) {
+                // The terminal is gone; nothing left to show it on
             }
         }
-
-        System.out.println("\n" + PURPLE + "Come back soon to beat your high score! 🎯" + RESET);
-        System.out.println("\n" + RED + "Game closing..." + RESET);
     }
 }
\ No newline at end of file
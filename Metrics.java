@@ -0,0 +1,336 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Counters and a latency histogram for the game's hot paths: guess handling
+// time, rounds started, finished and cancelled, hints by kind, points by
+// difficulty, and the player profile cache's hits, misses, evictions and
+// write-backs. Shared by the console and the server, safe from any thread.
+//
+// Off unless -Dguess.metrics=true. ENABLED is a static final constant, so
+// when it is false every hook below compiles down to nothing and call sites
+// pay no more than the call.
+//
+// When on, the numbers are published
+//   - over JMX as guess:type=Metrics
+//   - in Prometheus text format at http://127.0.0.1:<port>/metrics with
+//     -Dguess.metrics.port=<port>
+//   - in the same format to a file on close() with -Dguess.metrics.file=<path>
+public class Metrics {
+    static final boolean ENABLED = Boolean.getBoolean("guess.metrics");
+
+    private static final Main.Difficulty[] DIFFICULTIES = Main.Difficulty.values();
+    private static final GameSession.Hint[] HINTS = GameSession.Hint.values();
+
+    private static final LongAdder[] started = adders(DIFFICULTIES.length);
+    private static final LongAdder[] won = adders(DIFFICULTIES.length);
+    private static final LongAdder[] lost = adders(DIFFICULTIES.length);
+    private static final LongAdder[] cancelled = adders(DIFFICULTIES.length);
+    private static final LongAdder[] points = adders(DIFFICULTIES.length);
+    private static final LongAdder[] hints = adders(HINTS.length);
+    private static final LatencyHistogram guesses = new LatencyHistogram();
+    private static final LongAdder profileHits = new LongAdder();
+    private static final LongAdder profileMisses = new LongAdder();
+    private static final LongAdder profileEvictions = new LongAdder();
+    private static final LongAdder profileWrites = new LongAdder();
+
+    private static HttpServer endpoint;
+
+    // Attributes published over JMX
+    public interface MetricsMXBean {
+        long getRoundsStarted();
+
+        long getRoundsWon();
+
+        long getRoundsLost();
+
+        long getRoundsCancelled();
+
+        long getGuesses();
+
+        long getGuessLatencyP50Nanos();
+
+        long getGuessLatencyP99Nanos();
+
+        long getGuessLatencyMaxNanos();
+
+        Map<String, Long> getPointsByDifficulty();
+
+        Map<String, Long> getHintsByKind();
+
+        long getProfileCacheHits();
+
+        long getProfileCacheMisses();
+
+        long getProfileCacheEvictions();
+
+        long getProfileWrites();
+
+        String getPrometheusText();
+    }
+
+    private static class Bean implements MetricsMXBean {
+        public long getRoundsStarted() {
+            return total(started);
+        }
+
+        public long getRoundsWon() {
+            return total(won);
+        }
+
+        public long getRoundsLost() {
+            return total(lost);
+        }
+
+        public long getRoundsCancelled() {
+            return total(cancelled);
+        }
+
+        public long getGuesses() {
+            return guesses.count();
+        }
+
+        public long getGuessLatencyP50Nanos() {
+            return guesses.percentile(50);
+        }
+
+        public long getGuessLatencyP99Nanos() {
+            return guesses.percentile(99);
+        }
+
+        public long getGuessLatencyMaxNanos() {
+            return guesses.max();
+        }
+
+        public Map<String, Long> getPointsByDifficulty() {
+            Map<String, Long> byDifficulty = new LinkedHashMap<>();
+            for (Main.Difficulty difficulty : DIFFICULTIES) {
+                byDifficulty.put(difficulty.name(), points[difficulty.ordinal()].sum());
+            }
+            return byDifficulty;
+        }
+
+        public Map<String, Long> getHintsByKind() {
+            Map<String, Long> byKind = new LinkedHashMap<>();
+            for (GameSession.Hint hint : HINTS) {
+                byKind.put(hint.name(), hints[hint.ordinal()].sum());
+            }
+            return byKind;
+        }
+
+        public long getProfileCacheHits() {
+            return profileHits.sum();
+        }
+
+        public long getProfileCacheMisses() {
+            return profileMisses.sum();
+        }
+
+        public long getProfileCacheEvictions() {
+            return profileEvictions.sum();
+        }
+
+        public long getProfileWrites() {
+            return profileWrites.sum();
+        }
+
+        public String getPrometheusText() {
+            return prometheus();
+        }
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long total(LongAdder[] adders) {
+        long total = 0;
+        for (LongAdder adder : adders) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    // Timestamp to hand back to guess(); 0 when off
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    // A guess was handled, starting at start()
+    static void guess(long start) {
+        if (ENABLED) {
+            guesses.record(System.nanoTime() - start);
+        }
+    }
+
+    static void roundStarted(Main.Difficulty difficulty) {
+        if (ENABLED) {
+            started[difficulty.ordinal()].increment();
+        }
+    }
+
+    // The player quit with Q
+    static void roundCancelled(Main.Difficulty difficulty) {
+        if (ENABLED) {
+            cancelled[difficulty.ordinal()].increment();
+        }
+    }
+
+    static void roundFinished(Main.Difficulty difficulty, boolean win, int awarded) {
+        if (ENABLED) {
+            (win ? won : lost)[difficulty.ordinal()].increment();
+            points[difficulty.ordinal()].add(awarded);
+        }
+    }
+
+    static void hint(GameSession.Hint hint) {
+        if (ENABLED) {
+            hints[hint.ordinal()].increment();
+        }
+    }
+
+    // A profile was looked up in the cache
+    static void profileLookup(boolean hit) {
+        if (ENABLED) {
+            (hit ? profileHits : profileMisses).increment();
+        }
+    }
+
+    static void profileEvicted() {
+        if (ENABLED) {
+            profileEvictions.increment();
+        }
+    }
+
+    // A write-behind batch of this many profile records reached the disk
+    static void profilesWritten(int records) {
+        if (ENABLED) {
+            profileWrites.add(records);
+        }
+    }
+
+    // Publish over JMX, and over HTTP if a port is set. Does nothing when off.
+    static void open() {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("guess:type=Metrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Metrics not published over JMX: " + e.getMessage());
+        }
+
+        Integer port = Integer.getInteger("guess.metrics.port");
+        if (port != null && endpoint == null) {
+            try {
+                endpoint = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+                endpoint.createContext("/metrics", exchange -> {
+                    byte[] body = prometheus().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                endpoint.start();
+            } catch (IOException e) {
+                System.err.println("Metrics endpoint not started: " + e.getMessage());
+            }
+        }
+    }
+
+    // Stop the endpoint and write the dump file, if either was asked for
+    static void close() {
+        if (!ENABLED) {
+            return;
+        }
+        if (endpoint != null) {
+            endpoint.stop(0);
+            endpoint = null;
+        }
+        String file = System.getProperty("guess.metrics.file");
+        if (file != null) {
+            try {
+                Files.writeString(Path.of(file), prometheus());
+            } catch (IOException e) {
+                System.err.println("Metrics not written: " + e.getMessage());
+            }
+        }
+    }
+
+    // Everything, in Prometheus text exposition format
+    static String prometheus() {
+        StringBuilder text = new StringBuilder();
+        counter(text, "guess_rounds_started_total", "Rounds started", "difficulty", DIFFICULTIES, started);
+        counter(text, "guess_rounds_cancelled_total", "Rounds abandoned with Q", "difficulty", DIFFICULTIES,
+                cancelled);
+
+        text.append("# HELP guess_rounds_finished_total Rounds played to the end\n");
+        text.append("# TYPE guess_rounds_finished_total counter\n");
+        for (Main.Difficulty difficulty : DIFFICULTIES) {
+            text.append("guess_rounds_finished_total{difficulty=\"").append(difficulty)
+                    .append("\",outcome=\"won\"} ").append(won[difficulty.ordinal()].sum()).append('\n');
+            text.append("guess_rounds_finished_total{difficulty=\"").append(difficulty)
+                    .append("\",outcome=\"lost\"} ").append(lost[difficulty.ordinal()].sum()).append('\n');
+        }
+
+        counter(text, "guess_points_total", "Points awarded", "difficulty", DIFFICULTIES, points);
+        counter(text, "guess_hints_total", "Hints given", "kind", HINTS, hints);
+
+        text.append("# HELP guess_profile_cache_requests_total Player profile lookups\n");
+        text.append("# TYPE guess_profile_cache_requests_total counter\n");
+        text.append("guess_profile_cache_requests_total{result=\"hit\"} ").append(profileHits.sum()).append('\n');
+        text.append("guess_profile_cache_requests_total{result=\"miss\"} ").append(profileMisses.sum())
+                .append('\n');
+        text.append("# HELP guess_profile_cache_evictions_total Player profiles evicted from the cache\n");
+        text.append("# TYPE guess_profile_cache_evictions_total counter\n");
+        text.append("guess_profile_cache_evictions_total ").append(profileEvictions.sum()).append('\n');
+        text.append("# HELP guess_profile_writes_total Player profile records written back to disk\n");
+        text.append("# TYPE guess_profile_writes_total counter\n");
+        text.append("guess_profile_writes_total ").append(profileWrites.sum()).append('\n');
+
+        text.append("# HELP guess_guess_seconds Time to handle one guess\n");
+        text.append("# TYPE guess_guess_seconds summary\n");
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            text.append("guess_guess_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(guesses.percentile(quantile * 100))).append('\n');
+        }
+        text.append("guess_guess_seconds_sum ").append(seconds(guesses.sum())).append('\n');
+        text.append("guess_guess_seconds_count ").append(guesses.count()).append('\n');
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, String name, String help, String label, Enum<?>[] keys,
+                                LongAdder[] values) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (Enum<?> key : keys) {
+            text.append(name).append('{').append(label).append("=\"").append(key.name()).append("\"} ")
+                    .append(values[key.ordinal()].sum()).append('\n');
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
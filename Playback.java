@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.random.RandomGenerator;
+
+// Plays recorded rounds again, headless, and checks each still ends the way
+// it was recorded: same secret, attempts, hints used, outcome and points.
+//
+// A round is rebuilt the way playGame and playCustomGame build it: the
+// secret is the first draw from the round's stream and hints draw from the
+// same stream afterwards, so the stream seed and the recorded inputs are all
+// it takes. Nothing is printed per round and nothing is allocated per input,
+// so a corpus of millions of rounds replays in a tight loop, which makes this
+// a regression check for game logic changes as well as a benchmark.
+//
+//   java -cp out Main --replay <recording> [passes]
+public class Playback {
+    // How many mismatches get printed in full
+    private static final int REPORT_LIMIT = 10;
+
+    // Totals for one pass over a recording
+    static class Result {
+        long rounds;
+        long inputs;
+        long mismatches;
+        long wins;
+        long nanos;
+    }
+
+    // Replay one round. Returns null if it ends as recorded, otherwise what differs.
+    static String play(RoundRecording.Round round) {
+        RandomGenerator random = Rng.stream(round.seed);
+        int secret = Rng.between(random, round.min, round.max);
+        GameConfig config = GameConfig.of(round.difficulty, round.min, round.max);
+        if (config.maxGuesses != round.maxGuesses || config.hints != round.hints) {
+            return "allows " + config.maxGuesses + " attempts and " + config.hints + " hints, recorded "
+                    + round.maxGuesses + " and " + round.hints;
+        }
+        GameSession session = config.newSession(secret, random);
+
+        for (int i = 0; i < round.inputs; i++) {
+            switch (round.tag(i)) {
+                case RoundRecording.GUESS:
+                    session.submitGuess(round.value(i));
+                    break;
+                case RoundRecording.HINT:
+                    session.requestHint();
+                    break;
+                case RoundRecording.QUIT:
+                    session.cancel();
+                    break;
+                default:
+                    break; // an invalid line changes nothing
+            }
+        }
+
+        byte outcome = session.isCancelled() ? RoundRecording.CANCELLED :
+                session.isWon() ? RoundRecording.WON : RoundRecording.LOST;
+        if (secret != round.secret) {
+            return "secret " + secret + ", recorded " + round.secret;
+        } else if (outcome != round.outcome) {
+            return "outcome " + outcome + ", recorded " + round.outcome;
+        } else if (session.getAttempts() != round.attempts) {
+            return "attempts " + session.getAttempts() + ", recorded " + round.attempts;
+        } else if (session.getHintsUsed() != round.hintsUsed) {
+            return "hints used " + session.getHintsUsed() + ", recorded " + round.hintsUsed;
+        } else if (!session.isCancelled() && session.pointsEarned() != round.points) {
+            return "points " + session.pointsEarned() + ", recorded " + round.points;
+        }
+        return null;
+    }
+
+    // One pass over a recording; mismatches are printed until the report limit
+    static Result replay(Path recording, boolean report) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        RoundRecording.replay(recording, round -> {
+            String mismatch = play(round);
+            if (mismatch != null) {
+                if (report && result.mismatches < REPORT_LIMIT) {
+                    System.out.printf("round %d (%s %d-%d, seed %d): %s%n", result.rounds,
+                            round.difficulty, round.min, round.max, round.seed, mismatch);
+                }
+                result.mismatches++;
+            }
+            if (round.outcome == RoundRecording.WON) {
+                result.wins++;
+            }
+            result.inputs += round.inputs;
+            result.rounds++;
+        });
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Usage: <recording> [passes]
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: --replay <recording> [passes]");
+            return;
+        }
+        Path recording = Path.of(args[0]);
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        long mismatches = 0;
+        for (int pass = 1; pass <= passes; pass++) {
+            Result result = replay(recording, pass == 1);
+            double seconds = result.nanos / 1e9;
+            System.out.printf("pass %d: %d rounds (%d won), %d inputs in %.3fs, %.0f rounds/s, %d mismatches%n",
+                    pass, result.rounds, result.wins, result.inputs, seconds, result.rounds / seconds,
+                    result.mismatches);
+            mismatches = result.mismatches;
+        }
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+}
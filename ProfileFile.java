@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Player profiles on disk: an open-addressing hash table of fixed-size
+// records in a single file.
+//
+// A profile sits in the slot its name hashes to or, if that is taken, the
+// next free one after it (linear probing). Finding a player is one
+// positional read of a few neighbouring slots, since the table is kept under
+// 70% full and probe runs stay short. Records are rewritten in place. Once
+// the table reaches 70% it is rebuilt at twice the size into a memory-mapped
+// temp file, which then replaces the old one with an atomic rename.
+//
+// File layout, little-endian: a 64-byte header (magic, version, record size,
+// difficulties per record, slot count, slots in use), then the slots. A
+// record is
+//   0    name length in UTF-8 bytes (0 marks a free slot), then the name
+//   64   points over all rounds
+//   72   current win streak, best win streak
+//   80   CRC32 of the record with this field zeroed, so a torn write shows
+//   84   reserved
+//   88   per difficulty, 16 bytes each: wins, losses, most points in a
+//        round, fewest attempts in a win (0 until the first win)
+// with room for MAX_DIFFICULTIES difficulties, so adding one doesn't change
+// the layout.
+//
+// Not thread-safe; ProfileStore serializes access, except that writes of
+// different slots may run alongside lookups.
+public class ProfileFile implements AutoCloseable {
+    static final int MAGIC = 0x504E5247; // "GRNP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 192;
+    static final int MAX_NAME = 63;
+    static final int MAX_DIFFICULTIES = 6;
+
+    // Record fields
+    static final int POINTS = 64;
+    static final int STREAK = 72;
+    static final int BEST_STREAK = 76;
+    static final int CRC = 80;
+    static final int DIFFICULTIES = 88;
+    static final int WINS = 0;
+    static final int LOSSES = 4;
+    static final int BEST = 8;
+    static final int FEWEST = 12;
+
+    static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Slots read at once while probing
+    private static final int PROBE_RUN = 8;
+
+    // Slots read at once while rebuilding
+    private static final int COPY_RUN = 4096;
+
+    static {
+        if (Main.Difficulty.values().length > MAX_DIFFICULTIES ||
+                DIFFICULTIES + MAX_DIFFICULTIES * 16 > RECORD_SIZE) {
+            throw new ExceptionInInitializerError("Profile records have no room for every difficulty");
+        }
+    }
+
+    private final Path path;
+    private FileChannel channel;
+    private long slots;
+    private volatile long used;
+    private int generation;
+    private final byte[] probe = new byte[PROBE_RUN * RECORD_SIZE];
+
+    private ProfileFile(Path path, FileChannel channel, long slots, long used) {
+        this.path = path;
+        this.channel = channel;
+        this.slots = slots;
+        this.used = used;
+    }
+
+    // Open the file, creating it with this many slots (a power of two) if it doesn't exist
+    static ProfileFile open(Path path, long initialSlots) throws IOException {
+        if (Long.bitCount(initialSlots) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two: " + initialSlots);
+        }
+        Files.deleteIfExists(temp(path)); // a rebuild that never finished
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel, initialSlots, 0);
+                return new ProfileFile(path, channel, initialSlots, 0);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a player profile file: " + path);
+            }
+            if (header.getInt() != RECORD_SIZE || header.getInt() != MAX_DIFFICULTIES) {
+                throw new IOException("Unsupported player profile layout: " + path);
+            }
+            long slots = header.getLong();
+            long used = header.getLong();
+            if (Long.bitCount(slots) != 1 || used > slots) {
+                throw new IOException("Corrupt player profile header: " + path);
+            }
+            return new ProfileFile(path, channel, slots, used);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // 64-bit hash of a name's UTF-8 bytes: FNV-1a, then a different finalizer
+    // from HashRing's, so names that one shard owns still spread evenly here
+    static long hash(byte[] bytes, int offset, int length) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    long slots() {
+        return slots;
+    }
+
+    long used() {
+        return used;
+    }
+
+    // Bumped by every rebuild, which renumbers the slots
+    int generation() {
+        return generation;
+    }
+
+    // Whether one more profile would take the table past 70%
+    boolean crowded() {
+        return (used + 1) * 10 > slots * 7;
+    }
+
+    // The slot holding this name, or -1. With create, a missing name gets the
+    // first free slot, written at once as an empty profile so later probes see it.
+    long find(byte[] name, long hash, boolean create) throws IOException {
+        long mask = slots - 1;
+        long slot = hash & mask;
+        while (true) {
+            int run = (int) Math.min(PROBE_RUN, slots - slot);
+            readFully(channel, ByteBuffer.wrap(probe, 0, run * RECORD_SIZE), offset(slot));
+            for (int i = 0; i < run; i++, slot++) {
+                int at = i * RECORD_SIZE;
+                int length = probe[at] & 0xFF;
+                if (length == 0) {
+                    if (!create) {
+                        return -1;
+                    }
+                    byte[] record = new byte[RECORD_SIZE];
+                    record[0] = (byte) name.length;
+                    System.arraycopy(name, 0, record, 1, name.length);
+                    seal(record, 0);
+                    write(slot, record, 0);
+                    used++;
+                    return slot;
+                }
+                if (length == name.length && Arrays.equals(probe, at + 1, at + 1 + length, name, 0, length)) {
+                    return slot;
+                }
+            }
+            slot &= mask;
+        }
+    }
+
+    void read(long slot, byte[] into, int offset) throws IOException {
+        readFully(channel, ByteBuffer.wrap(into, offset, RECORD_SIZE), offset(slot));
+    }
+
+    void write(long slot, byte[] from, int offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(from, offset, RECORD_SIZE);
+        long position = offset(slot);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // Store the slot count in use and make every write so far durable
+    void force() throws IOException {
+        writeHeader(channel, slots, used);
+        channel.force(false);
+    }
+
+    // Rebuild at twice the size. Records in 'newer' replace what is on disk
+    // for their slot. Returns each old slot's new number.
+    long[] grow(Map<Long, byte[]> newer) throws IOException {
+        long grown = slots * 2;
+        long mask = grown - 1;
+        if (offset(grown) > Integer.MAX_VALUE) {
+            throw new IOException("Player profile file too large to grow: " + path);
+        }
+        long[] moved = new long[(int) slots];
+        Path temp = temp(path);
+        byte[] run = new byte[COPY_RUN * RECORD_SIZE];
+        try (FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            writeHeader(target, grown, used);
+            // Records land all over the new table, so place them through a mapping rather than a write each
+            MappedByteBuffer table = target.map(FileChannel.MapMode.READ_WRITE, 0, offset(grown));
+            for (long first = 0; first < slots; first += COPY_RUN) {
+                int count = (int) Math.min(COPY_RUN, slots - first);
+                readFully(channel, ByteBuffer.wrap(run, 0, count * RECORD_SIZE), offset(first));
+                for (int i = 0; i < count; i++) {
+                    long slot = first + i;
+                    byte[] record = run;
+                    int at = i * RECORD_SIZE;
+                    byte[] pending = newer.get(slot);
+                    if (pending != null) {
+                        record = pending;
+                        at = 0;
+                    }
+                    int length = record[at] & 0xFF;
+                    if (length == 0) {
+                        moved[(int) slot] = -1;
+                        continue;
+                    }
+                    long to = hash(record, at + 1, length) & mask;
+                    while (table.get((int) offset(to)) != 0) {
+                        to = (to + 1) & mask;
+                    }
+                    table.put((int) offset(to), record, at, RECORD_SIZE);
+                    moved[(int) slot] = to;
+                }
+            }
+            table.force();
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        slots = grown;
+        generation++;
+        return moved;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Set a record's CRC field from the rest of it
+    static void seal(byte[] record, int at) {
+        INT.set(record, at + CRC, crc(record, at));
+    }
+
+    // Whether a record's CRC matches its contents
+    static boolean intact(byte[] record, int at) {
+        return (int) INT.get(record, at + CRC) == crc(record, at);
+    }
+
+    private static int crc(byte[] record, int at) {
+        CRC32 crc = new CRC32();
+        crc.update(record, at, CRC);
+        crc.update(record, at + CRC + 4, RECORD_SIZE - CRC - 4);
+        return (int) crc.getValue();
+    }
+
+    private static long offset(long slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static Path temp(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private static void writeHeader(FileChannel channel, long slots, long used) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(MAX_DIFFICULTIES)
+                .putLong(slots).putLong(used);
+        header.clear();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    // Read until the buffer is full; past the end of the file reads as free slots
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                while (buffer.hasRemaining()) {
+                    buffer.put((byte) 0);
+                }
+                return;
+            }
+            position += read;
+        }
+    }
+}
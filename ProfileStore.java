@@ -0,0 +1,824 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Per-player profiles: points, win streaks, and each difficulty's wins,
+// losses and best round, kept on disk with a bounded cache in front.
+//
+// On disk the profiles are split by the top bits of their name's hash over
+// SEGMENTS ProfileFiles, each growing on its own. A file's rebuild then only
+// copies 1/64th of the profiles, a few milliseconds' work at a million
+// players, rather than stopping everything to copy them all.
+//
+// The cache holds up to 'capacity' profiles in a handful of primitive arrays,
+// with their records' bytes in pages allocated as it fills: about 240 bytes
+// per profile, so a million hot players take some 240 MB of heap and give
+// the collector nothing per player to trace. Which profiles stay is decided
+// by W-TinyLFU:
+//   - a profile loaded from disk enters a small LRU window (1% of the cache),
+//     so a newcomer gets a chance to be used again before it is judged
+//   - the profile pushed out of the window has to beat the oldest profile of
+//     the main area on estimated recent use (a FrequencySketch) to take its
+//     place; whichever loses is evicted
+//   - the main area is a segmented LRU: a profile hit again moves from
+//     probation to protected (80% of the area), and protected overflow drops
+//     back to probation
+// so a pass over many cold players, such as a flood of one-off names, can't
+// flush the regulars the way it would from a plain LRU.
+//
+// Updates change the cached record and mark it dirty; nothing waits on the
+// disk except loading a profile that isn't cached. Every flushMillis a
+// background thread writes the dirty records in one batch, sorted by
+// location, and syncs each file once (write-behind). An evicted dirty record
+// waits in 'pending' until that batch, and a load looks there before the
+// file, so it never sees an older copy. A crash loses at most the last
+// flushMillis of updates.
+// The server applies updates on its RoundEvents consumer thread with
+// recordAsync(), which never loads: a round for a profile that isn't cached,
+// or that arrives while the lock is busy, joins the 'deferred' queue, and the
+// writer loads the profile and counts the round. Once a round is deferred the
+// ones after it are too, until the writer catches up, so every profile still
+// sees its rounds in order. get() applies whatever is deferred first, so a
+// player never reads a profile that misses one of their rounds.
+//
+// Lock order: flushLock, then lock, then a segment's fileLock, which is held
+// while writing to its file or rebuilding it. These are ReentrantLocks rather
+// than monitors because server connections look profiles up from virtual
+// threads: one blocked entering a monitor held across a load or a rebuild
+// would pin its carrier thread, and a few of them would stall every
+// connection, where waiting for a ReentrantLock just unmounts it.
+public class ProfileStore implements AutoCloseable {
+    // How often the writer writes changes back, and so at most how much a crash loses
+    static final long FLUSH_MILLIS = 500;
+
+    private static final int SEGMENTS = 64;
+    private static final int SEGMENT_SHIFT = 58;
+    private static final long INITIAL_SLOTS = 1 << 10;
+
+    // A profile's location is its segment above SLOT_BITS and its slot below
+    private static final int SLOT_BITS = 40;
+    private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+
+    // Profiles per page of record bytes
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    // Records waiting in 'pending' that wake the writer before its interval is up
+    private static final int BATCH = 4096;
+
+    // Dirty records moved to 'pending' per hold of the lock
+    private static final int CHUNK = 1024;
+
+    // Cache areas
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private static final int RECORD_SIZE = ProfileFile.RECORD_SIZE;
+
+    // One player's profile as it was when read
+    static final class Profile {
+        final String player;
+        final long points;
+        final int streak;
+        final int bestStreak;
+        private final int[] byDifficulty; // wins, losses, best, fewest for each difficulty
+
+        private Profile(String player, byte[] page, int at) {
+            this.player = player;
+            points = (long) ProfileFile.LONG.get(page, at + ProfileFile.POINTS);
+            streak = (int) ProfileFile.INT.get(page, at + ProfileFile.STREAK);
+            bestStreak = (int) ProfileFile.INT.get(page, at + ProfileFile.BEST_STREAK);
+            byDifficulty = new int[Main.Difficulty.values().length * 4];
+            for (int i = 0; i < byDifficulty.length; i++) {
+                byDifficulty[i] = (int) ProfileFile.INT.get(page, at + ProfileFile.DIFFICULTIES + i * 4);
+            }
+        }
+
+        int wins(Main.Difficulty difficulty) {
+            return byDifficulty[difficulty.ordinal() * 4];
+        }
+
+        int losses(Main.Difficulty difficulty) {
+            return byDifficulty[difficulty.ordinal() * 4 + 1];
+        }
+
+        // Most points in one round
+        int best(Main.Difficulty difficulty) {
+            return byDifficulty[difficulty.ordinal() * 4 + 2];
+        }
+
+        // Fewest attempts in a win, 0 before the first win
+        int fewest(Main.Difficulty difficulty) {
+            return byDifficulty[difficulty.ordinal() * 4 + 3];
+        }
+
+        long gamesPlayed() {
+            long games = 0;
+            for (Main.Difficulty difficulty : Main.Difficulty.values()) {
+                games += wins(difficulty) + losses(difficulty);
+            }
+            return games;
+        }
+    }
+
+    // A round left for the writer by recordAsync()
+    private static final class Deferred {
+        final byte[] name;
+        final long hash;
+        final Main.Difficulty difficulty;
+        final boolean won;
+        final int attempts;
+        final int points;
+
+        Deferred(byte[] name, long hash, Main.Difficulty difficulty, boolean won, int attempts, int points) {
+            this.name = name;
+            this.hash = hash;
+            this.difficulty = difficulty;
+            this.won = won;
+            this.attempts = attempts;
+            this.points = points;
+        }
+    }
+
+    private final ProfileFile[] files;
+    private final ReentrantLock flushLock = new ReentrantLock(); // one batch at a time, so older copies never land last
+    private final ReentrantLock lock = new ReentrantLock(); // the cache, pending and the counters
+    private final ReentrantLock[] fileLocks = new ReentrantLock[SEGMENTS];
+    private final FrequencySketch sketch;
+    private final int capacity;
+    private final int windowMax;
+    private final int protectedMax;
+
+    // Per cached profile, by entry. The LRU lists are threaded through prev
+    // and next, with each area's head at capacity + area: the head's next is
+    // the area's oldest entry and its prev the newest.
+    private final long[] hashes;
+    private final long[] locations;
+    private final int[] prev;
+    private final int[] next;
+    private final byte[] area;
+    private final boolean[] dirty;
+    private final byte[][] pages;
+    private final int[] areaSize = new int[3];
+    private int size = 0;
+
+    // Entries by hash, linear probing; entry + 1, or 0 for an empty cell
+    private final int[] index;
+    private final int indexMask;
+
+    // Entries made dirty since the last batch, possibly repeated or since evicted
+    private int[] dirtyList = new int[1024];
+    private int dirtyCount = 0;
+
+    // Evicted and collected records not yet written, by location
+    private final TreeMap<Long, byte[]> pending = new TreeMap<>();
+
+    // Rounds from recordAsync() waiting for the writer to load their profiles, oldest first
+    private final ConcurrentLinkedQueue<Deferred> deferred = new ConcurrentLinkedQueue<>();
+
+    private final byte[] scratch = new byte[RECORD_SIZE];
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long written;
+
+    private final long flushMillis;
+    private final Thread writer;
+    private volatile boolean closed = false;
+    private volatile boolean flushSoon = false; // pending is full; write it before the interval is up
+
+    private ProfileStore(ProfileFile[] files, int capacity, int windowPercent, long flushMillis) {
+        this.files = files;
+        this.capacity = capacity;
+        this.windowMax = Math.max(1, (int) ((long) capacity * windowPercent / 100));
+        this.protectedMax = (capacity - windowMax) * 4 / 5;
+        this.flushMillis = flushMillis;
+        sketch = new FrequencySketch(capacity);
+
+        hashes = new long[capacity];
+        locations = new long[capacity];
+        area = new byte[capacity];
+        dirty = new boolean[capacity];
+        prev = new int[capacity + 3];
+        next = new int[capacity + 3];
+        for (int head = capacity; head < capacity + 3; head++) {
+            prev[head] = head;
+            next[head] = head;
+        }
+        pages = new byte[(capacity + PAGE_MASK) >>> PAGE_SHIFT][];
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            fileLocks[segment] = new ReentrantLock();
+        }
+        int cells = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        index = new int[cells];
+        indexMask = cells - 1;
+
+        writer = Thread.ofPlatform().name("profile-writer").daemon().unstarted(this::writeLoop);
+    }
+
+    // Open with a 1% window and the usual write-back interval
+    static ProfileStore open(Path directory, int capacity) throws IOException {
+        return open(directory, capacity, 1, FLUSH_MILLIS);
+    }
+
+    // Open the store in this directory, caching up to capacity profiles. A
+    // window of 100% leaves no main area, which makes the cache a plain LRU.
+    static ProfileStore open(Path directory, int capacity, int windowPercent, long flushMillis)
+            throws IOException {
+        if (capacity < 1 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("Cache capacity out of range: " + capacity);
+        }
+        if (windowPercent < 1 || windowPercent > 100) {
+            throw new IllegalArgumentException("Window must be 1 to 100 percent: " + windowPercent);
+        }
+        Files.createDirectories(directory);
+        ProfileFile[] files = new ProfileFile[SEGMENTS];
+        try {
+            for (int segment = 0; segment < SEGMENTS; segment++) {
+                files[segment] = ProfileFile.open(directory.resolve(String.format("profiles-%02d.db", segment)),
+                        INITIAL_SLOTS);
+            }
+        } catch (IOException e) {
+            for (ProfileFile file : files) {
+                if (file != null) {
+                    file.close();
+                }
+            }
+            throw e;
+        }
+        ProfileStore store = new ProfileStore(files, capacity, windowPercent, flushMillis);
+        store.writer.start();
+        return store;
+    }
+
+    // Count a finished round in the player's profile, creating it on their
+    // first round. Names over MAX_NAME bytes get no profile.
+    void record(String player, Main.Difficulty difficulty, boolean won, int attempts, int points) {
+        byte[] name = player.getBytes(StandardCharsets.UTF_8);
+        if (name.length == 0 || name.length > ProfileFile.MAX_NAME) {
+            return;
+        }
+        long hash = ProfileFile.hash(name, 0, name.length);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Profile store is closed");
+            }
+            count(entry(name, hash, true), difficulty, won, attempts, points);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Same as record(), but never waits on the disk or the lock: a round for
+    // a profile that isn't cached, or that finds the lock busy, is left for
+    // the writer to count once it has loaded the profile
+    void recordAsync(String player, Main.Difficulty difficulty, boolean won, int attempts, int points) {
+        byte[] name = player.getBytes(StandardCharsets.UTF_8);
+        if (name.length == 0 || name.length > ProfileFile.MAX_NAME) {
+            return;
+        }
+        long hash = ProfileFile.hash(name, 0, name.length);
+        if (closed) {
+            throw new IllegalStateException("Profile store is closed");
+        }
+        // The writer takes deferred rounds off the queue under the lock, so
+        // an empty queue seen holding it means every earlier round is counted
+        if (deferred.isEmpty() && lock.tryLock()) {
+            try {
+                if (deferred.isEmpty() && cached(name, hash) >= 0) {
+                    count(entry(name, hash, false), difficulty, won, attempts, points);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        deferred.add(new Deferred(name, hash, difficulty, won, attempts, points));
+        LockSupport.unpark(writer);
+    }
+
+    // Load the profiles deferred rounds are waiting on and count the rounds,
+    // in order. One load per hold of the lock, so lookups get in between.
+    private void applyDeferred() {
+        while (!deferred.isEmpty()) {
+            lock.lock();
+            try {
+                Deferred round = deferred.poll();
+                if (round == null) {
+                    return;
+                }
+                try {
+                    count(entry(round.name, round.hash, true), round.difficulty, round.won, round.attempts,
+                            round.points);
+                } catch (UncheckedIOException e) {
+                    System.err.println("Player profile not updated: " + e.getMessage());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Add a round to a cached profile. Caller holds the lock.
+    private void count(int entry, Main.Difficulty difficulty, boolean won, int attempts, int points) {
+        byte[] page = pages[entry >>> PAGE_SHIFT];
+        int at = (entry & PAGE_MASK) * RECORD_SIZE;
+        int played = at + ProfileFile.DIFFICULTIES + difficulty.ordinal() * 16;
+
+        ProfileFile.LONG.set(page, at + ProfileFile.POINTS,
+                (long) ProfileFile.LONG.get(page, at + ProfileFile.POINTS) + points);
+        if (won) {
+            int streak = (int) ProfileFile.INT.get(page, at + ProfileFile.STREAK) + 1;
+            ProfileFile.INT.set(page, at + ProfileFile.STREAK, streak);
+            if (streak > (int) ProfileFile.INT.get(page, at + ProfileFile.BEST_STREAK)) {
+                ProfileFile.INT.set(page, at + ProfileFile.BEST_STREAK, streak);
+            }
+            add(page, played + ProfileFile.WINS);
+            int fewest = (int) ProfileFile.INT.get(page, played + ProfileFile.FEWEST);
+            if (fewest == 0 || attempts < fewest) {
+                ProfileFile.INT.set(page, played + ProfileFile.FEWEST, attempts);
+            }
+        } else {
+            ProfileFile.INT.set(page, at + ProfileFile.STREAK, 0);
+            add(page, played + ProfileFile.LOSSES);
+        }
+        if (points > (int) ProfileFile.INT.get(page, played + ProfileFile.BEST)) {
+            ProfileFile.INT.set(page, played + ProfileFile.BEST, points);
+        }
+        markDirty(entry);
+    }
+
+    // The player's profile, or null if they have none yet. Loads it into the cache if it's on disk.
+    Profile get(String player) {
+        byte[] name = player.getBytes(StandardCharsets.UTF_8);
+        if (name.length == 0 || name.length > ProfileFile.MAX_NAME) {
+            return null;
+        }
+        long hash = ProfileFile.hash(name, 0, name.length);
+        applyDeferred();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Profile store is closed");
+            }
+            int entry = entry(name, hash, false);
+            if (entry < 0) {
+                return null;
+            }
+            return new Profile(player, pages[entry >>> PAGE_SHIFT], (entry & PAGE_MASK) * RECORD_SIZE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void add(byte[] page, int field) {
+        ProfileFile.INT.set(page, field, (int) ProfileFile.INT.get(page, field) + 1);
+    }
+
+    // The cache entry for this name, loading the profile on a miss; -1 if the
+    // player has none and create is false. Caller holds the lock.
+    private int entry(byte[] name, long hash, boolean create) {
+        sketch.increment(hash);
+        int entry = cached(name, hash);
+        if (entry >= 0) {
+            hits++;
+            Metrics.profileLookup(true);
+            touch(entry);
+            return entry;
+        }
+        misses++;
+        Metrics.profileLookup(false);
+
+        int segment = (int) (hash >>> SEGMENT_SHIFT);
+        ProfileFile file = files[segment];
+        boolean damaged = false;
+        long slot;
+        try {
+            if (create && file.crowded()) {
+                grow(segment);
+            }
+            slot = file.find(name, hash, create);
+            if (slot < 0) {
+                return -1;
+            }
+            byte[] newer = pending.get((long) segment << SLOT_BITS | slot);
+            if (newer != null) {
+                System.arraycopy(newer, 0, scratch, 0, RECORD_SIZE);
+            } else {
+                file.read(slot, scratch, 0);
+                if (!ProfileFile.intact(scratch, 0)) {
+                    // Torn by a crash mid-write; keep the name, start the numbers over
+                    System.err.println("Player profile damaged, starting it over: " +
+                            new String(name, StandardCharsets.UTF_8));
+                    Arrays.fill(scratch, (byte) 0);
+                    scratch[0] = (byte) name.length;
+                    System.arraycopy(name, 0, scratch, 1, name.length);
+                    damaged = true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        entry = admit(hash, (long) segment << SLOT_BITS | slot);
+        System.arraycopy(scratch, 0, pages[entry >>> PAGE_SHIFT], (entry & PAGE_MASK) * RECORD_SIZE,
+                RECORD_SIZE);
+        if (damaged) {
+            markDirty(entry);
+        }
+        return entry;
+    }
+
+    // The cache entry for this name, or -1 if it isn't cached. Caller holds the lock.
+    private int cached(byte[] name, long hash) {
+        for (int cell = (int) hash & indexMask; index[cell] != 0; cell = (cell + 1) & indexMask) {
+            int entry = index[cell] - 1;
+            if (hashes[entry] == hash && sameName(entry, name)) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private boolean sameName(int entry, byte[] name) {
+        byte[] page = pages[entry >>> PAGE_SHIFT];
+        int at = (entry & PAGE_MASK) * RECORD_SIZE;
+        return (page[at] & 0xFF) == name.length &&
+                Arrays.equals(page, at + 1, at + 1 + name.length, name, 0, name.length);
+    }
+
+    // A hit: newest in its area, and promoted out of probation
+    private void touch(int entry) {
+        byte from = area[entry];
+        unlink(entry);
+        if (from == PROBATION) {
+            link(PROTECTED, entry);
+            if (areaSize[PROTECTED] > protectedMax) {
+                int demoted = next[capacity + PROTECTED];
+                unlink(demoted);
+                link(PROBATION, demoted);
+            }
+        } else {
+            link(from, entry);
+        }
+    }
+
+    // Take an entry for a profile just loaded and put it in the window. The
+    // window's overflow moves on to probation.
+    private int admit(long hash, long location) {
+        int entry;
+        if (size < capacity) {
+            entry = size++;
+            int page = entry >>> PAGE_SHIFT;
+            if (pages[page] == null) {
+                pages[page] = new byte[Math.min(PAGE_MASK + 1, capacity - (page << PAGE_SHIFT)) * RECORD_SIZE];
+            }
+        } else {
+            entry = evict();
+        }
+        hashes[entry] = hash;
+        locations[entry] = location;
+        int cell = (int) hash & indexMask;
+        while (index[cell] != 0) {
+            cell = (cell + 1) & indexMask;
+        }
+        index[cell] = entry + 1;
+        link(WINDOW, entry);
+        if (areaSize[WINDOW] > windowMax) {
+            int oldest = next[capacity + WINDOW];
+            unlink(oldest);
+            link(PROBATION, oldest);
+        }
+        return entry;
+    }
+
+    // Free an entry in a full cache. The window's oldest profile is the
+    // candidate for the main area and the main area's oldest the victim; the
+    // one used less often lately goes, the victim on a tie. A dirty record
+    // goes to pending for the writer.
+    private int evict() {
+        int candidate = next[capacity + WINDOW];
+        int victim = areaSize[PROBATION] > 0 ? next[capacity + PROBATION] :
+                areaSize[PROTECTED] > 0 ? next[capacity + PROTECTED] : -1;
+        int evicted = candidate;
+        if (victim >= 0 && sketch.frequency(hashes[candidate]) > sketch.frequency(hashes[victim])) {
+            evicted = victim;
+        }
+        if (dirty[evicted]) {
+            dirty[evicted] = false;
+            pending.put(locations[evicted], sealed(evicted));
+            if (pending.size() >= BATCH) {
+                flushSoon = true;
+                LockSupport.unpark(writer);
+            }
+        }
+        unindex(evicted);
+        unlink(evicted);
+        evictions++;
+        Metrics.profileEvicted();
+        return evicted;
+    }
+
+    // Remove from the index, shifting back any later cells of the probe run that would lose their way
+    private void unindex(int entry) {
+        int cell = (int) hashes[entry] & indexMask;
+        while (index[cell] != entry + 1) {
+            cell = (cell + 1) & indexMask;
+        }
+        int hole = cell;
+        while (true) {
+            cell = (cell + 1) & indexMask;
+            if (index[cell] == 0) {
+                break;
+            }
+            int home = (int) hashes[index[cell] - 1] & indexMask;
+            boolean between = hole <= cell ? hole < home && home <= cell : hole < home || home <= cell;
+            if (!between) {
+                index[hole] = index[cell];
+                hole = cell;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    // Make an entry the newest in an area
+    private void link(byte to, int entry) {
+        int head = capacity + to;
+        int newest = prev[head];
+        next[newest] = entry;
+        prev[entry] = newest;
+        next[entry] = head;
+        prev[head] = entry;
+        area[entry] = to;
+        areaSize[to]++;
+    }
+
+    private void unlink(int entry) {
+        next[prev[entry]] = next[entry];
+        prev[next[entry]] = prev[entry];
+        areaSize[area[entry]]--;
+    }
+
+    private void markDirty(int entry) {
+        if (!dirty[entry]) {
+            dirty[entry] = true;
+            if (dirtyCount == dirtyList.length) {
+                dirtyList = Arrays.copyOf(dirtyList, dirtyCount * 2);
+            }
+            dirtyList[dirtyCount++] = entry;
+        }
+    }
+
+    // A copy of an entry's record, ready to write
+    private byte[] sealed(int entry) {
+        int at = (entry & PAGE_MASK) * RECORD_SIZE;
+        byte[] record = Arrays.copyOfRange(pages[entry >>> PAGE_SHIFT], at, at + RECORD_SIZE);
+        ProfileFile.seal(record, 0);
+        return record;
+    }
+
+    // Rebuild a segment's file at twice the size and renumber its cached
+    // profiles. What was pending for it goes into the new file. Caller holds the lock.
+    private void grow(int segment) throws IOException {
+        SortedMap<Long, byte[]> pendingHere = pending.subMap((long) segment << SLOT_BITS,
+                (long) (segment + 1) << SLOT_BITS);
+        Map<Long, byte[]> newer = new HashMap<>();
+        for (Map.Entry<Long, byte[]> record : pendingHere.entrySet()) {
+            newer.put(record.getKey() & SLOT_MASK, record.getValue());
+        }
+        fileLocks[segment].lock();
+        try {
+            long[] moved = files[segment].grow(newer);
+            for (int entry = 0; entry < size; entry++) {
+                if (locations[entry] >>> SLOT_BITS == segment) {
+                    locations[entry] = (long) segment << SLOT_BITS | moved[(int) (locations[entry] & SLOT_MASK)];
+                }
+            }
+        } finally {
+            fileLocks[segment].unlock();
+        }
+        pendingHere.clear();
+    }
+
+    // Woken early for deferred rounds, which it applies and goes back to
+    // sleep, or by a full pending map, which it writes out straight away
+    private void writeLoop() {
+        long due = System.nanoTime() + flushMillis * 1_000_000;
+        while (!closed) {
+            LockSupport.parkNanos(due - System.nanoTime());
+            applyDeferred();
+            if (!closed && !flushSoon && System.nanoTime() - due < 0) {
+                continue;
+            }
+            flushSoon = false;
+            due = System.nanoTime() + flushMillis * 1_000_000;
+            try {
+                flush();
+            } catch (UncheckedIOException e) {
+                if (!closed) {
+                    System.err.println("Profile write failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Write every change so far as one batch and sync the files written to.
+    // The lock is only held to move records around, a chunk at a time, never
+    // for the writing, so updates and loads carry on meanwhile.
+    void flush() {
+        flushLock.lock();
+        try {
+            int[] list;
+            int count;
+            lock.lock();
+            try {
+                list = dirtyList;
+                count = dirtyCount;
+                dirtyList = new int[list.length];
+                dirtyCount = 0;
+            } finally {
+                lock.unlock();
+            }
+            for (int from = 0; from < count; from += CHUNK) {
+                lock.lock();
+                try {
+                    for (int i = from; i < Math.min(count, from + CHUNK); i++) {
+                        int entry = list[i];
+                        if (dirty[entry]) {
+                            dirty[entry] = false;
+                            pending.put(locations[entry], sealed(entry));
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            long[] batch;
+            byte[][] records;
+            int[] generations = new int[SEGMENTS];
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new long[pending.size()];
+                records = new byte[batch.length][];
+                int n = 0;
+                for (Map.Entry<Long, byte[]> record : pending.entrySet()) {
+                    batch[n] = record.getKey();
+                    records[n++] = record.getValue();
+                }
+                for (int segment = 0; segment < SEGMENTS; segment++) {
+                    generations[segment] = files[segment].generation();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // One segment at a time, so a rebuild waits for one file's sync at most
+            int done = 0;
+            try {
+                for (int first = 0; first < batch.length; ) {
+                    int segment = (int) (batch[first] >>> SLOT_BITS);
+                    int end = first;
+                    while (end < batch.length && batch[end] >>> SLOT_BITS == segment) {
+                        end++;
+                    }
+                    ProfileFile file = files[segment];
+                    fileLocks[segment].lock();
+                    try {
+                        // A rebuild since has renumbered the slots and copied these in
+                        if (file.generation() == generations[segment]) {
+                            for (int i = first; i < end; i++) {
+                                file.write(batch[i] & SLOT_MASK, records[i], 0);
+                            }
+                            file.force();
+                            done += end - first;
+                        }
+                    } finally {
+                        fileLocks[segment].unlock();
+                    }
+                    first = end;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                // Drop what was written, unless a newer copy has replaced it meanwhile
+                lock.lock();
+                try {
+                    for (int i = 0; i < batch.length; i++) {
+                        pending.remove(batch[i], records[i]);
+                    }
+                    written += done;
+                } finally {
+                    lock.unlock();
+                }
+                Metrics.profilesWritten(done);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    long hits() {
+        lock.lock();
+        try {
+            return hits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long misses() {
+        lock.lock();
+        try {
+            return misses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long evictions() {
+        lock.lock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Records written back by the writer
+    long written() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int cached() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Profiles on disk
+    long players() {
+        long players = 0;
+        for (ProfileFile file : files) {
+            players += file.used();
+        }
+        return players;
+    }
+
+    // Write everything back and close the file
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        applyDeferred();
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            fileLocks[segment].lock();
+            try {
+                files[segment].close();
+            } finally {
+                fileLocks[segment].unlock();
+            }
+        }
+    }
+}
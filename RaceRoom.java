@@ -0,0 +1,410 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Race mode: everyone in a room guesses the same secret at the same time and
+// sees every guess and its outcome. The first correct guess wins the race and
+// the next race starts straight away.
+//
+// One sequencer thread per room owns all of the room's state. Connections put
+// joins, guesses and leaves into its inbox and it takes them strictly in
+// arrival order, so there is one authoritative order of events that every
+// player sees the same way. A player has at most one guess in the inbox, the
+// next waits until the last was sequenced, so flooding gets nobody ahead and
+// the inbox is bounded by the room size without a bound of its own.
+//
+// Each event is encoded once, into a byte[] the sequencer appends to a
+// broadcast log. Players don't get copies: every member has a writer thread
+// with its own cursor into the log, which sends everything from its cursor to
+// the end in one socket write and sleeps until the sequencer publishes more.
+// A slow client only holds up its own writer, and under load its writes get
+// bigger rather than more frequent. A writer that falls a whole log behind is
+// told LAGGED and dropped, so nobody can slow the sequencer down.
+//
+// Lines a race player gets, once RACE has taken them out of ordinary rounds:
+//   JOINED <race> <min> <max> <players>             you're in; the race under way
+//   RACE <seq> <race> <min> <max>                   a new race started
+//   GUESS <seq> <n> <guess> LOW|HIGH <band> <name>  a player's nth guess and its outcome
+//   WON <seq> <n> <guess> <name>                    a player guessed it; the race is over
+//   RANGE <min> <max> / ERR <text>                  to you only: guess not taken
+//   BYE <secret> / LAGGED                           to you only, then the connection closes
+// Broadcast lines carry consecutive sequence numbers, so a gap is a missed line.
+public class RaceRoom implements AutoCloseable {
+    // Broadcast events kept for writers that are behind; further behind is dropped
+    static final int LOG_SIZE = 1 << 14;
+
+    // Commands taken in one go before writers are woken
+    private static final int BATCH = 256;
+
+    // Most bytes a writer gathers before writing
+    private static final int CHUNK = 16 * 1024;
+
+    // Kinds of command
+    private static final int JOIN = 0;
+    private static final int GUESS = 1;
+    private static final int LEAVE = 2;
+    private static final int STOP = 3;
+
+    private static final byte[] JOINED_WORD = Renderer.utf8("JOINED ");
+    private static final byte[] RACE_WORD = Renderer.utf8("RACE ");
+    private static final byte[] GUESS_WORD = Renderer.utf8("GUESS ");
+    private static final byte[] WON_WORD = Renderer.utf8("WON ");
+    private static final byte[] LOW = Renderer.utf8(" LOW ");
+    private static final byte[] HIGH = Renderer.utf8(" HIGH ");
+    private static final byte[] RANGE = Renderer.utf8("RANGE ");
+    private static final byte[] BYE = Renderer.utf8("BYE ");
+    private static final byte[] ERR = Renderer.utf8("ERR Enter a number, or 'Q' to quit!\n");
+    private static final byte[] LAGGED = Renderer.utf8("LAGGED\n");
+    private static final byte[] SPACE = Renderer.utf8(" ");
+    private static final byte[][] PROXIMITY = new byte[GameSession.Proximity.values().length][];
+
+    static {
+        for (GameSession.Proximity proximity : GameSession.Proximity.values()) {
+            PROXIMITY[proximity.ordinal()] = Renderer.utf8(proximity.name());
+        }
+    }
+
+    private static final class Command {
+        final int kind;
+        final Member member;
+        final int guess;
+
+        Command(int kind, Member member, int guess) {
+            this.kind = kind;
+            this.member = member;
+            this.guess = guess;
+        }
+    }
+
+    // One player's seat in the room. The connection's own thread reads the
+    // player's commands and passes them on through this.
+    static final class Member {
+        private final RaceRoom room;
+        private final String name;
+        private final OutputStream socket; // closed to drop a player who lagged
+        private final Renderer out;
+        private final Semaphore turn = new Semaphore(1); // one guess in the inbox at a time
+        private final ConcurrentLinkedQueue<byte[]> direct = new ConcurrentLinkedQueue<>(); // lines for this player only
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final Thread writer;
+        private volatile boolean sleeping;
+        private volatile boolean closed;
+        private long cursor; // next log position to send; the writer's once started
+        private int guesses; // in race 'guessedIn', the sequencer's
+        private int guessedIn; // the sequencer's
+        private int index = -1; // place in members, the sequencer's
+
+        private Member(RaceRoom room, String name, OutputStream socket) {
+            this.room = room;
+            this.name = name;
+            this.socket = socket;
+            this.out = new Renderer(socket, false, 512);
+            this.writer = Thread.ofVirtual().name("race-writer").unstarted(() -> room.write(this));
+        }
+
+        // Waits while this player's last guess is still to be sequenced
+        void guess(int guess) {
+            turn.acquireUninterruptibly();
+            room.inbox.add(new Command(GUESS, this, guess));
+        }
+
+        // Input that isn't a guess
+        void reject() {
+            say(ERR);
+        }
+
+        // Leave the room, waiting briefly for what's still to be sent, BYE last
+        void leave() {
+            room.inbox.add(new Command(LEAVE, this, 0));
+            try {
+                finished.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void say(byte[] line) {
+            direct.add(line);
+            if (sleeping) {
+                LockSupport.unpark(writer);
+            }
+        }
+    }
+
+    // Hands out seats, opening a new room whenever the last one is full
+    static final class Lobby implements AutoCloseable {
+        private final GameConfig config;
+        private final Rng rng;
+        private final int roomSize;
+        private final List<RaceRoom> rooms = new ArrayList<>();
+
+        Lobby(GameConfig config, Rng rng, int roomSize) {
+            this.config = config;
+            this.rng = rng;
+            this.roomSize = roomSize;
+        }
+
+        synchronized Member join(String name, OutputStream out) {
+            for (RaceRoom room : rooms) {
+                Member member = room.join(name, out);
+                if (member != null) {
+                    return member;
+                }
+            }
+            RaceRoom room = RaceRoom.start(config, rng, roomSize, rooms.size() + 1);
+            rooms.add(room);
+            return room.join(name, out);
+        }
+
+        @Override
+        public synchronized void close() {
+            for (RaceRoom room : rooms) {
+                room.close();
+            }
+        }
+    }
+
+    private final GameConfig config;
+    private final Rng rng;
+    private final int capacity;
+    private final AtomicInteger seats = new AtomicInteger();
+    private final LinkedBlockingQueue<Command> inbox = new LinkedBlockingQueue<>();
+    private final AtomicReferenceArray<byte[]> log = new AtomicReferenceArray<>(LOG_SIZE);
+    private volatile long published; // log positions below this are filled in
+    private final Thread sequencer;
+
+    // The sequencer's
+    private Member[] members = new Member[64];
+    private int count;
+    private int race;
+    private int secret;
+    private final SplittableRandom shuffle = new SplittableRandom();
+    private final Renderer line = new Renderer(null, false, 128);
+
+    private RaceRoom(GameConfig config, Rng rng, int capacity, int number) {
+        this.config = config;
+        this.rng = rng;
+        this.capacity = capacity;
+        this.sequencer = Thread.ofPlatform().name("race-" + number).daemon().unstarted(this::sequence);
+    }
+
+    static RaceRoom start(GameConfig config, Rng rng, int capacity, int number) {
+        RaceRoom room = new RaceRoom(config, rng, capacity, number);
+        room.newRace();
+        room.sequencer.start();
+        return room;
+    }
+
+    // A seat for this player, or null when the room is full
+    Member join(String name, OutputStream out) {
+        if (seats.incrementAndGet() > capacity) {
+            seats.decrementAndGet();
+            return null;
+        }
+        Member member = new Member(this, name, out);
+        inbox.add(new Command(JOIN, member, 0));
+        return member;
+    }
+
+    int players() {
+        return seats.get();
+    }
+
+    // Broadcast events so far
+    long published() {
+        return published;
+    }
+
+    // Drop every player and stop the sequencer
+    @Override
+    public void close() {
+        inbox.add(new Command(STOP, null, 0));
+        try {
+            sequencer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sequence() {
+        List<Command> batch = new ArrayList<>(BATCH);
+        try {
+            while (true) {
+                batch.add(inbox.take());
+                inbox.drainTo(batch, BATCH - 1);
+                for (Command command : batch) {
+                    if (command.kind == STOP) {
+                        for (int i = 0; i < count; i++) {
+                            drop(members[i]);
+                        }
+                        return;
+                    }
+                    apply(command);
+                }
+                batch.clear();
+                // One wake-up per batch, and only for writers that are asleep. Starting
+                // somewhere random, so nobody is always the last to hear.
+                int first = count > 0 ? shuffle.nextInt(count) : 0;
+                for (int i = 0; i < count; i++) {
+                    Member member = members[(first + i) % count];
+                    if (member.sleeping) {
+                        LockSupport.unpark(member.writer);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(Command command) {
+        Member member = command.member;
+        switch (command.kind) {
+            case JOIN:
+                if (count == members.length) {
+                    members = Arrays.copyOf(members, count * 2);
+                }
+                member.index = count;
+                members[count++] = member;
+                // Everything from here on, after a snapshot of the race so far
+                member.cursor = published;
+                member.direct.add(line.text(JOINED_WORD).num(race).text(SPACE).num(config.min).text(SPACE)
+                        .num(config.max).text(SPACE).num(count).newline().toBytes());
+                member.writer.start();
+                break;
+            case GUESS:
+                guess(member, command.guess);
+                member.turn.release();
+                break;
+            case LEAVE:
+                if (member.index >= 0) {
+                    member.direct.add(line.text(BYE).num(secret).newline().toBytes());
+                    drop(member);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void guess(Member member, int guess) {
+        if (member.index < 0) {
+            return;
+        }
+        if (guess < config.min || guess > config.max) {
+            member.direct.add(line.text(RANGE).num(config.min).text(SPACE).num(config.max).newline().toBytes());
+            return;
+        }
+        if (member.guessedIn != race) {
+            member.guessedIn = race;
+            member.guesses = 0;
+        }
+        int n = ++member.guesses;
+        if (guess == secret) {
+            publish(line.text(WON_WORD).num(published).text(SPACE).num(n).text(SPACE).num(guess).text(SPACE)
+                    .text(member.name).newline());
+            newRace();
+            return;
+        }
+        GameSession.Proximity proximity = GameSession.Proximity.of(secret, guess);
+        publish(line.text(GUESS_WORD).num(published).text(SPACE).num(n).text(SPACE).num(guess)
+                .text(guess < secret ? LOW : HIGH).text(PROXIMITY[proximity.ordinal()]).text(SPACE)
+                .text(member.name).newline());
+    }
+
+    // Draw the next secret the way every round does, and announce the race
+    private void newRace() {
+        race++;
+        secret = Rng.between(rng.next(), config.min, config.max);
+        if (race > 1) {
+            publish(line.text(RACE_WORD).num(published).text(SPACE).num(race).text(SPACE).num(config.min)
+                    .text(SPACE).num(config.max).newline());
+        }
+    }
+
+    // Append the encoded line to the log. The slot is overwritten while
+    // 'published' still equals its new position, which is what writers check.
+    private void publish(Renderer encoded) {
+        long position = published;
+        log.set((int) position & (LOG_SIZE - 1), encoded.toBytes());
+        published = position + 1;
+    }
+
+    // Take a member out of the room; its writer sends what's pending and stops
+    private void drop(Member member) {
+        Member last = members[--count];
+        members[member.index] = last;
+        last.index = member.index;
+        members[count] = null;
+        member.index = -1;
+        member.closed = true;
+        seats.decrementAndGet();
+        LockSupport.unpark(member.writer);
+    }
+
+    // A member's writer thread: send its private lines and the log from its cursor on
+    private void write(Member member) {
+        Renderer out = member.out;
+        try {
+            while (true) {
+                for (byte[] text; (text = member.direct.poll()) != null; ) {
+                    out.text(text);
+                }
+                long end = published;
+                long from = member.cursor;
+                for (long position = from; position < end; position++) {
+                    out.text(log.get((int) position & (LOG_SIZE - 1)));
+                    if (out.buffered() >= CHUNK || position == end - 1) {
+                        // Anything read from a slot the sequencer has since started to reuse is suspect
+                        if (published - from >= LOG_SIZE) {
+                            lagged(member);
+                            return;
+                        }
+                        out.flush();
+                        from = position + 1;
+                    }
+                }
+                member.cursor = end;
+                if (out.buffered() > 0) {
+                    out.flush();
+                    continue;
+                }
+                if (member.closed) {
+                    return;
+                }
+                // Announce the nap, then look once more so a publish in between isn't missed
+                member.sleeping = true;
+                if (published == member.cursor && member.direct.isEmpty() && !member.closed) {
+                    LockSupport.park(this);
+                }
+                member.sleeping = false;
+            }
+        } catch (UncheckedIOException e) {
+            // Client went away; its connection thread sees the same and leaves
+        } finally {
+            member.finished.countDown();
+        }
+    }
+
+    private void lagged(Member member) {
+        member.out.discard();
+        try {
+            member.out.text(LAGGED).flush();
+            member.socket.close();
+        } catch (IOException | UncheckedIOException e) {
+            // Dropping it either way
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Buffered writer for game output. Text, numbers and pre-encoded ANSI codes go
+// straight into a reusable byte buffer, and flush() hands a whole turn to the
+// stream in one write. With color off, the escape codes are skipped entirely.
+public class Renderer {
+    // Pre-encoded ANSI codes, matching the String constants in Main
+    static final byte[] RESET = ascii("\u001B[0m");
+    static final byte[] RED = ascii("\u001B[31m");
+    static final byte[] GREEN = ascii("\u001B[32m");
+    static final byte[] YELLOW = ascii("\u001B[33m");
+    static final byte[] BLUE = ascii("\u001B[34m");
+    static final byte[] PURPLE = ascii("\u001B[35m");
+    static final byte[] CYAN = ascii("\u001B[36m");
+    static final byte[] BOLD = ascii("\u001B[1m");
+    static final byte[] ORANGE = ascii("\u001B[38;5;214m");
+
+    private static final byte[] NEWLINE = {'\n'};
+    private static final byte[] POINT = {'.'};
+    private static final byte[] MIN_INT = ascii(Integer.toString(Integer.MIN_VALUE));
+
+    private final OutputStream out;
+    private final boolean color;
+    private byte[] buffer;
+    private int length = 0;
+
+    Renderer(OutputStream out, boolean color) {
+        this(out, color, 4096);
+    }
+
+    Renderer(OutputStream out, boolean color, int capacity) {
+        this.out = out;
+        this.color = color;
+        this.buffer = new byte[capacity];
+    }
+
+    // Encode a constant once, up front
+    static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    boolean isColor() {
+        return color;
+    }
+
+    // Append an escape code, or nothing in no-color mode
+    Renderer color(byte[] code) {
+        if (color) {
+            append(code);
+        }
+        return this;
+    }
+
+    // Append pre-encoded text
+    Renderer text(byte[] text) {
+        append(text);
+        return this;
+    }
+
+    // Append dynamic text, encoding it as UTF-8 without an intermediate byte[]
+    Renderer text(String text) {
+        int n = text.length();
+        ensure(n * 3);
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (cp >> 18));
+                buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    // Append a decimal integer without going through a String
+    Renderer num(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return text(MIN_INT);
+        }
+        ensure(11);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int pos = length + digits;
+        length = pos;
+        do {
+            buffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return this;
+    }
+
+    // Counters past the int range, such as lifetime totals
+    Renderer num(long value) {
+        if (value == (int) value) {
+            return num((int) value);
+        }
+        return text(Long.toString(value));
+    }
+
+    // Append a non-negative value to one decimal place, as %.1f would
+    Renderer oneDecimal(double value) {
+        long tenths = Math.round(value * 10);
+        return num(tenths / 10).text(POINT).num((int) (tenths % 10));
+    }
+
+    Renderer newline() {
+        return text(NEWLINE);
+    }
+
+    // Write everything buffered so far in one call
+    void flush() {
+        if (length == 0) {
+            return;
+        }
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            length = 0;
+        }
+    }
+
+    // Take what's buffered as its own array instead of writing it, for bytes
+    // that go to many streams
+    byte[] toBytes() {
+        byte[] bytes = Arrays.copyOf(buffer, length);
+        length = 0;
+        return bytes;
+    }
+
+    // Drop anything buffered but not yet flushed
+    void discard() {
+        length = 0;
+    }
+
+    int buffered() {
+        return length;
+    }
+
+    private void append(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    // A turn that outgrows the buffer grows it rather than flushing early
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] bigger = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, bigger, 0, length);
+            buffer = bigger;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+// Where sessions get their randomness.
+//
+// One master seed, and every session gets its own SplittableRandom derived
+// from that seed and the session's index. No two sessions share generator
+// state, so drawing a secret or a hint never contends with another thread
+// the way a shared java.util.Random does on its atomic seed. Because a
+// session's stream depends only on (seed, index), not on which thread
+// created it or when, a whole run can be reproduced from the seed alone.
+//
+// The seed comes from -Dguess.seed when set, otherwise from the clock.
+public class Rng {
+    private final long seed;
+    private final AtomicLong sessions = new AtomicLong();
+
+    Rng(long seed) {
+        this.seed = seed;
+    }
+
+    // Seeded from -Dguess.seed, or randomly when it isn't set
+    static Rng fromProperties() {
+        Long seed = Long.getLong("guess.seed");
+        return new Rng(seed != null ? seed : mix(System.nanoTime() ^ System.currentTimeMillis()));
+    }
+
+    long seed() {
+        return seed;
+    }
+
+    // Stream for the next session; not thread-safe, so keep it to one session
+    RandomGenerator next() {
+        return stream(nextSeed());
+    }
+
+    // Seed of the next session's stream, for callers that record it
+    long nextSeed() {
+        return seedOf(sessions.getAndIncrement());
+    }
+
+    // Stream for the session with the given index
+    RandomGenerator session(long index) {
+        return stream(seedOf(index));
+    }
+
+    // Seed of the stream for the session with the given index. SplittableRandom
+    // seeds that differ by its gamma give shifted copies of one stream, so
+    // (seed, index) is scrambled before use.
+    long seedOf(long index) {
+        return mix(seed + (index + 1) * 0x9E3779B97F4A7C15L);
+    }
+
+    // The stream a session with this stream seed draws from
+    static RandomGenerator stream(long streamSeed) {
+        return new SplittableRandom(streamSeed);
+    }
+
+    // Number of session streams handed out by next()
+    long sessions() {
+        return sessions.get();
+    }
+
+    // Stafford variant 13 of the MurmurHash3 finalizer, as SplittableRandom uses
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Uniform int in [min, max]; the bounded nextInt rejects rather than reducing modulo
+    static int between(RandomGenerator random, int min, int max) {
+        return random.nextInt(max - min + 1) + min;
+    }
+}
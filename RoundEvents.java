@@ -0,0 +1,298 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Round results on their way from the threads playing rounds to the shared
+// totals. A connection publishes a compact event into a bounded ring and goes
+// straight back to its player; one consumer thread drains the ring in batches
+// and applies each event to the statistics, the leaderboard, the history store,
+// the players' profiles and the metrics. The guessing loop no longer waits on any of those, or on
+// the locks and disk they use.
+//
+// The ring is Vyukov's bounded queue: every slot has a sequence number saying
+// whose turn it is. A producer claims a position with one CAS on the tail,
+// fills the slot's arrays and publishes it by advancing the slot's sequence;
+// the consumer takes slots in order and hands each back for the next lap.
+// No locks, and nothing allocated per event.
+//
+// A full ring means the consumer is behind. publish() then waits for room
+// rather than dropping the event, since every round has to count: it spins
+// briefly, then parks in short naps. Such waits are counted in stalls().
+// Producers that need to see their own events applied, e.g. a RANK straight
+// after a WIN, wait for them with awaitApplied().
+//
+// close() sets a CLOSED bit in the tail itself, so a producer's claim either
+// lands before it, and is applied before the consumer stops, or fails and
+// publish() throws. No event is claimed that the consumer never sees.
+public class RoundEvents implements AutoCloseable {
+    // Kinds of event
+    static final int HINT = 0;
+    static final int WIN = 1;
+    static final int LOSS = 2;
+    static final int CANCEL = 3;
+
+    // Flag on a WIN or LOSS by a named player, who goes on the leaderboard and gets a profile
+    private static final int NAMED = 0x80;
+
+    // Most events applied before the applied() count moves and waiters are let go
+    private static final int BATCH = 256;
+    private static final int SPINS = 64;
+
+    // Set in the tail by close(); positions never get near it
+    private static final long CLOSED = 1L << 62;
+    private static final long NAP_NANOS = 20_000;
+
+    private static final GameSession.Hint[] HINTS = GameSession.Hint.values();
+
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(RoundEvents.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // The tail is CASed by every producer; the padding keeps it off the lines the consumer writes
+    @SuppressWarnings("unused")
+    private long p0, p1, p2, p3, p4, p5, p6;
+    private volatile long tail;
+    @SuppressWarnings("unused")
+    private long q0, q1, q2, q3, q4, q5, q6;
+    private volatile long applied;
+    private volatile boolean sleeping;
+
+    // Slot i holds position p when sequences[i] == p + 1, and is free for
+    // position p when sequences[i] == p
+    private final long[] sequences;
+    private final long[] words; // points, then kind, hint or hints used, attempts
+    private final int[] secrets;
+    private final GameConfig[] configs;
+    private final String[] players;
+    private final int mask;
+
+    private final GameStats stats;
+    private final Leaderboard leaderboard;
+    private final HistoryStore history; // null when not persisting
+    private final ProfileStore profiles; // null when not keeping profiles
+    private final LongAdder stalls = new LongAdder();
+    private final Thread consumer;
+
+    private RoundEvents(int capacity, GameStats stats, Leaderboard leaderboard, HistoryStore history,
+                        ProfileStore profiles) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        sequences = new long[size];
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+        words = new long[size];
+        secrets = new int[size];
+        configs = new GameConfig[size];
+        players = new String[size];
+        mask = size - 1;
+        this.stats = stats;
+        this.leaderboard = leaderboard;
+        this.history = history;
+        this.profiles = profiles;
+        consumer = Thread.ofPlatform().name("round-events").daemon().unstarted(this::drain);
+    }
+
+    // Start the consumer. Capacity is rounded up to a power of two.
+    static RoundEvents start(int capacity, GameStats stats, Leaderboard leaderboard, HistoryStore history,
+                             ProfileStore profiles) {
+        RoundEvents events = new RoundEvents(capacity, stats, leaderboard, history, profiles);
+        events.consumer.start();
+        return events;
+    }
+
+    // A hint was given. Returns the event's position, for awaitApplied().
+    long hint(GameConfig config, GameSession.Hint hint) {
+        return publish(HINT, hint.ordinal(), 0, 0, 0, config, null);
+    }
+
+    // A round ended in a win or a loss. Only named players are ranked and get a
+    // profile: every anonymous connection has a guest id of its own, and
+    // keeping those would grow the leaderboard without bound.
+    long finished(GameSession session, String player, boolean named) {
+        return publish((session.isWon() ? WIN : LOSS) | (named ? NAMED : 0), session.getHintsUsed(),
+                session.getAttempts(), session.pointsEarned(), session.getSecret(), session.getConfig(),
+                named ? player : null);
+    }
+
+    // The player quit the round with Q
+    long cancelled(GameConfig config) {
+        return publish(CANCEL, 0, 0, 0, 0, config, null);
+    }
+
+    private long publish(int kind, int detail, int attempts, int points, int secret, GameConfig config,
+                         String player) {
+        long position = claim();
+        if (position < 0) {
+            throw new IllegalStateException("Round events are closed");
+        }
+        int slot = (int) position & mask;
+        words[slot] = (points & 0xFFFFFFFFL) | (long) kind << 32 | (long) detail << 40 | (long) attempts << 48;
+        secrets[slot] = secret;
+        configs[slot] = config;
+        players[slot] = player;
+        // A volatile store, so the read of 'sleeping' below can't move ahead of it
+        SEQUENCES.setVolatile(sequences, slot, position + 1);
+        if (sleeping) {
+            LockSupport.unpark(consumer);
+        }
+        return position;
+    }
+
+    // Take the next position, waiting while the ring is full; -1 once closed
+    private long claim() {
+        boolean stalled = false;
+        int spins = 0;
+        long position = tail;
+        while (true) {
+            if ((position & CLOSED) != 0) {
+                return -1;
+            }
+            long sequence = (long) SEQUENCES.getAcquire(sequences, (int) position & mask);
+            if (sequence == position) {
+                if (TAIL.compareAndSet(this, position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                // Still holds the event from a lap ago
+                if (!stalled) {
+                    stalled = true;
+                    stalls.increment();
+                }
+                if (++spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(NAP_NANOS);
+                }
+            }
+            position = tail;
+        }
+    }
+
+    // Consumer thread: apply events in order until closed and empty
+    private void drain() {
+        long head = 0;
+        int idle = 0;
+        while (true) {
+            int batch = 0;
+            while (batch < BATCH) {
+                int slot = (int) head & mask;
+                if ((long) SEQUENCES.getAcquire(sequences, slot) != head + 1) {
+                    break;
+                }
+                apply(slot);
+                players[slot] = null;
+                SEQUENCES.setRelease(sequences, slot, head + mask + 1);
+                head++;
+                batch++;
+            }
+            if (batch > 0) {
+                applied = head;
+                idle = 0;
+                continue;
+            }
+            if (tail == (head | CLOSED)) {
+                return; // nothing more can be claimed
+            }
+            if (++idle < SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // Announce the nap, then look once more so a publish in between isn't missed
+            sleeping = true;
+            if ((long) SEQUENCES.getVolatile(sequences, (int) head & mask) != head + 1 && (tail & CLOSED) == 0) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void apply(int slot) {
+        long word = words[slot];
+        int kind = (int) (word >>> 32) & 0xFF & ~NAMED;
+        boolean named = (word & (long) NAMED << 32) != 0;
+        int detail = (int) (word >>> 40) & 0xFF;
+        int attempts = (int) (word >>> 48);
+        int points = (int) word;
+        GameConfig config = configs[slot];
+        Main.Difficulty difficulty = config.difficulty;
+        try {
+            switch (kind) {
+                case HINT:
+                    Metrics.hint(HINTS[detail]);
+                    break;
+                case CANCEL:
+                    Metrics.roundCancelled(difficulty);
+                    break;
+                default:
+                    boolean won = kind == WIN;
+                    stats.record(difficulty, won, attempts, points);
+                    if (named) {
+                        leaderboard.record(players[slot], difficulty, points);
+                        if (profiles != null) {
+                            profiles.recordAsync(players[slot], difficulty, won, attempts, points);
+                        }
+                    }
+                    if (history != null) {
+                        history.append(difficulty, won, attempts, detail, config.min, config.max,
+                                secrets[slot], points);
+                    }
+                    Metrics.roundFinished(difficulty, won, points);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            // One bad event mustn't stop the consumer, or producers would fill the ring and wait forever
+            System.err.println("Round event not applied: " + e);
+        }
+    }
+
+    // Events applied so far; an event at position p is applied once this exceeds p
+    long applied() {
+        return applied;
+    }
+
+    // Wait until the event at this position has been applied
+    void awaitApplied(long position) {
+        int spins = 0;
+        while (applied <= position) {
+            if (++spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(NAP_NANOS);
+            }
+        }
+    }
+
+    // Events published so far
+    long published() {
+        return tail & ~CLOSED;
+    }
+
+    // Publishes that found the ring full and had to wait
+    long stalls() {
+        return stalls.sum();
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    // Apply everything published so far, then stop the consumer
+    @Override
+    public void close() {
+        TAIL.getAndBitwiseOr(this, CLOSED);
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Recorded rounds: everything needed to play a round again exactly.
+//
+// A round is fully determined by its settings, the seed of its random stream
+// (see Rng) and what the player typed, so that is what gets stored, along
+// with the outcome the game reported so a playback can check it still agrees.
+// Typed lines are stored the way playSession reads them: a guess with its
+// value, a hint request, a quit, or anything else as an invalid line.
+//
+// File layout: a 16-byte header (magic, version, reserved), then rounds, all
+// little-endian. Each round is a fixed 44-byte head followed by 5 bytes per
+// input (a tag byte and an int value).
+public class RoundRecording implements AutoCloseable {
+    static final int MAGIC = 0x524E5247; // "GRNR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int HEAD_SIZE = 44;
+    static final int INPUT_SIZE = 5;
+
+    // Input tags
+    static final byte GUESS = 0;
+    static final byte HINT = 1;
+    static final byte QUIT = 2;
+    static final byte INVALID = 3;
+
+    // Outcome of a recorded round
+    static final byte LOST = 0;
+    static final byte WON = 1;
+    static final byte CANCELLED = 2;
+
+    // Largest mapping made at once during replay
+    private static final long MAP_CHUNK = 1L << 30;
+
+    // One recorded round during replay. Reused from round to round, so copy
+    // anything that has to outlive the visit.
+    static class Round {
+        Main.Difficulty difficulty;
+        byte outcome;
+        int attempts;
+        int hintsUsed;
+        int min;
+        int max;
+        int maxGuesses;
+        int hints;
+        int secret;
+        int points;
+        long seed;
+        int inputs;
+        private ByteBuffer buffer;
+        private int inputsAt;
+
+        byte tag(int input) {
+            return buffer.get(inputsAt + input * INPUT_SIZE);
+        }
+
+        int value(int input) {
+            return buffer.getInt(inputsAt + input * INPUT_SIZE + 1);
+        }
+    }
+
+    // Receives each round during replay
+    interface Visitor {
+        void round(Round round);
+    }
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    // The round in progress
+    private long seed;
+    private byte[] tags = new byte[16];
+    private int[] values = new int[16];
+    private int inputs = 0;
+
+    private RoundRecording(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // Open a recording for appending, creating it if needed. A round cut short
+    // at the end of the file (a crash mid-write) is cut off first, so new rounds
+    // don't land behind it where playback can't reach them.
+    static RoundRecording open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+                channel.truncate(0);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } else {
+                checkHeader(channel, path);
+                long whole = scan(channel, null);
+                if (whole != channel.size()) {
+                    channel.truncate(whole);
+                }
+            }
+            channel.position(channel.size());
+            return new RoundRecording(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a round recording: " + path);
+        }
+    }
+
+    // Start recording a round played from the stream with this seed
+    void begin(long seed) {
+        this.seed = seed;
+        this.inputs = 0;
+    }
+
+    // One line the player typed
+    void input(byte tag, int value) {
+        if (inputs == tags.length) {
+            tags = Arrays.copyOf(tags, inputs * 2);
+            values = Arrays.copyOf(values, inputs * 2);
+        }
+        tags[inputs] = tag;
+        values[inputs] = value;
+        inputs++;
+    }
+
+    // Finish the round in progress; it reaches the file on flush() or close()
+    void finish(Main.Difficulty difficulty, GameSession session, int points) {
+        int size = HEAD_SIZE + inputs * INPUT_SIZE;
+        if (buffer.remaining() < size) {
+            flush();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        byte outcome = session.isCancelled() ? CANCELLED : session.isWon() ? WON : LOST;
+        buffer.put((byte) difficulty.ordinal())
+                .put(outcome)
+                .putShort((short) session.getAttempts())
+                .putShort((short) session.getHintsUsed())
+                .putShort((short) 0)
+                .putInt(session.getMin())
+                .putInt(session.getMax())
+                .putInt(session.getMaxGuesses())
+                .putInt(session.getHints())
+                .putInt(session.getSecret())
+                .putInt(points)
+                .putLong(seed)
+                .putInt(inputs);
+        for (int i = 0; i < inputs; i++) {
+            buffer.put(tags[i]).putInt(values[i]);
+        }
+        inputs = 0;
+    }
+
+    // Hand finished rounds to the OS
+    void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    // Visit every whole round in a recording. Returns the number of rounds read;
+    // a round cut short at the end of the file is left out.
+    static long replay(Path path, Visitor visitor) throws IOException {
+        long[] rounds = new long[1];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            checkHeader(channel, path);
+            scan(channel, round -> {
+                visitor.round(round);
+                rounds[0]++;
+            });
+        }
+        return rounds[0];
+    }
+
+    // Walk the whole rounds after the header, handing each to the visitor if
+    // there is one. Returns where the last whole round ends.
+    private static long scan(FileChannel channel, Visitor visitor) throws IOException {
+        Main.Difficulty[] difficulties = Main.Difficulty.values();
+        Round round = new Round();
+        long size = channel.size();
+        long position = HEADER_SIZE;
+
+        while (position < size) {
+            long length = Math.min(MAP_CHUNK, size - position);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            round.buffer = map;
+
+            int at = 0;
+            while (length - at >= HEAD_SIZE) {
+                int difficulty = map.get(at);
+                int inputs = map.getInt(at + 40);
+                long end = at + HEAD_SIZE + (long) inputs * INPUT_SIZE;
+                if (difficulty < 0 || difficulty >= difficulties.length || inputs < 0 || end > length) {
+                    break;
+                }
+                if (visitor != null) {
+                    round.difficulty = difficulties[difficulty];
+                    round.outcome = map.get(at + 1);
+                    round.attempts = map.getShort(at + 2);
+                    round.hintsUsed = map.getShort(at + 4);
+                    round.min = map.getInt(at + 8);
+                    round.max = map.getInt(at + 12);
+                    round.maxGuesses = map.getInt(at + 16);
+                    round.hints = map.getInt(at + 20);
+                    round.secret = map.getInt(at + 24);
+                    round.points = map.getInt(at + 28);
+                    round.seed = map.getLong(at + 32);
+                    round.inputs = inputs;
+                    round.inputsAt = at + HEAD_SIZE;
+                    visitor.round(round);
+                }
+                at = (int) end;
+            }
+            if (at == 0) {
+                break; // torn round at the tail
+            }
+            position += at;
+        }
+        return position;
+    }
+}
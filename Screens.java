@@ -0,0 +1,220 @@
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The console's fixed screens, rendered once and kept as ready-to-write bytes.
+//
+// The welcome screen, the main menu, the mode banners and the goodbye screen
+// are the same every time apart from a few counters, so each is built once
+// per color mode and terminal width, clear-screen code included. Showing one
+// is a copy into the Renderer, with the counters spliced in between the
+// parts, and a single write.
+//
+// Boxes are drawn 60 columns wide and shrink to fit narrower terminals; the
+// width comes from -Dguess.columns or $COLUMNS, else 80 is assumed.
+public class Screens {
+    // Widest box interior, and the narrowest we shrink to
+    private static final int FULL = 58;
+    private static final int NARROWEST = 24;
+
+    private static final ConcurrentHashMap<Integer, Screens> cache = new ConcurrentHashMap<>();
+
+    final byte[] welcome;     // ends with the "Press Enter" prompt
+    final byte[] menuHead;    // up to the statistics
+    final byte[] menuTail;    // after the statistics
+    final byte[] goodbyeHead; // up to the final statistics
+    final byte[] goodbyeTail; // after the final statistics and rating
+    private final byte[][] banners = new byte[Main.Difficulty.values().length][];
+    private final byte[][] ratings = new byte[4][];
+
+    private final boolean color;
+    private final int inner;
+
+    private Screens(boolean color, int columns) {
+        this.color = color;
+        this.inner = Math.max(NARROWEST, Math.min(FULL, columns - 2));
+
+        welcome = render(r -> {
+            clear(r);
+            box(r, Renderer.CYAN, false, Renderer.PURPLE, "           🔢 WELCOME TO GUESS THE NUMBER! 🔢");
+
+            r.color(Renderer.YELLOW).color(Renderer.BOLD).text("🎯 HOW TO PLAY:\n").color(Renderer.RESET).newline();
+            step(r, "1. ", Renderer.GREEN, "Choose a difficulty level or set custom range");
+            step(r, "2. ", Renderer.GREEN, "I'll think of a secret number in that range");
+            step(r, "3. ", Renderer.GREEN, "You have limited attempts to guess it");
+            step(r, "4. ", Renderer.GREEN, "I'll tell you if your guess is too high or too low");
+            step(r, "5. ", Renderer.GREEN, "Use hints wisely to help you guess faster!\n");
+
+            r.color(Renderer.YELLOW).color(Renderer.BOLD).text("🏆 SCORING:\n").color(Renderer.RESET).newline();
+            step(r, "• ", Renderer.CYAN, "Fewer guesses = More points");
+            step(r, "• ", Renderer.CYAN, "Harder difficulty = Higher base points");
+            step(r, "• ", Renderer.CYAN, "Track your best game (fewest guesses)");
+
+            r.newline().color(Renderer.GREEN).color(Renderer.BOLD).text("Press Enter to start...")
+                    .color(Renderer.RESET);
+        });
+
+        menuHead = render(r -> {
+            clear(r);
+            rule(r, "");
+            r.color(Renderer.CYAN).color(Renderer.BOLD).text(title("                     MAIN MENU"))
+                    .color(Renderer.RESET).newline();
+            rule(r, "\n");
+            r.color(Renderer.YELLOW).color(Renderer.BOLD).text("📊 CURRENT STATISTICS:\n").color(Renderer.RESET)
+                    .newline();
+        });
+
+        menuTail = render(r -> {
+            r.newline().color(Renderer.GREEN).color(Renderer.BOLD).text("🎯 SELECT DIFFICULTY:\n")
+                    .color(Renderer.RESET).newline();
+            option(r, Renderer.GREEN, "1. Easy Mode (1-50)", "10 attempts, 3 hints", "Base points: 100");
+            option(r, Renderer.BLUE, "2. Medium Mode (1-100)", "15 attempts, 2 hints", "Base points: 200");
+            option(r, Renderer.RED, "3. Hard Mode (1-200)", "20 attempts, 1 hint", "Base points: 300");
+            option(r, Renderer.PURPLE, "4. Custom Range", "Set your own range (1-1000)", "Dynamic attempts & hints");
+            option(r, Renderer.ORANGE, "5. Large Range", "Any bounds, far past 64 bits",
+                    "Attempts & hints scale with the range");
+            option(r, Renderer.CYAN, "6. View Detailed Statistics", " 📊");
+            option(r, Renderer.YELLOW, "7. Leaderboard", " 🏆");
+            option(r, Renderer.ORANGE, "8. Exit Game", " 🚪");
+        });
+
+        banners[Main.Difficulty.EASY.ordinal()] =
+                render(r -> preset(r, Main.Difficulty.EASY, Renderer.GREEN, "                         EASY MODE"));
+        banners[Main.Difficulty.MEDIUM.ordinal()] =
+                render(r -> preset(r, Main.Difficulty.MEDIUM, Renderer.BLUE, "                       MEDIUM MODE"));
+        banners[Main.Difficulty.HARD.ordinal()] =
+                render(r -> preset(r, Main.Difficulty.HARD, Renderer.RED, "                         HARD MODE"));
+        banners[Main.Difficulty.CUSTOM.ordinal()] = render(r -> {
+            clear(r);
+            box(r, Renderer.PURPLE, true, Renderer.PURPLE, "                       CUSTOM MODE");
+            r.color(Renderer.YELLOW).text("Create your own challenge!\n").color(Renderer.RESET).newline();
+        });
+        banners[Main.Difficulty.LARGE.ordinal()] = render(r -> {
+            clear(r);
+            box(r, Renderer.ORANGE, true, Renderer.ORANGE, "                    LARGE RANGE MODE");
+            r.color(Renderer.YELLOW).text("Pick any bounds, as big as you like!\n").color(Renderer.RESET).newline();
+        });
+
+        goodbyeHead = render(r -> {
+            clear(r);
+            box(r, Renderer.CYAN, false, Renderer.PURPLE, "            THANK YOU FOR PLAYING!");
+            r.color(Renderer.YELLOW).text("🔢 GUESS THE NUMBER - FINAL STATISTICS\n").color(Renderer.RESET).newline();
+        });
+
+        ratings[0] = render(r -> rating(r, Renderer.GREEN, "  🥇 NUMBER GENIUS!"));
+        ratings[1] = render(r -> rating(r, Renderer.BLUE, "  🥈 EXCELLENT PLAYER!"));
+        ratings[2] = render(r -> rating(r, Renderer.YELLOW, "  🥉 GOOD PLAYER!"));
+        ratings[3] = render(r -> rating(r, Renderer.ORANGE, "  🎯 KEEP PRACTICING!"));
+
+        goodbyeTail = render(r -> {
+            r.newline().color(Renderer.PURPLE).text("Come back soon to beat your high score! 🎯")
+                    .color(Renderer.RESET).newline();
+            r.newline().color(Renderer.RED).text("Game closing...").color(Renderer.RESET).newline();
+        });
+    }
+
+    // Screens for a color mode and terminal width, built on first use
+    static Screens of(boolean color, int columns) {
+        int width = Math.max(NARROWEST + 2, Math.min(FULL + 2, columns));
+        return cache.computeIfAbsent(width * 2 + (color ? 1 : 0), key -> new Screens(color, width));
+    }
+
+    // Terminal width from -Dguess.columns or $COLUMNS, 80 if neither is set
+    static int columns() {
+        String columns = System.getProperty("guess.columns", System.getenv("COLUMNS"));
+        try {
+            return columns == null ? 80 : Integer.parseInt(columns.trim());
+        } catch (NumberFormatException e) {
+            return 80;
+        }
+    }
+
+    // Mode banner; for the presets it includes the range and attempts lines
+    byte[] banner(Main.Difficulty difficulty) {
+        return banners[difficulty.ordinal()];
+    }
+
+    // Final rating line for an average number of guesses
+    byte[] rating(double averageGuesses) {
+        if (averageGuesses <= 5) {
+            return ratings[0];
+        } else if (averageGuesses <= 8) {
+            return ratings[1];
+        } else if (averageGuesses <= 12) {
+            return ratings[2];
+        }
+        return ratings[3];
+    }
+
+    private interface Drawing {
+        void draw(Renderer r);
+    }
+
+    private byte[] render(Drawing drawing) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Renderer r = new Renderer(bytes, color);
+        drawing.draw(r);
+        r.flush();
+        return bytes.toByteArray();
+    }
+
+    // The clear-screen code goes out in every mode, as clearScreen() always sent it
+    private static void clear(Renderer r) {
+        r.text("\033[H\033[2J");
+    }
+
+    private void box(Renderer r, byte[] frame, boolean bold, byte[] titleColor, String title) {
+        String edge = "═".repeat(inner);
+        edge(r, frame, bold).text("╔").text(edge).text("╗").color(Renderer.RESET).newline();
+        r.color(titleColor).color(Renderer.BOLD).text(title(title)).color(Renderer.RESET).newline();
+        edge(r, frame, bold).text("╚").text(edge).text("╝\n").color(Renderer.RESET).newline();
+    }
+
+    private static Renderer edge(Renderer r, byte[] frame, boolean bold) {
+        r.color(frame);
+        return bold ? r.color(Renderer.BOLD) : r;
+    }
+
+    private void rule(Renderer r, String after) {
+        r.color(Renderer.PURPLE).text("═".repeat(Math.min(FULL, inner + 2))).text(after).color(Renderer.RESET)
+                .newline();
+    }
+
+    // Titles are laid out for the full width; narrower boxes drop some of the indent
+    private String title(String title) {
+        int indent = 0;
+        while (indent < title.length() && title.charAt(indent) == ' ') {
+            indent++;
+        }
+        return title.substring(Math.min(indent, (FULL - inner) / 2));
+    }
+
+    private void preset(Renderer r, Main.Difficulty difficulty, byte[] frame, String title) {
+        clear(r);
+        box(r, frame, true, frame, title);
+        r.color(Renderer.YELLOW).text("🎯 I'm thinking of a number between ").num(difficulty.min).text(" and ")
+                .num(difficulty.max).color(Renderer.RESET).newline();
+        r.color(Renderer.YELLOW).text("📊 You have ").num(difficulty.maxGuesses).text(" attempts and ")
+                .num(difficulty.hints).text(" hint(s)\n").color(Renderer.RESET).newline();
+    }
+
+    private static void step(Renderer r, String bullet, byte[] color, String text) {
+        r.text(bullet).color(color).text(text).color(Renderer.RESET).newline();
+    }
+
+    private static void option(Renderer r, byte[] color, String name, String... details) {
+        r.text("  ").color(color).text(name).color(Renderer.RESET);
+        if (details.length == 1) {
+            r.text(details[0]).text("\n").newline(); // trailing icon
+            return;
+        }
+        r.newline();
+        for (int i = 0; i < details.length; i++) {
+            r.text("     • ").text(details[i]).text(i == details.length - 1 ? "\n" : "").newline();
+        }
+    }
+
+    private static void rating(Renderer r, byte[] color, String text) {
+        r.newline().color(Renderer.GREEN).text("🏆 YOUR FINAL RATING:").color(Renderer.RESET).newline();
+        r.color(color).text(text).color(Renderer.RESET).newline();
+    }
+}
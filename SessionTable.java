@@ -0,0 +1,213 @@
+import java.util.random.RandomGenerator;
+
+// Parked games: rounds in progress for players who are away, with no heap
+// object per game.
+//
+// Sessions live in parallel primitive arrays indexed by slot, 46 bytes each:
+//   seeds        the session's Rng stream seed; the secret and every hint
+//                drawn so far are replayed from it on resume, so neither the
+//                secret nor the generator needs storing
+//   bounds       min and max, packed into one long
+//   state        last guess, attempts, hints used, difficulty and flags
+//   candidates   the secrets still possible, as a CandidateSet's bounds in one
+//   digits       long and its last-digit mask in a short; hints are chosen
+//                from them, so a resumed round needs them back
+//   touched      seconds since the table started, for idle eviction
+//   generations  bumped whenever a slot is freed, so stale ids are refused
+//   free         stack of free slots, reused before the table fills
+//
+// An id is the slot in the low 32 bits and its generation in the high 32, so
+// lookup is an array index plus a generation check. Slot operations lock one
+// of a fixed set of stripes; only taking and freeing slots share a lock.
+// The arrays are allocated once, so a full table is a handful of big arrays
+// the collector barely has to look at, rather than millions of small objects.
+//
+// A parked session must have been started the way playGame starts one: the
+// secret is the first draw from Rng.stream(seed) and hints draw after it.
+public class SessionTable {
+    private static final int STRIPES = 256;
+    private static final int HINT_KINDS = GameSession.Hint.values().length;
+    private static final Main.Difficulty[] DIFFICULTIES = Main.Difficulty.values();
+
+    // Packed state layout
+    private static final int ATTEMPTS_SHIFT = 32;
+    private static final int HINTS_SHIFT = 40;
+    private static final int DIFFICULTY_SHIFT = 48;
+    private static final long WON = 1L << 52;
+    private static final long CANCELLED = 1L << 53;
+    private static final long IN_USE = 1L << 54;
+
+    static final int BYTES_PER_SESSION = 8 + 8 + 8 + 8 + 2 + 4 + 4 + 4;
+
+    private final long[] seeds;
+    private final long[] bounds;
+    private final long[] state;
+    private final long[] candidates;
+    private final short[] digits;
+    private final int[] touched;
+    private final int[] generations;
+    private final int[] free;
+    private final Object[] stripes = new Object[STRIPES];
+    private final long epoch = System.nanoTime();
+    private int freeTop;
+    private int size = 0;
+
+    SessionTable(int capacity) {
+        seeds = new long[capacity];
+        bounds = new long[capacity];
+        state = new long[capacity];
+        candidates = new long[capacity];
+        digits = new short[capacity];
+        touched = new int[capacity];
+        generations = new int[capacity];
+        free = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            free[i] = capacity - 1 - i; // lowest slots handed out first
+        }
+        freeTop = capacity;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    // Park a session started from Rng.stream(seed). Returns its id.
+    long park(Main.Difficulty difficulty, long seed, GameSession session) {
+        int slot;
+        synchronized (free) {
+            if (freeTop == 0) {
+                throw new IllegalStateException("Session table is full");
+            }
+            slot = free[--freeTop];
+            size++;
+        }
+        synchronized (stripe(slot)) {
+            seeds[slot] = seed;
+            bounds[slot] = ((long) session.getMin() << 32) | (session.getMax() & 0xFFFFFFFFL);
+            write(slot, difficulty, session);
+            return ((long) generations[slot] << 32) | slot;
+        }
+    }
+
+    // Rebuild a parked session to play a turn, or null if the id is stale.
+    // The session stays parked; store() writes the turn back.
+    GameSession resume(long id) {
+        int slot = (int) id;
+        synchronized (stripe(slot)) {
+            if (!valid(id)) {
+                return null;
+            }
+            long packed = state[slot];
+            Main.Difficulty difficulty = DIFFICULTIES[(int) (packed >>> DIFFICULTY_SHIFT) & 0xF];
+            int min = (int) (bounds[slot] >> 32);
+            int max = (int) bounds[slot];
+            int hintsUsed = (int) (packed >>> HINTS_SHIFT) & 0xFF;
+
+            // Replay the draws made so far so the next hint comes out as it would have
+            RandomGenerator random = Rng.stream(seeds[slot]);
+            int secret = Rng.between(random, min, max);
+            for (int i = 0; i < hintsUsed; i++) {
+                random.nextInt(HINT_KINDS);
+            }
+
+            GameSession session = GameConfig.of(difficulty, min, max).newSession(secret, random);
+            session.restore((int) (packed >>> ATTEMPTS_SHIFT) & 0xFF, hintsUsed, (int) packed,
+                    (packed & WON) != 0, (packed & CANCELLED) != 0);
+            session.getCandidates().set((int) (candidates[slot] >> 32), (int) candidates[slot], digits[slot]);
+            touched[slot] = now();
+            return session;
+        }
+    }
+
+    // Write a resumed session's progress back. Returns false if the id went stale meanwhile.
+    boolean store(long id, GameSession session) {
+        int slot = (int) id;
+        synchronized (stripe(slot)) {
+            if (!valid(id)) {
+                return false;
+            }
+            Main.Difficulty difficulty = DIFFICULTIES[(int) (state[slot] >>> DIFFICULTY_SHIFT) & 0xF];
+            write(slot, difficulty, session);
+            return true;
+        }
+    }
+
+    // Free a session's slot. Returns false if the id was already stale.
+    boolean remove(long id) {
+        int slot = (int) id;
+        synchronized (stripe(slot)) {
+            if (!valid(id)) {
+                return false;
+            }
+            release(slot);
+        }
+        return true;
+    }
+
+    // Free every session untouched for longer than maxIdleMillis. Returns how many went.
+    int evictIdle(long maxIdleMillis) {
+        int cutoff = now() - (int) Math.min(Integer.MAX_VALUE, maxIdleMillis / 1000);
+        int evicted = 0;
+        for (int slot = 0; slot < state.length; slot++) {
+            if ((state[slot] & IN_USE) != 0 && touched[slot] < cutoff) {
+                synchronized (stripe(slot)) {
+                    if ((state[slot] & IN_USE) != 0 && touched[slot] < cutoff) {
+                        release(slot);
+                        evicted++;
+                    }
+                }
+            }
+        }
+        return evicted;
+    }
+
+    // Sessions parked right now
+    int size() {
+        synchronized (free) {
+            return size;
+        }
+    }
+
+    int capacity() {
+        return state.length;
+    }
+
+    // Caller holds the slot's stripe
+    private void write(int slot, Main.Difficulty difficulty, GameSession session) {
+        state[slot] = (session.getLastGuess() & 0xFFFFFFFFL)
+                | (long) Math.min(session.getAttempts(), 0xFF) << ATTEMPTS_SHIFT
+                | (long) Math.min(session.getHintsUsed(), 0xFF) << HINTS_SHIFT
+                | (long) difficulty.ordinal() << DIFFICULTY_SHIFT
+                | (session.isWon() ? WON : 0)
+                | (session.isCancelled() ? CANCELLED : 0)
+                | IN_USE;
+        CandidateSet left = session.getCandidates();
+        candidates[slot] = (left.low() << 32) | (left.high() & 0xFFFFFFFFL);
+        digits[slot] = (short) (left.isEmpty() ? 0 : left.allowedDigits());
+        touched[slot] = now();
+    }
+
+    // Caller holds the slot's stripe
+    private void release(int slot) {
+        state[slot] = 0;
+        generations[slot]++;
+        synchronized (free) {
+            free[freeTop++] = slot;
+            size--;
+        }
+    }
+
+    // Caller holds the slot's stripe
+    private boolean valid(long id) {
+        int slot = (int) id;
+        return slot >= 0 && slot < state.length && (state[slot] & IN_USE) != 0
+                && generations[slot] == (int) (id >>> 32);
+    }
+
+    private Object stripe(int slot) {
+        return stripes[slot & (STRIPES - 1)];
+    }
+
+    private int now() {
+        return (int) ((System.nanoTime() - epoch) / 1_000_000_000L);
+    }
+}
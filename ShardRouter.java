@@ -0,0 +1,376 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Front for several GameServer processes, each one shard of the players.
+//
+//   java -cp out Main --server 7701
+//   java -cp out Main --server 7702
+//   java -cp out Main --router 7777 7701 7702
+//
+// Clients speak the GameServer line protocol to the router. Each connection
+// belongs to the shard a HashRing picks for its player: guest-<n> until it
+// sends NAME, then that name, so a named player's rounds and leaderboard entry
+// always land on the same shard. The router forwards each command to that
+// shard and its reply back, and keeps no game state of its own, so any
+// number of routers can front the same shards as long as they list them in
+// the same order.
+//
+// NAME moves the connection to the name's shard. Before the first guess or
+// hint the move is invisible, since shards run the same difficulty and so
+// announce the same ROUND, and the untouched round left behind isn't counted
+// (see GameServer). Once a round is under way it's finished where it started,
+// under the id it started with, and the next one is played on the new shard;
+// until then RANK and PROFILE are asked there, where the name now lives.
+//
+// STATS answers with the totals of all shards added together: the
+// connection's own shard is asked over the connection, the others over a
+// fresh connection each. RACE joins a race room on the connection's shard,
+// after which bytes are passed through untouched.
+public class ShardRouter {
+    // Longest line passed on; the shards refuse anything over 64 bytes anyway
+    private static final int MAX_LINE = 1024;
+
+    private final int port;
+    private final InetSocketAddress[] shards;
+    private final HashRing ring;
+    private final AtomicLong guests = new AtomicLong();
+
+    ShardRouter(int port, InetSocketAddress[] shards) {
+        this.port = port;
+        this.shards = shards;
+        this.ring = new HashRing(shards.length);
+    }
+
+    // Usage: --router <port> <shard>..., a shard being a port or host:port
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: --router <port> <shard>...");
+            return;
+        }
+        InetSocketAddress[] shards = new InetSocketAddress[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            shards[i - 1] = address(args[i]);
+        }
+        new ShardRouter(Integer.parseInt(args[0]), shards).serve();
+    }
+
+    // "port" or "host:port"
+    static InetSocketAddress address(String shard) {
+        int colon = shard.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketAddress("localhost", Integer.parseInt(shard));
+        }
+        return new InetSocketAddress(shard.substring(0, colon), Integer.parseInt(shard.substring(colon + 1)));
+    }
+
+    void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket()) {
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(port), 4096);
+            System.out.println("Guess the number router on port " + port + " for " + shards.length + " shards");
+
+            while (true) {
+                Socket socket = server.accept();
+                Thread.ofVirtual().start(() -> handle(socket));
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            route(new Lines(socket.getInputStream()), socket.getOutputStream(), "guest-" + guests.incrementAndGet());
+        } catch (IOException | UncheckedIOException e) {
+            // Client or shard went away; closing the sockets is all there is to do
+        }
+    }
+
+    private void route(Lines client, OutputStream out, String player) throws IOException {
+        Shard shard = open(ring.owner(player));
+        Shard next = null; // where the next round is played, after a NAME mid-round
+        try {
+            out.write(shard.readLine());
+            out.flush();
+            boolean fresh = true; // nothing played yet in the round under way
+
+            while (true) {
+                byte[] line = client.readLine();
+                if (line == null) {
+                    shard.send(Lines.QUIT);
+                    return;
+                }
+                String input = new String(line, StandardCharsets.US_ASCII).trim().toUpperCase();
+
+                if (input.equals("STATS")) {
+                    out.write(stats(shard));
+                    out.flush();
+                    continue;
+                }
+                if (input.startsWith("NAME ") && input.length() > 5) {
+                    int owner = ring.owner(new String(line, StandardCharsets.US_ASCII).trim().substring(5).trim());
+                    if (next != null) {
+                        next.close();
+                        next = null;
+                    }
+                    if (owner != shard.index) {
+                        Shard moved = open(owner);
+                        moved.readLine(); // the same ROUND the client already has
+                        if (fresh) {
+                            shard.quit();
+                            shard = moved;
+                        } else {
+                            // Only the new shard hears the name, so the round under way isn't scored under it
+                            next = moved;
+                            next.send(line);
+                            out.write(next.readLine());
+                            out.flush();
+                            continue;
+                        }
+                    }
+                }
+                if (next != null && (input.equals("RANK") || input.equals("PROFILE"))) {
+                    next.send(line);
+                    out.write(next.readLine());
+                    out.flush();
+                    continue;
+                }
+                if (input.equals("RACE")) {
+                    shard.send(line);
+                    shard.pipe(client, out);
+                    return;
+                }
+
+                shard.send(line);
+                byte[] reply = shard.readLine();
+                out.write(reply);
+                if (input.equals("Q")) {
+                    out.flush();
+                    if (next != null) {
+                        next.quit();
+                        next = null;
+                    }
+                    return;
+                }
+                if (startsWith(reply, "WIN ") || startsWith(reply, "LOSE ")) {
+                    out.write(shard.readLine());
+                    if (next != null) {
+                        // The round that was under way is done; carry on where the name belongs,
+                        // whose round was announced with the same ROUND line
+                        shard.quit();
+                        shard = next;
+                        next = null;
+                    }
+                    fresh = true;
+                } else if (!input.startsWith("NAME ") && !input.equals("RANK") && !input.equals("PROFILE")) {
+                    fresh = false;
+                }
+                out.flush();
+            }
+        } finally {
+            shard.close();
+            if (next != null) {
+                next.close();
+            }
+        }
+    }
+
+    // Every shard's totals added up, as a STATS reply line. Asking the own shard
+    // over the connection makes sure the client's latest rounds are counted.
+    private byte[] stats(Shard own) throws IOException {
+        GameStats total = new GameStats();
+        for (int i = 0; i < shards.length; i++) {
+            if (i == own.index) {
+                own.send(Lines.STATS);
+                total.restore(decodeStats(own.readLine()));
+            } else {
+                total.restore(queryStats(shards[i]));
+            }
+        }
+        return ("STATS " + GameStats.encode(total.snapshot()) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Ask one server for its totals over a connection of its own. The round the
+    // server deals it is quit untouched, which the server doesn't count.
+    static GameStats.Snapshot queryStats(InetSocketAddress server) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(server);
+            Lines in = new Lines(socket.getInputStream());
+            socket.getOutputStream().write("STATS\nQ\n".getBytes(StandardCharsets.US_ASCII));
+            in.readLine(); // ROUND
+            return decodeStats(in.readLine());
+        }
+    }
+
+    private static GameStats.Snapshot decodeStats(byte[] reply) throws IOException {
+        if (reply == null || !startsWith(reply, "STATS ")) {
+            throw new IOException("Expected STATS, got " + (reply == null ? "nothing" :
+                    new String(reply, StandardCharsets.US_ASCII).trim()));
+        }
+        try {
+            return GameStats.decode(new String(reply, 6, reply.length - 6, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private Shard open(int index) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(shards[index]);
+            socket.setTcpNoDelay(true);
+            return new Shard(index, socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static boolean startsWith(byte[] line, String prefix) {
+        if (line.length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // One connection to a shard, confined to the client's thread
+    private static final class Shard {
+        final int index;
+        final Socket socket;
+        final Lines in;
+        final OutputStream out;
+
+        Shard(int index, Socket socket) throws IOException {
+            this.index = index;
+            this.socket = socket;
+            this.in = new Lines(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        byte[] readLine() throws IOException {
+            byte[] line = in.readLine();
+            if (line == null) {
+                throw new IOException("Shard " + index + " closed the connection");
+            }
+            return line;
+        }
+
+        void send(byte[] line) throws IOException {
+            out.write(line);
+            out.flush();
+        }
+
+        // Leave the round under way and wait for the BYE, so the shard counts the quit
+        void quit() throws IOException {
+            send(Lines.QUIT);
+            in.readLine();
+            close();
+        }
+
+        // Pass bytes both ways until either side closes
+        void pipe(Lines client, OutputStream clientOut) throws IOException {
+            Thread down = Thread.ofVirtual().start(() -> {
+                try {
+                    in.drainTo(clientOut);
+                    socket.getInputStream().transferTo(clientOut);
+                } catch (IOException e) {
+                    // Either side went away
+                } finally {
+                    try {
+                        clientOut.close();
+                    } catch (IOException e) {
+                        // Already closed
+                    }
+                }
+            });
+            try {
+                client.drainTo(out);
+                client.stream().transferTo(out);
+            } finally {
+                close();
+                try {
+                    down.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    // Line reader over a byte stream. Lines come back with their '\n', ready to
+    // pass on, and whatever is read past the last line can be handed over too.
+    static final class Lines {
+        static final byte[] QUIT = {'Q', '\n'};
+        static final byte[] STATS = {'S', 'T', 'A', 'T', 'S', '\n'};
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[4096];
+        private int pos = 0;
+        private int end = 0;
+
+        Lines(InputStream in) {
+            this.in = in;
+        }
+
+        InputStream stream() {
+            return in;
+        }
+
+        // The next line, cut at MAX_LINE, or null at end of stream
+        byte[] readLine() throws IOException {
+            byte[] line = new byte[64];
+            int length = 0;
+            while (true) {
+                if (pos == end) {
+                    end = in.read(buffer);
+                    pos = 0;
+                    if (end <= 0) {
+                        end = 0;
+                        return length > 0 ? terminate(line, length) : null;
+                    }
+                }
+                byte b = buffer[pos++];
+                if (b == '\n') {
+                    return terminate(line, length);
+                }
+                if (b != '\r' && length < MAX_LINE) {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[length++] = b;
+                }
+            }
+        }
+
+        // Write out what's been read but not yet returned
+        void drainTo(OutputStream out) throws IOException {
+            if (pos < end) {
+                out.write(buffer, pos, end - pos);
+                out.flush();
+            }
+            pos = end;
+        }
+
+        private static byte[] terminate(byte[] line, int length) {
+            byte[] terminated = Arrays.copyOf(line, length + 1);
+            terminated[length] = '\n';
+            return terminated;
+        }
+    }
+}
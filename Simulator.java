@@ -0,0 +1,134 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.random.RandomGenerator;
+
+// Batch mode: bots play a large number of rounds through the real game code
+// (GameSession for guesses and proximity bands, GameConfig for scoring,
+// GameStats for the totals) and the results are summarised.
+//
+// The games are split evenly across one worker per core. Each worker has its
+// own random stream from Rng and its own single-stripe GameStats, so workers
+// share nothing while they run; their totals are merged with restore() at
+// the end. A worker reuses one session per round rather than allocating one.
+//
+//   java -cp out Main --simulate <EASY|MEDIUM|HARD|min-max> [binary|proximity|random] [games]
+public class Simulator {
+    private static final GameSession.Proximity[] BANDS = GameSession.Proximity.values();
+
+    // Play games rounds split across workers; returns the merged totals
+    static GameStats simulate(GameConfig config, Solver.Strategy strategy, long games, int workers, Rng rng) {
+        List<ForkJoinTask<GameStats>> tasks = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            long share = games / workers + (w < games % workers ? 1 : 0);
+            RandomGenerator random = rng.session(w);
+            tasks.add(ForkJoinPool.commonPool().submit(() -> play(config, strategy, share, random)));
+        }
+
+        GameStats total = new GameStats(1);
+        for (ForkJoinTask<GameStats> task : tasks) {
+            total.restore(task.join().snapshot());
+        }
+        return total;
+    }
+
+    // One worker's share of the games
+    private static GameStats play(GameConfig config, Solver.Strategy strategy, long games, RandomGenerator random) {
+        GameStats stats = new GameStats(1);
+        GameSession session = config.newSession(config.min, random);
+        for (long game = 0; game < games; game++) {
+            session.reset(Rng.between(random, config.min, config.max));
+            playOne(session, strategy, random);
+            stats.record(config.difficulty, session.isWon(), session.getAttempts(), session.pointsEarned());
+        }
+        return stats;
+    }
+
+    // Guess until the session ends, narrowing the open interval on every reply
+    static void playOne(GameSession session, Solver.Strategy strategy, RandomGenerator random) {
+        long low = session.getMin();
+        long high = session.getMax();
+        boolean proximity = strategy.usesProximity();
+
+        while (!session.isFinished()) {
+            int guess = (int) (low + strategy.pick(high - low + 1, random));
+            GameSession.Outcome outcome = session.submitGuess(guess);
+            if (outcome == GameSession.Outcome.CORRECT) {
+                return;
+            }
+            long nearest = 1;
+            long farthest = high - low; // no limit beyond the interval itself
+            if (proximity) {
+                GameSession.Proximity band = GameSession.Proximity.of(session.getSecret(), guess);
+                nearest = band.ordinal() == 0 ? 1 : BANDS[band.ordinal() - 1].maxDistance + 1L;
+                farthest = Math.min(farthest, band.maxDistance);
+            }
+            if (outcome == GameSession.Outcome.TOO_LOW) {
+                low = guess + nearest;
+                high = Math.min(high, guess + farthest);
+            } else {
+                high = guess - nearest;
+                low = Math.max(low, guess - farthest);
+            }
+        }
+    }
+
+    // Usage: <EASY|MEDIUM|HARD|min-max> [binary|proximity|random] [games]
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: --simulate <EASY|MEDIUM|HARD|min-max> [binary|proximity|random] [games]");
+            return;
+        }
+        GameConfig config;
+        int dash = args[0].indexOf('-', 1);
+        if (dash > 0) {
+            int min = Integer.parseInt(args[0].substring(0, dash));
+            int max = Integer.parseInt(args[0].substring(dash + 1));
+            config = GameConfig.custom(min, max);
+        } else {
+            Main.Difficulty difficulty = Main.Difficulty.valueOf(args[0].toUpperCase(Locale.ROOT));
+            if (difficulty == Main.Difficulty.LARGE) {
+                System.out.println("Usage: --simulate <EASY|MEDIUM|HARD|min-max> [binary|proximity|random] [games]");
+                return;
+            }
+            config = GameConfig.of(difficulty);
+        }
+        Solver.Strategy strategy = Solver.strategy(args.length > 1 ? args[1] : "binary");
+        long games = args.length > 2 ? Long.parseLong(args[2].replace("_", "")) : 10_000_000L;
+        int workers = ForkJoinPool.commonPool().getParallelism();
+        Rng rng = Rng.fromProperties();
+
+        // A short untimed run first so the timed one measures compiled code
+        simulate(config, strategy, Math.min(games, 1_000_000L), workers, rng);
+
+        long start = System.nanoTime();
+        GameStats stats = simulate(config, strategy, games, workers, rng);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        GameStats.Snapshot snapshot = stats.snapshot();
+        GameStats.DifficultySnapshot played = snapshot.of(config.difficulty);
+        System.out.printf("%s %d-%d, %s strategy, %d attempts allowed, seed %d%n",
+                config.difficulty, config.min, config.max, strategy.name(), config.maxGuesses, rng.seed());
+        System.out.printf("%d games on %d workers in %.3fs: %.0f games/s%n",
+                snapshot.gamesPlayed, workers, seconds, snapshot.gamesPlayed / seconds);
+        System.out.printf("Win rate %.2f%% (%d won, %d lost), average guesses %.3f, total score %d%n",
+                snapshot.winRate(), snapshot.wins, snapshot.losses, snapshot.averageGuesses(), snapshot.score);
+
+        // Points depend only on attempts for a fixed range, so the win histogram is the points distribution
+        System.out.println("\nPoints distribution:");
+        for (int attempts = 1; attempts < played.buckets(); attempts++) {
+            long wins = played.winsIn(attempts);
+            if (wins != 0) {
+                System.out.printf("  %4d points (%2d guesses): %12d  %6.2f%%%n",
+                        config.points(attempts), attempts, wins,
+                        wins * 100.0 / snapshot.gamesPlayed);
+            }
+        }
+        if (played.losses != 0) {
+            System.out.printf("     0 points (lost)      : %12d  %6.2f%%%n",
+                    played.losses, played.losses * 100.0 / snapshot.gamesPlayed);
+        }
+    }
+}
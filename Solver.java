@@ -0,0 +1,335 @@
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.random.RandomGenerator;
+
+// Plays every possible secret of a range with a guessing strategy and reports
+// how many guesses each one took, to check the game's claims: the tips screen
+// recommends binary search, and calculateMaxGuesses allows ceil(log2(range)) + 2.
+//
+// A deterministic strategy that picks its guess relative to the interval still
+// open behaves the same on [1, n] as on [k + 1, k + n], so the distribution
+// for a range depends only on its size. The analytic mode uses that and builds
+// the distribution from the sizes of the sub-intervals each reply leaves,
+// memoized by size, which handles ranges of 10^9 and beyond in microseconds.
+// The exhaustive mode plays each secret for real, split across all cores with
+// fork/join and one histogram per task. The random strategy has no shortcut,
+// so large ranges fall back to sampling secrets.
+//
+//   java -cp out Main --solve <EASY|MEDIUM|HARD|min-max> [binary|proximity|random|all] [exhaustive]
+public class Solver {
+    // Histogram buckets; the last one also counts anything longer
+    static final int MAX_TRACKED = 256;
+
+    // Largest range played secret by secret unless exhaustive mode is asked for
+    static final long EXHAUSTIVE_LIMIT = 1_000_000L;
+
+    // Secrets sampled for the random strategy on ranges too big to play in full
+    static final long SAMPLES = 4_000_000L;
+
+    // Picks the next guess as an offset into the interval still open
+    interface Strategy {
+        String name();
+
+        // Offset in [0, size) of the next guess
+        long pick(long size, RandomGenerator random);
+
+        // Whether the strategy narrows the interval using the proximity band
+        boolean usesProximity();
+
+        // Whether pick() ignores the random generator
+        boolean deterministic();
+    }
+
+    static final Strategy BINARY = midpoint("binary", false);
+    static final Strategy PROXIMITY = midpoint("proximity", true);
+    static final Strategy RANDOM = new Strategy() {
+        public String name() {
+            return "random";
+        }
+
+        public long pick(long size, RandomGenerator random) {
+            return random.nextLong(size);
+        }
+
+        public boolean usesProximity() {
+            return false;
+        }
+
+        public boolean deterministic() {
+            return false;
+        }
+    };
+
+    // Midpoint strategies, with or without the proximity bands
+    private static Strategy midpoint(String name, boolean proximity) {
+        return new Strategy() {
+            public String name() {
+                return name;
+            }
+
+            public long pick(long size, RandomGenerator random) {
+                return (size - 1) / 2;
+            }
+
+            public boolean usesProximity() {
+                return proximity;
+            }
+
+            public boolean deterministic() {
+                return true;
+            }
+        };
+    }
+
+    static Strategy strategy(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "binary":
+                return BINARY;
+            case "proximity":
+                return PROXIMITY;
+            case "random":
+                return RANDOM;
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    // Guesses needed per secret for one strategy over one range
+    static class Distribution {
+        final Strategy strategy;
+        final long size;
+        final String mode;
+        final long[] counts;
+
+        Distribution(Strategy strategy, long size, String mode, long[] counts) {
+            this.strategy = strategy;
+            this.size = size;
+            this.mode = mode;
+            this.counts = counts;
+        }
+
+        long secrets() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (int guesses = 0; guesses < counts.length; guesses++) {
+                sum += (double) guesses * counts[guesses];
+            }
+            return sum / secrets();
+        }
+
+        int worst() {
+            for (int guesses = counts.length - 1; guesses > 0; guesses--) {
+                if (counts[guesses] != 0) {
+                    return guesses;
+                }
+            }
+            return 0;
+        }
+
+        // Share of secrets found within the given number of guesses
+        double within(int guesses) {
+            long found = 0;
+            for (int g = 0; g <= Math.min(guesses, counts.length - 1); g++) {
+                found += counts[g];
+            }
+            return (double) found / secrets();
+        }
+    }
+
+    // Analytic where possible, secret by secret for small ranges, sampled otherwise
+    static Distribution solve(long size, Strategy strategy, boolean exhaustive) {
+        if (strategy.deterministic() && !exhaustive) {
+            return new Distribution(strategy, size, "analytic", analytic(size, strategy, new HashMap<>()));
+        }
+        if (exhaustive || size <= EXHAUSTIVE_LIMIT) {
+            long[] counts = ForkJoinPool.commonPool().invoke(new Play(size, strategy, 0, size, false));
+            return new Distribution(strategy, size, "exhaustive", counts);
+        }
+        long[] counts = ForkJoinPool.commonPool().invoke(new Play(size, strategy, 0, SAMPLES, true));
+        return new Distribution(strategy, size, "sampled", counts);
+    }
+
+    // Distribution over all secrets of an interval of the given size
+    private static long[] analytic(long size, Strategy strategy, Map<Long, long[]> memo) {
+        long[] known = memo.get(size);
+        if (known != null) {
+            return known;
+        }
+        long[] counts = new long[MAX_TRACKED];
+        if (size > 0) {
+            long guess = strategy.pick(size, null);
+            counts[1] = 1;
+            long below = guess;
+            long above = size - 1 - guess;
+
+            if (strategy.usesProximity()) {
+                long previous = 0;
+                for (GameSession.Proximity band : GameSession.Proximity.values()) {
+                    long width = band == GameSession.Proximity.ICE ? Long.MAX_VALUE : band.maxDistance - previous;
+                    addShifted(counts, analytic(clamp(below - previous, width), strategy, memo));
+                    addShifted(counts, analytic(clamp(above - previous, width), strategy, memo));
+                    previous = band.maxDistance;
+                }
+            } else {
+                addShifted(counts, analytic(below, strategy, memo));
+                addShifted(counts, analytic(above, strategy, memo));
+            }
+        }
+        memo.put(size, counts);
+        return counts;
+    }
+
+    private static long clamp(long remaining, long width) {
+        return Math.max(0, Math.min(remaining, width));
+    }
+
+    // Add a sub-interval's counts, one guess later
+    private static void addShifted(long[] into, long[] from) {
+        for (int guesses = 0; guesses < from.length; guesses++) {
+            if (from[guesses] != 0) {
+                into[Math.min(guesses + 1, MAX_TRACKED - 1)] += from[guesses];
+            }
+        }
+    }
+
+    // Guesses the strategy needs for one secret at the given offset into [0, size)
+    static int play(long size, long secret, Strategy strategy, RandomGenerator random) {
+        long low = 0;
+        long high = size - 1;
+        boolean proximity = strategy.usesProximity();
+
+        for (int guesses = 1; ; guesses++) {
+            long guess = low + strategy.pick(high - low + 1, random);
+            if (guess == secret) {
+                return guesses;
+            }
+            long distance = Math.abs(secret - guess);
+            long nearest = 1;
+            long farthest = Long.MAX_VALUE;
+            if (proximity) {
+                long previous = 0;
+                for (GameSession.Proximity band : GameSession.Proximity.values()) {
+                    // ICE has no far edge, however wide the range
+                    if (band == GameSession.Proximity.ICE || distance <= band.maxDistance) {
+                        nearest = previous + 1;
+                        farthest = band == GameSession.Proximity.ICE ? Long.MAX_VALUE : band.maxDistance;
+                        break;
+                    }
+                    previous = band.maxDistance;
+                }
+            }
+            if (guess < secret) {
+                low = guess + nearest;
+                if (farthest != Long.MAX_VALUE) {
+                    high = Math.min(high, guess + farthest);
+                }
+            } else {
+                high = guess - nearest;
+                if (farthest != Long.MAX_VALUE) {
+                    low = Math.max(low, guess - farthest);
+                }
+            }
+        }
+    }
+
+    // Plays secrets [from, to) (or that many random secrets) into one histogram per task
+    @SuppressWarnings("serial")
+    private static class Play extends RecursiveTask<long[]> {
+        private static final long LEAF = 1 << 16;
+
+        private final long size;
+        private final Strategy strategy;
+        private final long from;
+        private final long to;
+        private final boolean sampled;
+
+        Play(long size, Strategy strategy, long from, long to, boolean sampled) {
+            this.size = size;
+            this.strategy = strategy;
+            this.from = from;
+            this.to = to;
+            this.sampled = sampled;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from > LEAF) {
+                long middle = (from + to) >>> 1;
+                Play left = new Play(size, strategy, from, middle, sampled);
+                left.fork();
+                long[] right = new Play(size, strategy, middle, to, sampled).compute();
+                long[] counts = left.join();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += right[i];
+                }
+                return counts;
+            }
+
+            long[] counts = new long[MAX_TRACKED];
+            SplittableRandom random = new SplittableRandom(from * 0x9E3779B97F4A7C15L + size);
+            for (long i = from; i < to; i++) {
+                long secret = sampled ? random.nextLong(size) : i;
+                counts[Math.min(play(size, secret, strategy, random), MAX_TRACKED - 1)]++;
+            }
+            return counts;
+        }
+    }
+
+    // Usage: <EASY|MEDIUM|HARD|min-max> [binary|proximity|random|all] [exhaustive]
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: --solve <EASY|MEDIUM|HARD|min-max> [binary|proximity|random|all] [exhaustive]");
+            return;
+        }
+        long min;
+        long max;
+        int dash = args[0].indexOf('-', 1);
+        if (dash > 0) {
+            min = Long.parseLong(args[0].substring(0, dash));
+            max = Long.parseLong(args[0].substring(dash + 1));
+        } else {
+            Main.Difficulty difficulty = Main.Difficulty.valueOf(args[0].toUpperCase(Locale.ROOT));
+            min = difficulty.min;
+            max = difficulty.max;
+        }
+        String which = args.length > 1 ? args[1] : "all";
+        boolean exhaustive = args.length > 2 && args[2].equalsIgnoreCase("exhaustive");
+
+        long size = max - min + 1;
+        Strategy[] strategies = which.equalsIgnoreCase("all") ?
+                new Strategy[] {BINARY, PROXIMITY, RANDOM} : new Strategy[] {strategy(which)};
+        // Past int range the game's large mode limits attempts, with the exact BigInteger version
+        int allowed = size <= Integer.MAX_VALUE ? Main.calculateMaxGuesses((int) size) :
+                Main.calculateMaxGuesses(BigInteger.valueOf(size));
+
+        System.out.printf("Range %d-%d (%d secrets), calculateMaxGuesses allows %d attempts%n",
+                min, max, size, allowed);
+        for (Strategy strategy : strategies) {
+            long start = System.nanoTime();
+            Distribution result = solve(size, strategy, exhaustive);
+            double millis = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%n%s (%s, %d secrets, %.1f ms): mean %.3f, worst %d, within limit %.4f%%%n",
+                    strategy.name(), result.mode, result.secrets(), millis, result.mean(), result.worst(),
+                    result.within(allowed) * 100);
+            for (int guesses = 1; guesses < result.counts.length; guesses++) {
+                if (result.counts[guesses] != 0) {
+                    System.out.printf("  %3d%s guesses: %d%n", guesses,
+                            guesses == MAX_TRACKED - 1 ? "+" : "", result.counts[guesses]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,570 @@
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Console output that repaints only what changed from one screen to the next.
+//
+// Every screen starts with the clear-screen code. Rather than sending that
+// and the whole screen, the Terminal keeps a model of what is on the
+// terminal: the bytes written to each row and the colors in force where each
+// row starts. A new screen is held back until it's complete, which is when
+// the console next reads input or settle() is called, and then goes out as
+// cursor moves plus the rows, or the tails of rows, that differ. If that
+// comes to more bytes than the clear and full repaint, the full repaint is
+// sent instead.
+//
+// Most screens have little in common with the one before, so the screen the
+// console keeps coming back to, marked with keep(), stays on the terminal's
+// normal buffer and the others are drawn on the alternate buffer. Coming
+// back is then a switch of buffers and whatever changed on the kept screen.
+// The alternate buffer has no scrollback, and close() puts the terminal back
+// on the normal one.
+//
+// The model is only used while it can't be wrong. Each line the player types
+// is echoed by the terminal, so reading one marks its row unknown. Escape
+// codes other than colors, control characters, a row that may have wrapped
+// and output going past the bottom row all make the whole model unknown, and
+// the next screen is repainted in full. A column is only worked out from
+// characters of known width; rows with anything else in front of a change are
+// rewritten from the start.
+//
+// On only when stdin and stdout are a terminal; -Dguess.repaint=full turns it
+// off. The size comes from -Dguess.lines and -Dguess.columns, $LINES and
+// $COLUMNS, or 'stty size', else 24 by 80 is assumed.
+public class Terminal extends OutputStream {
+    static final byte[] CLEAR = ascii("\033[H\033[2J");
+
+    private static final byte[] NONE = {};
+    private static final byte[] RESET = ascii("\033[0m");
+    private static final byte[] CLEAR_LINE = ascii("\033[K");
+    private static final byte[] CLEAR_BELOW = ascii("\033[J");
+    private static final byte[] HOME = ascii("\033[H");
+    private static final byte[] ENTER_ALTERNATE = ascii("\033[?1049h");
+    private static final byte[] LEAVE_ALTERNATE = ascii("\033[?1049l");
+
+    // A screen this big is sent as it is rather than held back any longer
+    private static final int MAX_SCREEN = 1 << 16;
+
+    private final OutputStream out;
+    private final int height;
+    private final int width;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream(4096);
+    private Rows normal; // what the normal buffer shows
+    private Rows alternate; // what the alternate buffer shows, null when not on it
+    private Rows next; // the screen being drawn, null between screens
+    private boolean keepNext; // the screen being drawn goes on the normal buffer
+    private boolean kept; // the normal buffer holds a kept screen
+    private boolean closed;
+
+    Terminal(OutputStream out, int height, int width) {
+        this.out = out;
+        this.height = height;
+        this.width = width;
+        this.normal = new Rows(height, NONE);
+        this.normal.valid = false; // whatever was there before we started
+    }
+
+    // Route System.out through a Terminal when the console is interactive.
+    // Returns null when it isn't, and output is left alone.
+    static Terminal open() {
+        if (System.console() == null || System.getProperty("guess.repaint", "").equals("full")) {
+            return null;
+        }
+        String lines = System.getProperty("guess.lines", System.getenv("LINES"));
+        String columns = System.getProperty("guess.columns", System.getenv("COLUMNS"));
+        int[] size = lines == null || columns == null ? stty() : new int[] {24, 80};
+        Terminal terminal = new Terminal(new FileOutputStream(FileDescriptor.out),
+                lines != null ? number(lines, size[0]) : size[0], columns != null ? Screens.columns() : size[1]);
+        System.setOut(new PrintStream(terminal, true, System.out.charset()));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                terminal.close();
+            } catch (IOException e) {
+                // The terminal is gone
+            }
+        }));
+        return terminal;
+    }
+
+    // Rows and columns as 'stty size' reports them, 24 by 80 if it can't
+    private static int[] stty() {
+        try {
+            Process stty = new ProcessBuilder("stty", "size").redirectInput(ProcessBuilder.Redirect.INHERIT)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            String[] size = new String(stty.getInputStream().readAllBytes(), StandardCharsets.US_ASCII)
+                    .trim().split(" ");
+            if (stty.waitFor() == 0 && size.length == 2) {
+                return new int[] {number(size[0], 24), number(size[1], 80)};
+            }
+        } catch (IOException e) {
+            // No stty; assume the defaults
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new int[] {24, 80};
+    }
+
+    // A size, or 'otherwise' if it isn't one; a pty nobody has sized reports 0
+    private static int number(String text, int otherwise) {
+        try {
+            int number = Integer.parseInt(text.trim());
+            return number > 0 ? number : otherwise;
+        } catch (NumberFormatException e) {
+            return otherwise;
+        }
+    }
+
+    // Console input through here, so a screen is sent before waiting for the
+    // player and their echoed lines are accounted for
+    InputStream input(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                settle();
+                int b = super.read();
+                if (b >= 0) {
+                    echoed(new byte[] {(byte) b}, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                settle();
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    echoed(b, off, n);
+                }
+                return n;
+            }
+        };
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            int clear = indexOf(b, off, end, CLEAR);
+            take(b, off, clear < 0 ? end : clear);
+            if (clear < 0) {
+                break;
+            }
+            // A new screen: finish the one before and start modelling this one
+            settle();
+            next = new Rows(height, shown().style);
+            keepNext = false;
+            frame.reset();
+            off = clear + CLEAR.length;
+        }
+        if (next != null && frame.size() > MAX_SCREEN) {
+            settle();
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        // A screen waits for settle(); anything else goes out now
+        if (next == null) {
+            send();
+        }
+    }
+
+    // The screen being drawn is one the console keeps coming back to
+    synchronized void keep() {
+        keepNext = next != null;
+    }
+
+    // Send the screen being drawn, if any, and everything else written so far
+    synchronized void settle() throws IOException {
+        if (next != null) {
+            next.finish(width);
+            if (keepNext || !kept || closed) {
+                if (alternate != null) {
+                    pending.writeBytes(LEAVE_ALTERNATE);
+                    alternate = null;
+                }
+                paint(normal, next);
+                normal = next;
+                kept = keepNext;
+            } else if (alternate == null) {
+                // Entering clears the alternate buffer but leaves the cursor where it was
+                pending.writeBytes(ENTER_ALTERNATE);
+                pending.writeBytes(HOME);
+                frame.writeTo(pending);
+                alternate = next;
+            } else {
+                paint(alternate, next);
+                alternate = next;
+            }
+            next = null;
+        }
+        send();
+    }
+
+    // Finish the screen being drawn on the normal buffer, or go back to it, so
+    // the terminal is left as it was found
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (next != null) {
+            settle();
+        } else if (alternate != null) {
+            pending.writeBytes(LEAVE_ALTERNATE);
+            alternate = null;
+        }
+        send();
+    }
+
+    // Turn a buffer showing one screen into showing another, whichever way is shorter
+    private void paint(Rows from, Rows to) throws IOException {
+        byte[] changes = from.valid && to.valid ? repaint(from, to) : null;
+        if (changes != null && changes.length < CLEAR.length + frame.size()) {
+            pending.writeBytes(changes);
+            return;
+        }
+        pending.writeBytes(CLEAR);
+        if (!Arrays.equals(from.style, to.starts[0])) {
+            // Back from the alternate buffer the colors saved on leaving the normal one are in force
+            pending.writeBytes(RESET);
+            pending.writeBytes(to.starts[0]);
+        }
+        frame.writeTo(pending);
+    }
+
+    private Rows shown() {
+        return alternate != null ? alternate : normal;
+    }
+
+    private void send() throws IOException {
+        if (pending.size() > 0) {
+            pending.writeTo(out);
+            pending.reset();
+        }
+        out.flush();
+    }
+
+    private void take(byte[] b, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        if (next != null) {
+            frame.write(b, from, to - from);
+            next.parse(b, from, to, width);
+        } else {
+            pending.write(b, from, to - from);
+            shown().parse(b, from, to, width);
+        }
+    }
+
+    // The player's typing went to the cursor's row, and each line they ended moved it down one
+    private synchronized void echoed(byte[] b, int from, int n) {
+        Rows rows = next != null ? next : shown();
+        for (int i = from; i < from + n; i++) {
+            rows.unknown[rows.row] = true;
+            if (b[i] == '\n') {
+                rows.newline();
+            }
+        }
+    }
+
+    // Bytes that turn the terminal from showing 'from' into showing 'to', with
+    // the cursor and colors left as a full repaint would leave them
+    static byte[] repaint(Rows from, Rows to) {
+        ByteArrayOutputStream paint = new ByteArrayOutputStream(1024);
+        byte[] current = from.style;
+        int last = to.row;
+        for (int r = 0; r < last; r++) {
+            if (from.same(r, to)) {
+                continue;
+            }
+            // Skip what this row already shows, when the column it ends at is known
+            int start = 0;
+            int column = 0;
+            if (r < from.count && !from.unknown[r] && Arrays.equals(from.starts[r], to.starts[r])) {
+                start = to.resume(r, from.common(r, to));
+                column = start > 0 ? width(to.bytes[r], 0, start, false) : 0;
+                if (column < 0) {
+                    start = 0;
+                    column = 0;
+                }
+            }
+            move(paint, r, column);
+            if (start < to.lengths[r]) {
+                byte[] style = to.styleAt(r, start);
+                if (!Arrays.equals(current, style)) {
+                    paint.writeBytes(RESET);
+                    paint.writeBytes(style);
+                }
+                paint.write(to.bytes[r], start, to.lengths[r] - start);
+                current = to.styleAt(r, to.lengths[r]);
+            }
+            if (r < from.count && (from.unknown[r] || from.lengths[r] > start)) {
+                paint.writeBytes(CLEAR_LINE);
+            }
+        }
+        // The cursor's row is written whole, so the cursor ends up right after it
+        move(paint, last, 0);
+        if (!Arrays.equals(current, to.starts[last])) {
+            paint.writeBytes(RESET);
+            paint.writeBytes(to.starts[last]);
+        }
+        paint.write(to.bytes[last], 0, to.lengths[last]);
+        if (from.count > last) {
+            paint.writeBytes(CLEAR_BELOW);
+        }
+        return paint.toByteArray();
+    }
+
+    private static void move(ByteArrayOutputStream paint, int row, int column) {
+        paint.write(0x1B);
+        paint.write('[');
+        paint.writeBytes(ascii(Integer.toString(row + 1)));
+        if (column > 0) {
+            paint.write(';');
+            paint.writeBytes(ascii(Integer.toString(column + 1)));
+        }
+        paint.write('H');
+    }
+
+    // Columns taken by these bytes, skipping escape codes. With exact set,
+    // -1 if any character's width isn't certain; otherwise those count as 2.
+    static int width(byte[] b, int from, int to, boolean widest) {
+        int columns = 0;
+        int i = from;
+        while (i < to) {
+            int lead = b[i] & 0xFF;
+            if (lead == 0x1B) {
+                i += 2;
+                while (i < to && (b[i] < 0x40 || b[i] > 0x7E)) {
+                    i++;
+                }
+                i++;
+                continue;
+            }
+            int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+            int cp = length == 1 ? lead : lead & (0x3F >> (length - 1));
+            for (int k = 1; k < length && i + k < to; k++) {
+                cp = (cp << 6) | (b[i + k] & 0x3F);
+            }
+            i += length;
+            // ASCII, Latin and box drawing are one column everywhere; emoji and the rest vary
+            if ((cp >= 0x20 && cp < 0x7F) || (cp >= 0xA0 && cp < 0x300) || (cp >= 0x2500 && cp < 0x2580)
+                    || cp == 0x2022) {
+                columns++;
+            } else if (widest) {
+                columns += 2;
+            } else {
+                return -1;
+            }
+        }
+        return columns;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte[] target) {
+        outer:
+        for (int i = from; i <= to - target.length; i++) {
+            for (int k = 0; k < target.length; k++) {
+                if (b[i + k] != target[k]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // What the rows of a screen hold, from the top, as written since the last clear
+    static final class Rows {
+        final byte[][] bytes;
+        final int[] lengths;
+        final byte[][] starts; // color codes in force where each row starts
+        final boolean[] unknown; // the player typed here
+        int row = 0; // where the cursor is
+        int count = 1; // rows written to
+        byte[] style; // color codes in force now, since the last reset
+        boolean valid = true;
+
+        // Escape code being read, which may be split across writes
+        private final byte[] escape = new byte[32];
+        private int escapeLength = 0;
+
+        Rows(int height, byte[] style) {
+            bytes = new byte[height][];
+            lengths = new int[height];
+            starts = new byte[height][];
+            unknown = new boolean[height];
+            this.style = style;
+            bytes[0] = new byte[64];
+            starts[0] = style;
+        }
+
+        void parse(byte[] b, int from, int to, int width) {
+            for (int i = from; i < to; i++) {
+                byte c = b[i];
+                if (escapeLength > 0) {
+                    escape(c);
+                } else if (c == 0x1B) {
+                    escape[escapeLength++] = c;
+                } else if (c == '\n') {
+                    if (width(bytes[row], 0, lengths[row], true) >= width) {
+                        valid = false; // may have wrapped
+                    }
+                    newline();
+                } else if ((c & 0xFF) < 0x20 || c == 0x7F) {
+                    valid = false;
+                } else {
+                    append(c);
+                }
+            }
+        }
+
+        // Check the row the cursor is on, which no newline has checked yet
+        void finish(int width) {
+            if (escapeLength > 0 || width(bytes[row], 0, lengths[row], true) >= width) {
+                valid = false;
+            }
+        }
+
+        void newline() {
+            if (row + 1 >= bytes.length) {
+                valid = false; // scrolled
+                return;
+            }
+            row++;
+            count = Math.max(count, row + 1);
+            if (bytes[row] == null) {
+                bytes[row] = new byte[64];
+            }
+            lengths[row] = 0;
+            starts[row] = style;
+            unknown[row] = false;
+        }
+
+        private void escape(byte c) {
+            if (escapeLength == escape.length) {
+                valid = false;
+                return;
+            }
+            escape[escapeLength++] = c;
+            if (escapeLength == 2) {
+                if (c != '[') {
+                    valid = false;
+                }
+                return;
+            }
+            if (c < 0x40 || c > 0x7E) {
+                return;
+            }
+            // A complete code; only colors are understood
+            byte[] code = Arrays.copyOf(escape, escapeLength);
+            escapeLength = 0;
+            if (c != 'm') {
+                valid = false;
+                return;
+            }
+            for (byte b : code) {
+                append(b);
+            }
+            boolean reset = code.length == 3 || (code.length == 4 && code[2] == '0');
+            if (reset) {
+                style = NONE;
+            } else {
+                byte[] more = Arrays.copyOf(style, style.length + code.length);
+                System.arraycopy(code, 0, more, style.length, code.length);
+                style = more;
+            }
+        }
+
+        private void append(byte c) {
+            if (lengths[row] == bytes[row].length) {
+                bytes[row] = Arrays.copyOf(bytes[row], bytes[row].length * 2);
+            }
+            bytes[row][lengths[row]++] = c;
+        }
+
+        // This row shows the same on both
+        boolean same(int r, Rows other) {
+            if (blank(r) || other.blank(r)) {
+                return blank(r) && other.blank(r);
+            }
+            return !unknown[r] && !other.unknown[r] && Arrays.equals(starts[r], other.starts[r])
+                    && Arrays.equals(bytes[r], 0, lengths[r], other.bytes[r], 0, other.lengths[r]);
+        }
+
+        // Never written, or written with nothing
+        private boolean blank(int r) {
+            return r >= count || (lengths[r] == 0 && !unknown[r]);
+        }
+
+        // Length of the bytes this row starts with on both
+        int common(int r, Rows other) {
+            int mismatch = Arrays.mismatch(bytes[r], 0, lengths[r], other.bytes[r], 0, other.lengths[r]);
+            return mismatch < 0 ? lengths[r] : mismatch;
+        }
+
+        // Back up from a byte offset to the start of the character or escape code it's in
+        int resume(int r, int at) {
+            byte[] row = bytes[r];
+            int safe = 0;
+            int i = 0;
+            while (i < at) {
+                safe = i;
+                if (row[i] == 0x1B) {
+                    i += 2;
+                    while (i < lengths[r] && (row[i] < 0x40 || row[i] > 0x7E)) {
+                        i++;
+                    }
+                    i++;
+                } else {
+                    int lead = row[i] & 0xFF;
+                    i += lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+                }
+            }
+            return i == at ? at : safe;
+        }
+
+        // Color codes in force at a byte offset in this row
+        byte[] styleAt(int r, int at) {
+            byte[] style = starts[r];
+            byte[] row = bytes[r];
+            int i = 0;
+            while (i < at) {
+                if (row[i] != 0x1B) {
+                    i++;
+                    continue;
+                }
+                int begin = i;
+                i += 2;
+                while (i < lengths[r] && (row[i] < 0x40 || row[i] > 0x7E)) {
+                    i++;
+                }
+                i++;
+                if (i - begin == 3 || (i - begin == 4 && row[begin + 2] == '0')) {
+                    style = NONE;
+                } else {
+                    byte[] more = Arrays.copyOf(style, style.length + i - begin);
+                    System.arraycopy(row, begin, more, style.length, i - begin);
+                    style = more;
+                }
+            }
+            return style;
+        }
+    }
+}
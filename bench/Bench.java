@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Small benchmark harness: timed warmup and measurement iterations on the
+// calling thread, with per-op time, allocation and GC figures (the same numbers
+// JMH's '-prof gc' reports). Results go to a JSON file that 'compare' can diff.
+//
+//   java -cp out Bench compare before.json after.json
+public class Bench {
+    // One benchmarked operation; the returned value is consumed so the JIT can't drop the work
+    interface Op {
+        long run();
+    }
+
+    // Measured figures for one benchmark
+    static class Result {
+        final String name;
+        final double nsPerOp;
+        final double opsPerSecond;
+        final double bytesPerOp;
+        final double allocMbPerSecond;
+        final long gcCount;
+        final long gcMillis;
+
+        Result(String name, double nsPerOp, double bytesPerOp, long gcCount, long gcMillis) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.opsPerSecond = 1e9 / nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.allocMbPerSecond = bytesPerOp * opsPerSecond / (1024 * 1024);
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps results alive so the work isn't optimised away
+    static volatile long sink;
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationMillis;
+    private final List<Result> results = new ArrayList<>();
+
+    Bench(int warmupIterations, int measureIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+    // Harness configured from -Dbench.warmup, -Dbench.iterations and -Dbench.millis
+    static Bench fromProperties() {
+        return new Bench(Integer.getInteger("bench.warmup", 3),
+                Integer.getInteger("bench.iterations", 5),
+                Long.getLong("bench.millis", 1000));
+    }
+
+    Result run(String name, Op op) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+
+        long ops = 0;
+        long nanos = 0;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        for (int i = 0; i < measureIterations; i++) {
+            long start = System.nanoTime();
+            ops += iteration(op);
+            nanos += System.nanoTime() - start;
+        }
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+
+        Result result = new Result(name, (double) nanos / ops, (double) allocated / ops,
+                gcCount() - gcCount, gcMillis() - gcMillis);
+        results.add(result);
+        System.err.printf("%-32s %12.1f ns/op %14.0f ops/s %10.1f B/op %8.1f MB/s alloc %4d gc%n",
+                name, result.nsPerOp, result.opsPerSecond, result.bytesPerOp,
+                result.allocMbPerSecond, result.gcCount);
+        return result;
+    }
+
+    // Run the op in batches until the iteration time is up; returns the op count
+    private long iteration(Op op) {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+        long ops = 0;
+        long acc = 0;
+        int batch = 1;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < batch; i++) {
+                acc += op.run();
+            }
+            ops += batch;
+            if (batch < 1 << 16) {
+                batch <<= 1;
+            }
+        }
+        sink = acc;
+        return ops;
+    }
+
+    List<Result> results() {
+        return results;
+    }
+
+    // Write all results as a JSON array
+    void write(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.printf(Locale.ROOT,
+                        "  {\"benchmark\": \"%s\", \"nsPerOp\": %.3f, \"opsPerSecond\": %.1f, " +
+                        "\"bytesPerOp\": %.3f, \"allocMbPerSecond\": %.3f, \"gcCount\": %d, \"gcMillis\": %d}%s%n",
+                        r.name, r.nsPerOp, r.opsPerSecond, r.bytesPerOp, r.allocMbPerSecond,
+                        r.gcCount, r.gcMillis, i + 1 < results.size() ? "," : "");
+            }
+            out.println("]");
+        }
+        System.err.println("Results written to " + file);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    // Usage: compare <before.json> <after.json>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !args[0].equals("compare")) {
+            System.err.println("Usage: Bench compare <before.json> <after.json>");
+            return;
+        }
+        Map<String, double[]> before = read(Path.of(args[1]));
+        Map<String, double[]> after = read(Path.of(args[2]));
+
+        System.out.printf("%-32s %12s %12s %8s %10s %10s%n",
+                "benchmark", "before ns", "after ns", "speedup", "before B", "after B");
+        for (Map.Entry<String, double[]> entry : after.entrySet()) {
+            double[] old = before.get(entry.getKey());
+            double[] now = entry.getValue();
+            if (old == null) {
+                System.out.printf("%-32s %12s %12.1f %8s %10s %10.1f%n",
+                        entry.getKey(), "-", now[0], "-", "-", now[1]);
+            } else {
+                System.out.printf("%-32s %12.1f %12.1f %7.2fx %10.1f %10.1f%n",
+                        entry.getKey(), old[0], now[0], old[0] / now[0], old[1], now[1]);
+            }
+        }
+    }
+
+    private static final Pattern LINE = Pattern.compile(
+            "\"benchmark\": \"([^\"]+)\", \"nsPerOp\": ([0-9.]+).*\"bytesPerOp\": ([0-9.]+)");
+
+    // Read ns/op and bytes/op per benchmark from a results file
+    private static Map<String, double[]> read(Path file) throws IOException {
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Matcher m = LINE.matcher(line);
+            if (m.find()) {
+                results.put(m.group(1), new double[] {
+                        Double.parseDouble(m.group(2)), Double.parseDouble(m.group(3))});
+            }
+        }
+        return results;
+    }
+}
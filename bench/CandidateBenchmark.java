@@ -0,0 +1,197 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+// Candidate tracking: first a differential check that a session's candidate
+// set never loses a possible secret, and matches a brute-force filter exactly
+// when no distance hint was given. Rounds over random ranges, negative ones
+// included, get random guesses and hints; afterwards every number in the
+// range is tested against each reply and hint the round gave.
+//
+// Then update costs at a 10^6-wide range, with the Bench harness: CandidateSet
+// against a BitSet of the same range, and the session calls that use it.
+//
+//   java -cp out CandidateBenchmark [rounds] [results.json]
+public class CandidateBenchmark {
+    private static final int WIDE = 1_000_000;
+
+    // A reply or hint the round gave, to test other secrets against
+    private static final class Told {
+        final int guess; // the guess, or the last guess when the hint was given
+        final GameSession.Outcome outcome; // null for a hint
+        final GameSession.Proximity band;
+        final GameSession.Hint hint;
+        final String text;
+
+        Told(int guess, GameSession.Outcome outcome, GameSession.Proximity band, GameSession.Hint hint,
+             String text) {
+            this.guess = guess;
+            this.outcome = outcome;
+            this.band = band;
+            this.hint = hint;
+            this.text = text;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        check(rounds);
+
+        Bench bench = Bench.fromProperties();
+        SplittableRandom random = new SplittableRandom(21);
+
+        CandidateSet set = new CandidateSet(1, WIDE);
+        int[] step = {0};
+        bench.run("set.within", () -> {
+            if (step[0]++ % 20 == 0) {
+                set.reset(1, WIDE);
+            }
+            long low = set.low();
+            long high = set.high();
+            long cut = low + random.nextLong(high - low + 1);
+            set.within(random.nextBoolean() ? cut : low, random.nextBoolean() ? high : cut);
+            return set.low();
+        });
+        bench.run("set.digits", () -> {
+            set.reset(1, WIDE);
+            set.digits(random.nextBoolean() ? CandidateSet.EVEN : 1 << random.nextInt(10));
+            return set.high();
+        });
+        bench.run("set.size", () -> {
+            set.within(1 + random.nextInt(1000), WIDE - random.nextInt(1000));
+            return set.size();
+        });
+
+        BitSet bits = new BitSet(WIDE + 1);
+        bits.set(1, WIDE + 1);
+        int[] bitStep = {0};
+        bench.run("bitset.within", () -> {
+            if (bitStep[0]++ % 20 == 0) {
+                bits.set(1, WIDE + 1);
+            }
+            int low = bits.nextSetBit(0);
+            int high = bits.previousSetBit(WIDE);
+            int cut = low + random.nextInt(high - low + 1);
+            if (random.nextBoolean()) {
+                bits.clear(low, cut);
+            } else {
+                bits.clear(cut + 1, high + 1);
+            }
+            return bits.nextSetBit(0);
+        });
+        bench.run("bitset.size", () -> bits.cardinality());
+
+        // Whole session calls at the same width: binary search on the candidates, and hints
+        GameConfig config = GameConfig.custom(1, WIDE);
+        RandomGenerator stream = Rng.stream(21);
+        GameSession session = config.newSession(Rng.between(stream, 1, WIDE), stream);
+        int[] bounds = {1, WIDE};
+        bench.run("session.guess", () -> {
+            if (session.isFinished()) {
+                session.reset(Rng.between(stream, 1, WIDE));
+                bounds[0] = 1;
+                bounds[1] = WIDE;
+            }
+            int guess = (bounds[0] + bounds[1]) >>> 1;
+            GameSession.Outcome outcome = session.submitGuess(guess);
+            if (outcome == GameSession.Outcome.TOO_LOW) {
+                bounds[0] = guess + 1;
+            } else if (outcome == GameSession.Outcome.TOO_HIGH) {
+                bounds[1] = guess - 1;
+            }
+            return session.candidatesLeft();
+        });
+        bench.run("session.hint", () -> {
+            session.reset(Rng.between(stream, 1, WIDE));
+            GameSession.Hint hint = session.requestHint();
+            return hint.ordinal() + session.candidatesLeft();
+        });
+
+        System.out.printf("memory per round at width %d: CandidateSet 32 bytes, BitSet %d bytes%n",
+                WIDE, bits.size() / 8);
+        bench.write(Path.of(args.length > 1 ? args[1] : "bench-results-candidates.json"));
+    }
+
+    private static void check(int rounds) {
+        SplittableRandom random = new SplittableRandom(13);
+        long numbers = 0;
+        long exact = 0;
+        for (int round = 0; round < rounds; round++) {
+            int min = random.nextInt(-300, 300);
+            int max = min + 1 + random.nextInt(400);
+            GameConfig config = GameConfig.custom(min, max);
+            RandomGenerator stream = Rng.stream(round);
+            int secret = Rng.between(stream, min, max);
+            GameSession session = config.newSession(secret, stream);
+            // Plenty of hints, so every kind gets checked
+            session.restore(0, -30, -1, false, false);
+
+            List<Told> told = new ArrayList<>();
+            boolean distance = false;
+            for (int action = 0; action < 30 && !session.isFinished(); action++) {
+                if (random.nextInt(3) == 0) {
+                    GameSession.Hint hint = session.requestHint();
+                    told.add(new Told(session.getLastGuess(), null, null, hint, session.describe(hint)));
+                    distance |= hint == GameSession.Hint.DISTANCE;
+                } else {
+                    int guess = random.nextInt(min - 3, max + 4);
+                    boolean ruledOut = session.isRuledOut(guess);
+                    GameSession.Outcome outcome = session.submitGuess(guess);
+                    if (ruledOut && outcome == GameSession.Outcome.CORRECT) {
+                        throw new AssertionError("Ruled out the secret " + secret + " in " + min + ".." + max);
+                    }
+                    if (outcome == GameSession.Outcome.TOO_LOW || outcome == GameSession.Outcome.TOO_HIGH) {
+                        told.add(new Told(guess, outcome, GameSession.Proximity.of(secret, guess), null, null));
+                    }
+                }
+            }
+            if (session.isWon()) {
+                continue;
+            }
+
+            long possible = 0;
+            for (int x = min; x <= max; x++) {
+                boolean consistent = consistent(config, x, told);
+                boolean ruledOut = session.isRuledOut(x);
+                if (consistent && ruledOut) {
+                    throw new AssertionError("Lost candidate " + x + " in " + min + ".." + max + ", secret "
+                            + secret);
+                }
+                if (!distance && !consistent && !ruledOut) {
+                    throw new AssertionError("Kept " + x + " though it was ruled out, in " + min + ".." + max
+                            + ", secret " + secret);
+                }
+                possible += consistent ? 1 : 0;
+            }
+            if (!distance && possible != session.candidatesLeft()) {
+                throw new AssertionError(possible + " possible but " + session.candidatesLeft() + " counted");
+            }
+            numbers += max - min + 1;
+            exact += distance ? 0 : 1;
+        }
+        System.out.printf("check: %d rounds (%d exact), %d numbers tested%n", rounds, exact, numbers);
+    }
+
+    // Whether secret x would have got every reply and hint this round gave
+    private static boolean consistent(GameConfig config, int x, List<Told> told) {
+        for (Told fact : told) {
+            if (fact.outcome != null) {
+                GameSession.Outcome outcome = fact.guess < x ? GameSession.Outcome.TOO_LOW :
+                        fact.guess > x ? GameSession.Outcome.TOO_HIGH : GameSession.Outcome.CORRECT;
+                if (outcome != fact.outcome || GameSession.Proximity.of(x, fact.guess) != fact.band) {
+                    return false;
+                }
+            } else {
+                GameSession probe = config.newSession(x, Rng.stream(0));
+                probe.restore(0, 0, fact.guess, false, false);
+                if (!probe.describe(fact.hint).equals(fact.text)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
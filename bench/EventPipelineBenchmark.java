@@ -0,0 +1,158 @@
+import java.util.concurrent.CyclicBarrier;
+
+// Round results applied synchronously on the playing threads, the way server
+// connections used to, against publishing them to a RoundEvents ring for its
+// consumer thread, at 1, 2, 4 ... up to the given thread count. Three of every
+// four events are finished rounds, one is a hint.
+//
+// For the ring, 'publish' is how fast the playing threads get back to their
+// players and 'applied' is sustained ingestion: every event applied to the
+// statistics and leaderboard. The p99 columns are what one event costs the
+// playing thread, from a sample. Totals are checked for lost events afterwards.
+//
+// Then a burst: every thread publishes as fast as it can into a small ring,
+// which the consumer can't keep up with, to show publishers waiting for room
+// (stalls) rather than dropping events, and what a wait costs.
+//
+//   java -cp out EventPipelineBenchmark [maxThreads] [eventsPerThread] [capacity]
+public class EventPipelineBenchmark {
+    private static final GameConfig CONFIG = GameConfig.of(Main.Difficulty.MEDIUM);
+    private static final int PLAYERS = 1024; // per thread, far more than a top list holds
+    private static final int SAMPLE = 63; // time one publish in 64; nanoTime costs as much as a publish
+
+    // What a playing thread does with each event
+    private interface Sink {
+        void event(int i, GameSession session, String player);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 16;
+
+        System.out.printf("%8s %12s %10s %12s %10s %12s %8s%n", "threads", "sync ev/s", "sync p99",
+                "publish ev/s", "pub p99", "applied ev/s", "stalls");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            // Untimed passes first so both paths are compiled
+            run(threads, events / 10, synchronous(new GameStats(), new Leaderboard(), null));
+            try (RoundEvents warm = RoundEvents.start(capacity, new GameStats(), new Leaderboard(), null, null)) {
+                run(threads, events / 10, published(warm, null));
+            }
+
+            GameStats direct = new GameStats();
+            LatencyHistogram syncLatency = new LatencyHistogram();
+            long begin = System.nanoTime();
+            run(threads, events, synchronous(direct, new Leaderboard(), syncLatency));
+            double sync = rate(threads, events, System.nanoTime() - begin);
+            check(direct, threads, events);
+
+            GameStats stats = new GameStats();
+            LatencyHistogram publishLatency = new LatencyHistogram();
+            try (RoundEvents ring = RoundEvents.start(capacity, stats, new Leaderboard(), null, null)) {
+                begin = System.nanoTime();
+                run(threads, events, published(ring, publishLatency));
+                double publish = rate(threads, events, System.nanoTime() - begin);
+                ring.awaitApplied(ring.published() - 1);
+                double applied = rate(threads, events, System.nanoTime() - begin);
+                System.out.printf("%8d %12.0f %10d %12.0f %10d %12.0f %8d%n", threads, sync,
+                        syncLatency.percentile(99), publish, publishLatency.percentile(99), applied, ring.stalls());
+                check(stats, threads, events);
+            }
+        }
+
+        int burstCapacity = 1024;
+        GameStats stats = new GameStats();
+        LatencyHistogram latency = new LatencyHistogram();
+        try (RoundEvents ring = RoundEvents.start(burstCapacity, stats, new Leaderboard(), null, null)) {
+            long begin = System.nanoTime();
+            run(maxThreads, events, published(ring, latency));
+            ring.awaitApplied(ring.published() - 1);
+            long elapsed = System.nanoTime() - begin;
+            System.out.printf("%nburst: %d threads into %d slots, %.0f ev/s applied, %d stalled publishes%n",
+                    maxThreads, burstCapacity, rate(maxThreads, events, elapsed), ring.stalls());
+            System.out.printf("publish latency (sampled): p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns%n",
+                    latency.percentile(50), latency.percentile(99), latency.percentile(99.9), latency.max());
+            check(stats, maxThreads, events);
+        }
+    }
+
+    // What GameServer connections used to do on their own thread
+    private static Sink synchronous(GameStats stats, Leaderboard leaderboard, LatencyHistogram latency) {
+        return (i, session, player) -> {
+            long start = latency != null && (i & SAMPLE) == 0 ? System.nanoTime() : 0;
+            if ((i & 3) == 3) {
+                Metrics.hint(GameSession.Hint.PARITY);
+            } else {
+                stats.record(CONFIG.difficulty, session.isWon(), session.getAttempts(), session.pointsEarned());
+                leaderboard.record(player, CONFIG.difficulty, session.pointsEarned());
+                Metrics.roundFinished(CONFIG.difficulty, session.isWon(), session.pointsEarned());
+            }
+            if (start != 0) {
+                latency.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    // Publish instead, timing a sample of publishes when given a histogram
+    private static Sink published(RoundEvents ring, LatencyHistogram latency) {
+        return (i, session, player) -> {
+            long start = latency != null && (i & SAMPLE) == 0 ? System.nanoTime() : 0;
+            if ((i & 3) == 3) {
+                ring.hint(CONFIG, GameSession.Hint.PARITY);
+            } else {
+                ring.finished(session, player, true);
+            }
+            if (start != 0) {
+                latency.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private static void run(int threads, int events, Sink sink) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            // Finished rounds to report, won and lost, and this thread's players
+            GameSession[] sessions = new GameSession[16];
+            for (int s = 0; s < sessions.length; s++) {
+                sessions[s] = CONFIG.newSession(CONFIG.min, Rng.stream(s));
+                int attempts = 1 + s % CONFIG.maxGuesses;
+                boolean won = s % 5 != 0;
+                sessions[s].restore(won ? attempts : CONFIG.maxGuesses, s % (CONFIG.hints + 1), CONFIG.min, won,
+                        false);
+            }
+            String[] players = new String[PLAYERS];
+            for (int p = 0; p < PLAYERS; p++) {
+                players[p] = "player-" + t + "-" + p;
+            }
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = 0; i < events; i++) {
+                    sink.event(i, sessions[i & 15], players[(i * 37) & (PLAYERS - 1)]);
+                }
+            });
+            workers[t].start();
+        }
+        start.await();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static double rate(int threads, int events, long nanos) {
+        return (double) threads * events / (nanos / 1e9);
+    }
+
+    // Three in four events were finished rounds; every one must be counted
+    private static void check(GameStats stats, int threads, int events) {
+        long expected = (long) threads * (events - events / 4);
+        long played = stats.snapshot().gamesPlayed;
+        if (played != expected) {
+            throw new AssertionError("Lost events: " + played + " rounds of " + expected);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.random.RandomGenerator;
+
+// Baseline benchmarks for the console game's hot paths.
+//
+//   java -cp out GameBenchmarks [results.json]
+//
+// Console output is discarded while measuring, so the printing benchmarks
+// measure string building and PrintStream overhead rather than the terminal.
+public class GameBenchmarks {
+    // Scripted bot for playRound: a hint, then binary search onto SECRET
+    private static final int SECRET = 37;
+    private static final String SCRIPT = "H\n50\n25\n37\n";
+
+    // Custom ranges a player might pick over a session, for the custom setup ops
+    private static final int RANGES = 64;
+
+    public static void main(String[] args) throws Exception {
+        // Must happen before Main is initialised, since its Scanner wraps System.in
+        System.setIn(new LoopingInput(SCRIPT.getBytes(StandardCharsets.US_ASCII)));
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), true));
+
+        Bench bench = Bench.fromProperties();
+        RandomGenerator random = new Rng(1).session(0);
+        Main.Difficulty medium = Main.Difficulty.MEDIUM;
+        GameConfig mediumConfig = GameConfig.of(medium);
+        GameSession session = GameSession.of(medium, SECRET, random);
+
+        bench.run("secretNumber", () -> Rng.between(random, medium.min, medium.max));
+
+        GameSession.Hint[] hints = GameSession.Hint.values();
+        int[] next = {0};
+        bench.run("giveHint", () -> {
+            GameSession.Hint hint = hints[next[0]++ % hints.length];
+            Main.giveHint(session, hint);
+            Main.screen.flush(); // once per turn, as the game does
+            return hint.ordinal();
+        });
+
+        int[] guess = {0};
+        bench.run("giveProximityHint", () -> {
+            int g = 1 + (guess[0]++ & 63);
+            Main.giveProximityHint(SECRET, g);
+            Main.screen.flush();
+            return g;
+        });
+
+        int[] range = {2};
+        bench.run("calculateMaxGuesses", () -> {
+            int r = range[0] = range[0] < 1000 ? range[0] + 1 : 2;
+            return Main.calculateMaxGuesses(r);
+        });
+
+        // What starting a custom round used to cost, against the interned config
+        int[] mins = new int[RANGES];
+        int[] maxes = new int[RANGES];
+        for (int i = 0; i < RANGES; i++) {
+            mins[i] = 1 + random.nextInt(500);
+            maxes[i] = mins[i] + 1 + random.nextInt(1000 - mins[i]);
+        }
+        int[] pick = {0};
+        bench.run("customSetup.computed", () -> {
+            int i = pick[0]++ & (RANGES - 1);
+            int r = maxes[i] - mins[i] + 1;
+            return Main.calculateMaxGuesses(r) + Main.calculateHints(r) + Math.min(300, 50 + r / 2);
+        });
+        bench.run("customSetup.interned", () -> {
+            int i = pick[0]++ & (RANGES - 1);
+            GameConfig config = GameConfig.custom(mins[i], maxes[i]);
+            return config.maxGuesses + config.hints + config.basePoints;
+        });
+
+        int[] attempts = {0};
+        bench.run("updateStats", () -> {
+            int a = 1 + (attempts[0]++ % medium.maxGuesses);
+            Main.updateStats(mediumConfig, a < 12, a);
+            return a;
+        });
+
+        bench.run("playRound.scripted", () -> {
+            Main.playRound(mediumConfig, SECRET, random);
+            return 1;
+        });
+
+        GameConfig custom = GameConfig.custom(medium.min, medium.max);
+        bench.run("playRound.custom.scripted", () -> {
+            Main.playRound(custom, SECRET, random);
+            return 1;
+        });
+
+        System.setOut(console);
+        bench.write(Path.of(args.length > 0 ? args[0] : "bench-results.json"));
+    }
+
+    // Replays the same bytes forever, standing in for a player at the keyboard
+    private static class LoopingInput extends InputStream {
+        private final ByteArrayInputStream script;
+
+        LoopingInput(byte[] bytes) {
+            this.script = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() {
+            int b = script.read();
+            if (b < 0) {
+                script.reset();
+                b = script.read();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (script.available() == 0) {
+                script.reset();
+            }
+            return script.read(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Append and replay throughput of the round history log.
+//
+//   java -cp out HistoryBenchmark [records] [file]
+//   java -cp out HistoryBenchmark store [records]
+//
+// Writes the given number of records through the group-commit path, then
+// times a replay that rebuilds GameStats from the memory-mapped file.
+// The 'store' form grows a HistoryStore in steps and times a reopen after
+// each one, which should stay flat because of snapshots and compaction.
+public class HistoryBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("store")) {
+            store(args.length > 1 ? Long.parseLong(args[1]) : 8_000_000L);
+            return;
+        }
+        long records = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        Path file = args.length > 1 ? Path.of(args[1]) : Files.createTempFile("history", ".log");
+        Files.deleteIfExists(file);
+
+        Main.Difficulty[] difficulties = Main.Difficulty.values();
+        long start = System.nanoTime();
+        try (HistoryLog log = HistoryLog.open(file, 1 << 20, 20)) {
+            for (long i = 0; i < records; i++) {
+                Main.Difficulty difficulty = difficulties[(int) (i % 3)];
+                int attempts = 1 + (int) (i % difficulty.maxGuesses);
+                boolean won = attempts < difficulty.maxGuesses;
+                log.append(difficulty, won, attempts, (int) (i & 1), difficulty.min, difficulty.max,
+                        (int) (i % difficulty.max) + 1, won ? 100 : 0);
+            }
+        }
+        double appendSeconds = (System.nanoTime() - start) / 1e9;
+        long bytes = Files.size(file);
+        System.out.printf("append: %d records, %.1f MB in %.2fs (%.0f records/s)%n",
+                records, bytes / 1e6, appendSeconds, records / appendSeconds);
+
+        // First replay warms the page cache and the JIT; the second is the one reported
+        HistoryLog.replay(file, new GameStats());
+        GameStats stats = new GameStats();
+        start = System.nanoTime();
+        long replayed = HistoryLog.replay(file, stats);
+        double replaySeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("replay: %d records in %.3fs (%.0f MB/s, %.0f records/s), games=%d%n",
+                replayed, replaySeconds, bytes / 1e6 / replaySeconds, replayed / replaySeconds,
+                stats.snapshot().gamesPlayed);
+
+        if (args.length < 2) {
+            Files.delete(file);
+        }
+    }
+
+    private static void store(long records) throws Exception {
+        Path directory = Files.createTempDirectory("history-store");
+        Main.Difficulty medium = Main.Difficulty.MEDIUM;
+        long written = 0;
+
+        for (long target = records / 8; target <= records; target *= 2) {
+            try (HistoryStore store = HistoryStore.open(directory, new GameStats())) {
+                for (; written < target; written++) {
+                    int attempts = 1 + (int) (written % medium.maxGuesses);
+                    store.append(medium, true, attempts, 0, medium.min, medium.max, 50, 100);
+                }
+            }
+
+            long start = System.nanoTime();
+            GameStats stats = new GameStats();
+            try (HistoryStore store = HistoryStore.open(directory, stats)) {
+                double millis = (System.nanoTime() - start) / 1e6;
+                System.out.printf("history of %d rounds: reopened in %.1f ms (snapshot at %d), games=%d%n",
+                        written, millis, store.snapshotRecords(), stats.snapshot().gamesPlayed);
+            }
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+// Console input: CommandReader against the Scanner code it replaced.
+//
+// First a differential check: random scripts of hostile input (signs, huge
+// numbers, grouping commas, Unicode digits and spaces, every line ending,
+// malformed UTF-8), fed in random-sized chunks, are read with a random mix
+// of line and token calls by both readers, which must agree on every answer,
+// including running out of input. Then both read an endless stream of
+// mostly-invalid round commands, timed with the Bench harness.
+//
+//   java -cp out InputBenchmark [scripts] [results.json]
+public class InputBenchmark {
+    private static final String[] PIECES = {
+            "0", "7", "42", "-3", "+15", "2147483647", "-2147483648", "2147483648", "99999999999999999999",
+            "1,000", "12a", "-", "+", "--5", "5-", "q", "Q", "h", "H", "y", "Y", "n", "yes", "HQ", "abc",
+            "٣", "١٢", "５", " ", " ", " ", " ", "\u0085", "é", "🎯",
+            " ", "  ", "\t", "\u000B", "\f", "\u001C", "\r", "\n", "\r\n", "\n\n", "\u0000"};
+
+    public static void main(String[] args) throws Exception {
+        int scripts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        check(scripts);
+
+        Bench bench = Bench.fromProperties();
+        byte[] adversarial = adversarial();
+
+        Scanner scanner = new Scanner(new Endless(adversarial));
+        bench.run("command.scanner", () -> {
+            String input = scanner.nextLine().trim().toUpperCase();
+            if (input.equals("Q") || input.equals("H")) {
+                return 1;
+            }
+            try {
+                return Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        });
+
+        CommandReader reader = new CommandReader(new Endless(adversarial));
+        bench.run("command.reader", () -> {
+            CommandReader.Command command = reader.command();
+            return command == CommandReader.Command.NUMBER ? reader.number() : command.ordinal();
+        });
+
+        bench.write(Path.of(args.length > 1 ? args[1] : "bench-results-input.json"));
+    }
+
+    // Round commands a fuzzer or a bored player might send: mostly junk and overflow
+    private static byte[] adversarial() {
+        StringBuilder text = new StringBuilder();
+        SplittableRandom random = new SplittableRandom(17);
+        for (int i = 0; i < 10_000; i++) {
+            switch (random.nextInt(8)) {
+                case 0 -> text.append("  ").append(random.nextInt(200)).append("  ");
+                case 1 -> text.append("99999999999999999999");
+                case 2 -> text.append("12abc");
+                case 3 -> text.append("-");
+                case 4 -> text.append("h");
+                case 5 -> text.append("hello there, this is not a number at all");
+                case 6 -> text.append("\t+").append(random.nextInt());
+                default -> text.append("4e5");
+            }
+            text.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Both readers over the same scripts must answer every call the same way
+    private static void check(int scripts) {
+        SplittableRandom random = new SplittableRandom(5);
+        long calls = 0;
+        for (int script = 0; script < scripts; script++) {
+            byte[] input = script(random);
+            Scanner scanner = new Scanner(new Chunked(input, random.split()));
+            CommandReader reader = new CommandReader(new Chunked(input, random.split()), 16);
+            while (true) {
+                int call = random.nextInt(6);
+                String expected = answer(scanner, call);
+                String actual = answer(reader, call);
+                calls++;
+                if (!expected.equals(actual)) {
+                    throw new AssertionError("Call " + call + " on " + printable(input) + ": Scanner said " +
+                            expected + ", CommandReader said " + actual);
+                }
+                if (expected.equals("end")) {
+                    break;
+                }
+            }
+        }
+        System.out.printf("check: %d scripts, %d calls agreed%n", scripts, calls);
+    }
+
+    private static byte[] script(SplittableRandom random) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int pieces = random.nextInt(30);
+        for (int i = 0; i < pieces; i++) {
+            if (random.nextInt(40) == 0) {
+                bytes.write(0x80 + random.nextInt(0x80)); // malformed UTF-8
+            } else {
+                bytes.writeBytes(PIECES[random.nextInt(PIECES.length)].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    // What Main used to do for each call
+    private static String answer(Scanner scanner, int call) {
+        try {
+            switch (call) {
+                case 0: {
+                    String input = scanner.nextLine().trim().toUpperCase();
+                    if (input.equals("Q") || input.equals("H")) {
+                        return input;
+                    }
+                    try {
+                        return "int " + Integer.parseInt(input);
+                    } catch (NumberFormatException e) {
+                        return "other";
+                    }
+                }
+                case 1: {
+                    String input = scanner.nextLine().trim().toUpperCase();
+                    if (input.equals("Q") || input.equals("H")) {
+                        return input;
+                    }
+                    try {
+                        return "big " + new BigInteger(input);
+                    } catch (NumberFormatException e) {
+                        return "other";
+                    }
+                }
+                case 2:
+                    if (scanner.hasNextInt()) {
+                        return "int " + scanner.nextInt();
+                    }
+                    scanner.next();
+                    return "not int";
+                case 3:
+                    if (scanner.hasNextBigInteger()) {
+                        return "big " + scanner.nextBigInteger();
+                    }
+                    scanner.next();
+                    return "not big";
+                case 4:
+                    return Boolean.toString(scanner.next().toUpperCase().equals("Y"));
+                default:
+                    scanner.nextLine();
+                    return "line";
+            }
+        } catch (NoSuchElementException e) {
+            return "end";
+        }
+    }
+
+    private static String answer(CommandReader reader, int call) {
+        try {
+            switch (call) {
+                case 0:
+                case 1: {
+                    CommandReader.Command command = call == 0 ? reader.command() : reader.bigCommand();
+                    switch (command) {
+                        case QUIT:
+                            return "Q";
+                        case HINT:
+                            return "H";
+                        case NUMBER:
+                            return call == 0 ? "int " + reader.number() : "big " + reader.bigNumber();
+                        default:
+                            return "other";
+                    }
+                }
+                case 2:
+                    return reader.nextInt() ? "int " + reader.number() : "not int";
+                case 3:
+                    return reader.nextBigInteger() ? "big " + reader.bigNumber() : "not big";
+                case 4:
+                    return Boolean.toString(reader.nextWordIs('Y'));
+                default:
+                    reader.skipLine();
+                    return "line";
+            }
+        } catch (NoSuchElementException e) {
+            return "end";
+        }
+    }
+
+    private static String printable(byte[] input) {
+        StringBuilder text = new StringBuilder("\"");
+        for (char c : new String(input, StandardCharsets.UTF_8).toCharArray()) {
+            text.append(c >= 0x20 && c < 0x7F ? String.valueOf(c) : String.format("\\u%04X", (int) c));
+        }
+        return text.append('"').toString();
+    }
+
+    // Hands out its bytes a few at a time, like a terminal or a slow pipe
+    private static class Chunked extends InputStream {
+        private final byte[] bytes;
+        private final SplittableRandom random;
+        private int pos = 0;
+
+        Chunked(byte[] bytes, SplittableRandom random) {
+            this.bytes = bytes;
+            this.random = random;
+        }
+
+        @Override
+        public int read() {
+            return pos < bytes.length ? bytes[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (pos == bytes.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, bytes.length - pos), 1 + random.nextInt(4));
+            System.arraycopy(bytes, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    // The same bytes over and over
+    private static class Endless extends InputStream {
+        private final byte[] bytes;
+        private int pos = 0;
+
+        Endless(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            int b = bytes[pos] & 0xFF;
+            pos = (pos + 1) % bytes.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = Math.min(len, bytes.length - pos);
+            System.arraycopy(bytes, pos, b, off, n);
+            pos = (pos + n) % bytes.length;
+            return n;
+        }
+    }
+}
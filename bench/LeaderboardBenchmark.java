@@ -0,0 +1,115 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CyclicBarrier;
+
+// Concurrent score updates and rank queries against Leaderboard, at 1, 2, 4
+// ... up to the given thread count, over a fixed population of players.
+// Afterwards every player's rank and the top list are checked against a
+// plain sort of the final totals.
+//
+//   java -cp out LeaderboardBenchmark [maxThreads] [players] [updatesPerThread]
+public class LeaderboardBenchmark {
+    private static final Main.Difficulty DIFFICULTY = Main.Difficulty.MEDIUM;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int updates = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+
+        String[] ids = new String[players];
+        for (int i = 0; i < players; i++) {
+            ids[i] = "player-" + i;
+        }
+
+        System.out.printf("%8s %16s %16s%n", "threads", "updates/s", "rank queries/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Leaderboard leaderboard = new Leaderboard();
+            for (String id : ids) {
+                leaderboard.record(id, DIFFICULTY, 0);
+            }
+            // Untimed pass first so both paths are compiled
+            run(threads, updates / 10, ids, leaderboard, false);
+
+            double recorded = run(threads, updates, ids, leaderboard, false);
+            double ranked = run(threads, updates, ids, leaderboard, true);
+            System.out.printf("%8d %16.0f %16.0f%n", threads, recorded, ranked);
+            check(leaderboard, ids);
+        }
+    }
+
+    // Returns operations per second across all threads
+    private static double run(int threads, int ops, String[] ids, Leaderboard leaderboard, boolean query)
+            throws Exception {
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    String id = ids[random.nextInt(ids.length)];
+                    if (query) {
+                        sum += leaderboard.rank(id, DIFFICULTY);
+                    } else {
+                        leaderboard.record(id, DIFFICULTY, random.nextInt(4) == 0 ? 0 : random.nextInt(200));
+                    }
+                }
+                Bench.sink = sum;
+            });
+            workers[t].start();
+        }
+        start.await();
+        long begin = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (double) threads * ops / (elapsed / 1e9);
+    }
+
+    // With everything quiet, ranks and the top list must match a full sort
+    private static void check(Leaderboard leaderboard, String[] ids) {
+        long[] scores = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            scores[i] = leaderboard.score(ids[i], DIFFICULTY);
+        }
+        long[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < ids.length; i += Math.max(1, ids.length / 10_000)) {
+            // Players strictly ahead, plus one
+            int firstAbove = upperBound(sorted, scores[i]);
+            long expected = ids.length - firstAbove + 1;
+            long rank = leaderboard.rank(ids[i], DIFFICULTY);
+            if (rank != expected) {
+                throw new AssertionError(ids[i] + " ranked " + rank + ", expected " + expected);
+            }
+        }
+        List<Leaderboard.Entry> top = leaderboard.top(DIFFICULTY, Leaderboard.TOP);
+        for (int i = 0; i < top.size(); i++) {
+            if (top.get(i).score != sorted[sorted.length - 1 - i]) {
+                throw new AssertionError("Top list place " + (i + 1) + " is " + top.get(i).score +
+                        ", expected " + sorted[sorted.length - 1 - i]);
+            }
+        }
+    }
+
+    private static int upperBound(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+// Drives simulated binary-search players against a running GameServer and
+// reports per-guess round-trip latency.
+//
+//   java -cp out Main --server 7777
+//   java -cp out LoadClient [players] [roundsPerPlayer] [port] [idleConnections]
+//
+// Idle connections are opened first and held open for the whole run, to check
+// the server copes with many parked clients. Large counts need a raised
+// 'ulimit -n' on both sides.
+public class LoadClient {
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 7777;
+        int idle = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        List<Socket> idleSockets = new ArrayList<>(idle);
+        for (int i = 0; i < idle; i++) {
+            idleSockets.add(new Socket("localhost", port));
+        }
+        if (idle > 0) {
+            System.out.println("Holding " + idle + " idle connections");
+        }
+
+        long[][] latencies = new long[players][];
+        int[] counts = new int[players];
+        CountDownLatch done = new CountDownLatch(players);
+
+        long start = System.nanoTime();
+        for (int p = 0; p < players; p++) {
+            int player = p;
+            Thread.ofVirtual().start(() -> {
+                try {
+                    latencies[player] = new long[rounds * 16];
+                    counts[player] = play(port, rounds, latencies[player]);
+                } catch (IOException e) {
+                    System.err.println("Player " + player + " failed: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for (int p = 0; p < players; p++) {
+            if (latencies[p] != null) {
+                System.arraycopy(latencies[p], 0, all, pos, counts[p]);
+                pos += counts[p];
+            }
+        }
+        Arrays.sort(all);
+
+        System.out.printf("players=%d guesses=%d elapsed=%.1fs guesses/s=%.0f%n",
+                players, total, elapsed / 1e9, total / (elapsed / 1e9));
+        if (total > 0) {
+            System.out.printf("latency p50=%.1fus p99=%.1fus max=%.1fus%n",
+                    all[total / 2] / 1e3, all[(int) (total * 0.99)] / 1e3, all[total - 1] / 1e3);
+        }
+
+        for (Socket socket : idleSockets) {
+            socket.close();
+        }
+    }
+
+    // Play a number of rounds on one connection, filling in the latency of each guess
+    private static int play(int port, int rounds, long[] latencies) throws IOException {
+        int count = 0;
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+
+            String reply = in.readLine();
+            for (int round = 0; round < rounds; round++) {
+                String[] parts = reply.split(" ");
+                int low = Integer.parseInt(parts[1]);
+                int high = Integer.parseInt(parts[2]);
+
+                while (true) {
+                    int guess = (low + high) >>> 1;
+                    long sent = System.nanoTime();
+                    out.write((guess + "\n").getBytes(StandardCharsets.US_ASCII));
+                    reply = in.readLine();
+                    if (count < latencies.length) {
+                        latencies[count++] = System.nanoTime() - sent;
+                    }
+
+                    if (reply.startsWith("LOW")) {
+                        low = guess + 1;
+                    } else if (reply.startsWith("HIGH")) {
+                        high = guess - 1;
+                    } else {
+                        // WIN or LOSE, followed by the next ROUND line
+                        reply = in.readLine();
+                        break;
+                    }
+                }
+            }
+            out.write("Q\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,50 @@
+import java.nio.file.Path;
+import java.util.random.RandomGenerator;
+
+// Guess handling with and without the Metrics hooks around it, in the same
+// JVM. Run it twice to see both sides of the switch:
+//
+//   java -cp out MetricsBenchmark [results.json]
+//   java -Dguess.metrics=true -cp out MetricsBenchmark [results.json]
+//
+// With metrics off the two ops should be indistinguishable; with them on the
+// difference is the cost of two nanoTime calls and a histogram update.
+public class MetricsBenchmark {
+    private static final Main.Difficulty DIFFICULTY = Main.Difficulty.HARD;
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromProperties();
+        RandomGenerator random = new Rng(18).session(0);
+
+        GameSession bare = GameSession.of(DIFFICULTY, 1, random);
+        bench.run("guess.bare", () -> {
+            if (bare.isFinished()) {
+                bare.reset(Rng.between(random, DIFFICULTY.min, DIFFICULTY.max));
+            }
+            int guess = Rng.between(random, DIFFICULTY.min, DIFFICULTY.max);
+            GameSession.Outcome outcome = bare.submitGuess(guess);
+            return outcome.ordinal() + GameSession.Proximity.of(bare.getSecret(), guess).ordinal();
+        });
+
+        GameSession instrumented = GameSession.of(DIFFICULTY, 1, random);
+        bench.run("guess.instrumented", () -> {
+            if (instrumented.isFinished()) {
+                Metrics.roundFinished(DIFFICULTY, instrumented.isWon(), instrumented.pointsEarned());
+                instrumented.reset(Rng.between(random, DIFFICULTY.min, DIFFICULTY.max));
+                Metrics.roundStarted(DIFFICULTY);
+            }
+            int guess = Rng.between(random, DIFFICULTY.min, DIFFICULTY.max);
+            long start = Metrics.start();
+            GameSession.Outcome outcome = instrumented.submitGuess(guess);
+            long result = outcome.ordinal() + GameSession.Proximity.of(instrumented.getSecret(), guess).ordinal();
+            Metrics.guess(start);
+            return result;
+        });
+
+        System.err.println("metrics " + (Metrics.ENABLED ? "on" : "off"));
+        if (Metrics.ENABLED) {
+            System.err.print(Metrics.prometheus());
+        }
+        bench.write(Path.of(args.length > 0 ? args[0] : "bench-results-metrics.json"));
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+// Hit rate, update latency and durability of the player profile store.
+//
+//   java -Xmx2g -cp out ProfileStoreBenchmark [players] [cache] [updates] [newcomerPercent] [directory]
+//
+// Creates 'players' profiles, then replays the same stream of finished rounds
+// against a cache of 'cache' profiles run as W-TinyLFU and as a plain LRU.
+// Rounds go to Zipf-distributed regulars (s = 0.9), except that
+// newcomerPercent of them (default 20) come from players never seen before
+// and never seen again, the way one-off guests arrive. Each run reports the
+// hit rate, updates per second and update latency; the maximum includes
+// loads from disk and rebuilds of the file as it grows.
+//
+// Afterwards the store is reopened and every regular's points are checked
+// against what was recorded, so nothing written behind was lost.
+public class ProfileStoreBenchmark {
+    private static final double SKEW = 0.9;
+
+    public static void main(String[] args) throws IOException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 3_000_000;
+        int cache = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int updates = args.length > 2 ? Integer.parseInt(args[2]) : 10_000_000;
+        int newcomerPercent = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        Path directory = args.length > 4 ? Path.of(args[4]) : Files.createTempDirectory("profiles");
+        clear(directory);
+
+        long[] expected = new long[players];
+        long start = System.nanoTime();
+        LatencyHistogram latency = new LatencyHistogram();
+        try (ProfileStore store = ProfileStore.open(directory, cache)) {
+            for (int i = 0; i < players; i++) {
+                long begin = System.nanoTime();
+                store.record(name(i), Main.Difficulty.MEDIUM, false, 15, 0);
+                latency.record(System.nanoTime() - begin);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("create: %d profiles in %.1fs (%.0f/s), p99 %.1f us, max %.1f ms, files %.0f MB%n",
+                players, seconds, players / seconds, latency.percentile(99) / 1e3, latency.max() / 1e6,
+                size(directory) / 1e6);
+
+        double[] cdf = zipf(players);
+        System.out.printf("%d regulars, cache %d, %d updates, %d%% newcomers%n", players, cache, updates,
+                newcomerPercent);
+        run("W-TinyLFU", directory, cache, 1, cdf, updates, newcomerPercent, expected, 1);
+        run("LRU", directory, cache, 100, cdf, updates, newcomerPercent, expected, 2);
+
+        // Reopen and check every regular
+        try (ProfileStore store = ProfileStore.open(directory, cache)) {
+            long wrong = 0;
+            for (int i = 0; i < players; i++) {
+                ProfileStore.Profile profile = store.get(name(i));
+                if (profile == null || profile.points != expected[i]) {
+                    wrong++;
+                }
+            }
+            System.out.printf("reopened: %d profiles, %d regulars with wrong points%n", store.players(), wrong);
+        }
+    }
+
+    // One pass of rounds through a freshly opened cache; the first quarter warms it up and isn't counted
+    private static void run(String label, Path directory, int cache, int windowPercent, double[] cdf,
+                            int updates, int newcomerPercent, long[] expected, int pass) throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        LatencyHistogram latency = new LatencyHistogram();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long newcomers = 0;
+
+        try (ProfileStore store = ProfileStore.open(directory, cache, windowPercent, ProfileStore.FLUSH_MILLIS)) {
+            int warmup = updates / 4;
+            long hits = 0;
+            long misses = 0;
+            long start = 0;
+            for (int i = 0; i < warmup + updates; i++) {
+                if (i == warmup) {
+                    hits = store.hits();
+                    misses = store.misses();
+                    start = System.nanoTime();
+                }
+                String player;
+                int points = 1 + random.nextInt(100);
+                if (random.nextInt(100) < newcomerPercent) {
+                    player = "newcomer-" + pass + "-" + newcomers++;
+                } else {
+                    int rank = rank(cdf, random.nextDouble());
+                    player = name(rank);
+                    expected[rank] += points;
+                }
+                long begin = System.nanoTime();
+                store.record(player, Main.Difficulty.MEDIUM, true, 5, points);
+                if (i >= warmup) {
+                    latency.record(System.nanoTime() - begin);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            hits = store.hits() - hits;
+            misses = store.misses() - misses;
+
+            // Empty the write-behind queue so only the cache itself is left on the heap
+            store.flush();
+            System.gc();
+            long heap = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+            System.out.printf("%-9s hit rate %.1f%%, %.0f updates/s, p50 %.2f us, p99 %.1f us, max %.1f ms, " +
+                            "%d evictions, %d written back, ~%d heap bytes per cached profile%n",
+                    label, hits * 100.0 / (hits + misses), updates / seconds, latency.percentile(50) / 1e3,
+                    latency.percentile(99) / 1e3, latency.max() / 1e6, store.evictions(), store.written(),
+                    heap / Math.max(1, store.cached()));
+        }
+    }
+
+    private static String name(int rank) {
+        return "player-" + rank;
+    }
+
+    // Cumulative Zipf probabilities over the ranks
+    private static double[] zipf(int n) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, SKEW);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int rank(double[] cdf, double u) {
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cdf[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void clear(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "profiles-*.db*")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static long size(Path directory) throws IOException {
+        long bytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "profiles-*.db")) {
+            for (Path file : files) {
+                bytes += Files.size(file);
+            }
+        }
+        return bytes;
+    }
+}
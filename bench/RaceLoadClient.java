@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Fills a GameServer race room with players and measures broadcast latency:
+// the time from a player sending a guess to each player in the room reading
+// the line announcing it, over every delivery after a warm-up.
+//
+//   java -cp out Main --server 7777
+//   java -cp out RaceLoadClient [players] [guessesPerSecond] [seconds] [port] [selectors]
+//
+// Guesses are paced at the given total rate, each from a random player with no
+// guess of its own still unanswered, and stay inside the bounds the room's
+// replies have narrowed the race to, so races run their course and get won.
+// Every player checks the broadcast sequence numbers for gaps.
+//
+// Client and server share the machine, so the client is kept cheap: a few
+// selector threads read every player's socket and parse the bytes in place,
+// rather than a thread and a reader per player. 10k players need 'ulimit -n'
+// above 10k on both sides.
+public class RaceLoadClient {
+    private static final int WARMUP_SECONDS = 2;
+    private static final int TRACKED = 64; // guesses per player whose send time is kept
+    private static final int FIELDS = 8;
+
+    private static volatile boolean recording;
+    private static volatile boolean stopping;
+    private static volatile long bounds; // low << 32 | high of the race under way, from player 0
+    private static final LatencyHistogram latency = new LatencyHistogram();
+    private static final LongAdder gaps = new LongAdder();
+    private static final LongAdder lagged = new LongAdder();
+
+    private static final class Player {
+        final int index;
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        long expected = -1; // next broadcast sequence number
+
+        Player(int index, SocketChannel channel) {
+            this.index = index;
+            this.channel = channel;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 7777;
+        int selectorCount = args.length > 4 ? Integer.parseInt(args[4]) :
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        AtomicLongArray sent = new AtomicLongArray(players * TRACKED);
+        AtomicIntegerArray waiting = new AtomicIntegerArray(players);
+        CountDownLatch joined = new CountDownLatch(players);
+        Player[] all = new Player[players];
+        Selector[] selectors = new Selector[selectorCount];
+        for (int s = 0; s < selectorCount; s++) {
+            selectors[s] = Selector.open();
+        }
+
+        long connectStart = System.nanoTime();
+        for (int p = 0; p < players; p++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port));
+            channel.socket().setTcpNoDelay(true);
+            write(channel, "NAME r" + p + "\nRACE\n");
+            channel.configureBlocking(false);
+            all[p] = new Player(p, channel);
+        }
+        // Registered before the threads start, so no register has to race a select
+        for (Player player : all) {
+            player.channel.register(selectors[player.index % selectorCount], SelectionKey.OP_READ, player);
+        }
+        Thread[] readers = new Thread[selectorCount];
+        for (int s = 0; s < selectorCount; s++) {
+            Selector selector = selectors[s];
+            readers[s] = Thread.ofPlatform().name("race-reader-" + s).start(() -> {
+                try {
+                    read(selector, sent, waiting, joined);
+                } catch (IOException e) {
+                    System.err.println("Reader failed: " + e);
+                }
+            });
+        }
+        joined.await();
+        System.out.printf("%d players joined in %.1fs%n", players, (System.nanoTime() - connectStart) / 1e9);
+
+        // Pace guesses at the given rate; a skipped turn means the picked player was still waiting
+        SplittableRandom random = new SplittableRandom(7);
+        int[] guesses = new int[players];
+        long interval = 1_000_000_000L / rate;
+        long begin = System.nanoTime();
+        long warm = begin + WARMUP_SECONDS * 1_000_000_000L;
+        long end = warm + seconds * 1_000_000_000L;
+        long next = begin;
+        long total = 0;
+        long skipped = 0;
+        for (long now = begin; now < end; now = System.nanoTime()) {
+            recording = now >= warm;
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            next += interval;
+            int p = random.nextInt(players);
+            if (!waiting.compareAndSet(p, 0, 1)) {
+                skipped++;
+                continue;
+            }
+            long range = bounds;
+            int low = (int) (range >> 32);
+            int high = (int) range;
+            int guess = low >= high ? low : low + random.nextInt(high - low + 1);
+            int n = ++guesses[p];
+            sent.set(p * TRACKED + (n & (TRACKED - 1)), System.nanoTime());
+            write(all[p].channel, guess + "\n");
+            total++;
+        }
+        // Let the last broadcasts arrive
+        Thread.sleep(1000);
+        recording = false;
+
+        long count = latency.count();
+        System.out.printf("players=%d guesses=%d (%.0f/s, %d skipped) deliveries=%d (%.0f/s)%n", players, total,
+                total / ((end - begin) / 1e9), skipped, count, count / (seconds + 1.0));
+        if (count > 0) {
+            System.out.printf("broadcast latency p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                    latency.percentile(50) / 1e6, latency.percentile(99) / 1e6, latency.percentile(99.9) / 1e6,
+                    latency.max() / 1e6);
+        }
+        System.out.printf("sequence gaps=%d lagged=%d%n", gaps.sum(), lagged.sum());
+
+        for (Player player : all) {
+            try {
+                write(player.channel, "Q\n");
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+        Thread.sleep(500);
+        stopping = true;
+        for (Selector selector : selectors) {
+            selector.wakeup();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        for (Player player : all) {
+            player.channel.close();
+        }
+    }
+
+    private static void write(SocketChannel channel, String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    // A selector thread: read whatever arrived and handle each complete line
+    private static void read(Selector selector, AtomicLongArray sent, AtomicIntegerArray waiting,
+                             CountDownLatch joined) throws IOException {
+        int[] starts = new int[FIELDS];
+        while (!stopping) {
+            selector.select();
+            long now = System.nanoTime();
+            for (SelectionKey key : selector.selectedKeys()) {
+                Player player = (Player) key.attachment();
+                ByteBuffer in = player.in;
+                if (player.channel.read(in) < 0) {
+                    key.cancel();
+                    continue;
+                }
+                byte[] bytes = in.array();
+                int start = 0;
+                for (int i = 0; i < in.position(); i++) {
+                    if (bytes[i] == '\n') {
+                        line(player, bytes, start, i, starts, now, sent, waiting, joined);
+                        start = i + 1;
+                    }
+                }
+                // Keep the unfinished line for the next read
+                in.limit(in.position()).position(start);
+                in.compact();
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+
+    private static void line(Player player, byte[] bytes, int from, int to, int[] starts, long now,
+                             AtomicLongArray sent, AtomicIntegerArray waiting, CountDownLatch joined) {
+        int fields = 0;
+        starts[fields++] = from;
+        for (int i = from; i < to && fields < FIELDS; i++) {
+            if (bytes[i] == ' ') {
+                starts[fields++] = i + 1;
+            }
+        }
+        byte first = bytes[from];
+        boolean race = first == 'R' && bytes[from + 1] == 'A';
+        if (first == 'J') {
+            // JOINED <race> <min> <max> <players>
+            if (player.index == 0) {
+                bounds = pack(number(bytes, starts[2]), number(bytes, starts[3]));
+            }
+            joined.countDown();
+            return;
+        }
+        if (first == 'L' && bytes[from + 1] == 'A') {
+            lagged.increment();
+            return;
+        }
+        if (first != 'G' && first != 'W' && !race) {
+            return;
+        }
+
+        long seq = number(bytes, starts[1]);
+        if (player.expected >= 0 && seq != player.expected) {
+            gaps.increment();
+        }
+        player.expected = seq + 1;
+        if (race) {
+            // RACE <seq> <race> <min> <max>
+            if (player.index == 0) {
+                bounds = pack(number(bytes, starts[3]), number(bytes, starts[4]));
+            }
+            return;
+        }
+
+        // GUESS <seq> <n> <guess> LOW|HIGH <band> r<i>, or WON <seq> <n> <guess> r<i>
+        int n = number(bytes, starts[2]);
+        int value = number(bytes, starts[3]);
+        int guesser = number(bytes, starts[fields - 1] + 1);
+        if (recording) {
+            latency.record(now - sent.get(guesser * TRACKED + (n & (TRACKED - 1))));
+        }
+        if (guesser == player.index) {
+            waiting.set(guesser, 0);
+        }
+        if (player.index == 0 && first == 'G') {
+            // Narrow the race for the next guesses; LOW means the secret is higher
+            long range = bounds;
+            int low = (int) (range >> 32);
+            int high = (int) range;
+            if (bytes[starts[4]] == 'L') {
+                low = Math.max(low, value + 1);
+            } else {
+                high = Math.min(high, value - 1);
+            }
+            bounds = pack(low, high);
+        }
+    }
+
+    // Decimal number starting at this offset, ending at the first non-digit
+    private static int number(byte[] bytes, int at) {
+        boolean negative = bytes[at] == '-';
+        int value = 0;
+        for (int i = negative ? at + 1 : at; i < bytes.length && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static long pack(int low, int high) {
+        return (long) low << 32 | (high & 0xFFFFFFFFL);
+    }
+}
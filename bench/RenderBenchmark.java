@@ -0,0 +1,112 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Compares one typical guessing turn written the old way (String concatenation
+// and a println per line on an autoflushing PrintStream) with the Renderer path.
+//
+//   java -cp out RenderBenchmark [results.json]
+//
+// Besides time and allocation, reports how many writes reach the underlying
+// stream per turn, which is the number of write syscalls on a real terminal.
+public class RenderBenchmark {
+    private static final String RESET = "\u001B[0m";
+    private static final String RED = "\u001B[31m";
+    private static final String YELLOW = "\u001B[33m";
+    private static final String BLUE = "\u001B[34m";
+    private static final String BOLD = "\u001B[1m";
+
+    private static final byte[] TOO_LOW = Renderer.utf8("📈 Too low!");
+    private static final byte[] TOO_HIGH = Renderer.utf8("📉 Too high!");
+    private static final byte[] WARM = Renderer.utf8("  🌡️ Getting warm!");
+    private static final byte[] ATTEMPT = Renderer.utf8("Attempt ");
+    private static final byte[] SLASH = Renderer.utf8("/");
+    private static final byte[] HINTS_OPEN = Renderer.utf8(" [");
+    private static final byte[] HINTS_LEFT = Renderer.utf8(" hints left]: ");
+
+    // Counts writes that reach the "device"
+    private static class CountingStream extends OutputStream {
+        long writes;
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            writes++;
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            bytes += len;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromProperties();
+
+        CountingStream printDevice = new CountingStream();
+        PrintStream print = new PrintStream(printDevice, true, StandardCharsets.UTF_8);
+        int[] turn = {0};
+        bench.run("turn.println", () -> {
+            int attempts = turn[0]++ & 7;
+            printTurn(print, attempts);
+            return attempts;
+        });
+
+        CountingStream rendererDevice = new CountingStream();
+        Renderer renderer = new Renderer(rendererDevice, true);
+        bench.run("turn.renderer", () -> {
+            int attempts = turn[0]++ & 7;
+            renderTurn(renderer, attempts);
+            return attempts;
+        });
+
+        CountingStream plainDevice = new CountingStream();
+        Renderer plain = new Renderer(plainDevice, false);
+        bench.run("turn.renderer.noColor", () -> {
+            int attempts = turn[0]++ & 7;
+            renderTurn(plain, attempts);
+            return attempts;
+        });
+
+        // Writes and bytes per turn, from a fixed number of turns
+        report("println", print, printDevice, false);
+        report("renderer", renderer, rendererDevice, true);
+        report("renderer.noColor", plain, plainDevice, true);
+
+        bench.write(Path.of(args.length > 0 ? args[0] : "bench-results-render.json"));
+    }
+
+    private static void printTurn(PrintStream out, int attempts) {
+        out.println(BLUE + "📈 Too low!" + RESET);
+        out.println(YELLOW + "  🌡️ Getting warm!" + RESET);
+        out.print(YELLOW + BOLD + "Attempt " + (attempts + 1) + "/" + 15 +
+                " [" + 2 + " hints left]: " + RESET);
+    }
+
+    private static void renderTurn(Renderer out, int attempts) {
+        out.color(Renderer.BLUE).text((attempts & 1) == 0 ? TOO_LOW : TOO_HIGH).color(Renderer.RESET).newline();
+        out.color(Renderer.YELLOW).text(WARM).color(Renderer.RESET).newline();
+        out.color(Renderer.YELLOW).color(Renderer.BOLD)
+                .text(ATTEMPT).num(attempts + 1).text(SLASH).num(15)
+                .text(HINTS_OPEN).num(2).text(HINTS_LEFT).color(Renderer.RESET);
+        out.flush();
+    }
+
+    private static void report(String name, Object target, CountingStream device, boolean renderer) {
+        int turns = 100_000;
+        device.writes = 0;
+        device.bytes = 0;
+        for (int i = 0; i < turns; i++) {
+            if (renderer) {
+                renderTurn((Renderer) target, i & 7);
+            } else {
+                printTurn((PrintStream) target, i & 7);
+            }
+        }
+        System.err.printf("%-20s %6.2f writes/turn %8.1f bytes/turn%n",
+                name, (double) device.writes / turns, (double) device.bytes / turns);
+    }
+}
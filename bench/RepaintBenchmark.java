@@ -0,0 +1,459 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Bytes sent per screen transition with full clear-and-redraw screens versus
+// a Terminal repainting only what changed.
+//
+//   java -cp out RepaintBenchmark [rows] [columns] [sessions]
+//
+// Plays a scripted console session (welcome, menu, two rounds, statistics,
+// goodbye) built from the same Screens bytes the console sends, once as the
+// console writes it and once through a Terminal, and counts the bytes each
+// sends between one read of input and the next. Both streams, plus the
+// echoed input, are fed to a small VT100 emulator, and the screens are
+// checked to match cell for cell at every step. Then it times whole sessions.
+public class RepaintBenchmark {
+    private static final String RESET = "\u001B[0m";
+    private static final String RED = "\u001B[31m";
+    private static final String GREEN = "\u001B[32m";
+    private static final String YELLOW = "\u001B[33m";
+    private static final String BLUE = "\u001B[34m";
+    private static final String PURPLE = "\u001B[35m";
+    private static final String CYAN = "\u001B[36m";
+    private static final String BOLD = "\u001B[1m";
+
+    private static final class Counting extends OutputStream {
+        final OutputStream out;
+        long bytes;
+
+        Counting(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            bytes++;
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            bytes += len;
+            out.write(b, off, len);
+        }
+    }
+
+    // The console's output going both ways at once
+    private static final class Tee extends OutputStream {
+        final OutputStream a;
+        final OutputStream b;
+
+        Tee(OutputStream a, OutputStream b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            a.write(c);
+            b.write(c);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            a.write(bytes, off, len);
+            b.write(bytes, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            a.flush();
+            b.flush();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 80;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        Vt fullScreen = new Vt(rows, columns);
+        Vt diffScreen = new Vt(rows, columns);
+        Counting full = new Counting(fullScreen);
+        Counting diff = new Counting(diffScreen);
+        Terminal terminal = new Terminal(diff, rows, columns);
+        List<String> steps = new ArrayList<>();
+        List<long[]> sent = new ArrayList<>();
+        int[] mismatches = {0};
+
+        Session session = new Session(new Tee(full, terminal), terminal, (label, typed) -> {
+            terminal.settle();
+            steps.add(label);
+            sent.add(new long[] {full.bytes, diff.bytes});
+            full.bytes = 0;
+            diff.bytes = 0;
+            if (!fullScreen.same(diffScreen)) {
+                mismatches[0]++;
+                System.out.println("Screens differ after " + label + ":\n" + fullScreen + "\n---\n" + diffScreen);
+            }
+            // The terminal echoes what the player types onto both screens
+            byte[] echo = (typed + "\n").getBytes(StandardCharsets.UTF_8);
+            fullScreen.write(echo, 0, echo.length);
+            diffScreen.write(echo, 0, echo.length);
+        }, columns);
+        session.play();
+
+        System.out.printf("%dx%d terminal%n", rows, columns);
+        System.out.printf("%-34s %8s %8s %7s%n", "transition", "full", "diff", "saved");
+        long totalFull = 0;
+        long totalDiff = 0;
+        for (int i = 0; i < steps.size(); i++) {
+            long[] bytes = sent.get(i);
+            totalFull += bytes[0];
+            totalDiff += bytes[1];
+            System.out.printf("%-34s %8d %8d %6.1f%%%n", steps.get(i), bytes[0], bytes[1],
+                    100.0 - bytes[1] * 100.0 / bytes[0]);
+        }
+        System.out.printf("%-34s %8d %8d %6.1f%%%n", "session", totalFull, totalDiff,
+                100.0 - totalDiff * 100.0 / totalFull);
+        System.out.println("screen mismatches: " + mismatches[0]);
+
+        // Time: the session through a plain stream versus through a Terminal
+        OutputStream nowhere = OutputStream.nullOutputStream();
+        for (int pass = 0; pass < 2; pass++) {
+            long plain = time(sessions, columns, () -> null, nowhere);
+            long repainted = time(sessions, columns, () -> new Terminal(nowhere, rows, columns), nowhere);
+            System.out.printf("pass %d: %.1f us/session full, %.1f us/session with repaint%n", pass,
+                    plain / 1e3 / sessions, repainted / 1e3 / sessions);
+        }
+    }
+
+    private interface Factory {
+        Terminal make();
+    }
+
+    private static long time(int sessions, int columns, Factory factory, OutputStream nowhere) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            Terminal terminal = factory.make();
+            OutputStream out = terminal != null ? terminal : nowhere;
+            new Session(out, terminal, (label, typed) -> {
+                if (terminal != null) {
+                    terminal.settle();
+                }
+            }, columns).play();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private interface Input {
+        void read(String label, String typed) throws IOException;
+    }
+
+    // The screens of a short game, in the order the console shows them
+    private static final class Session {
+        final Renderer screen;
+        final PrintStream print;
+        final Screens screens;
+        final Terminal terminal;
+        final Input input;
+
+        Session(OutputStream out, Terminal terminal, Input input, int columns) {
+            this.screen = new Renderer(out, true);
+            this.print = new PrintStream(out, true, StandardCharsets.UTF_8);
+            this.screens = Screens.of(true, columns);
+            this.terminal = terminal;
+            this.input = input;
+        }
+
+        void play() throws IOException {
+            screen.text(screens.welcome).flush();
+            type("welcome", "");
+
+            menu(0, 0, 0, 0);
+            type("welcome -> menu", "2");
+            round("menu -> MEDIUM round", new int[] {50, 25, 37, 31, 34}, 33);
+            returnPrompt();
+            type("round over -> return prompt", "Y");
+
+            menu(1, 133, 6, 6);
+            type("return -> menu (1 game)", "6");
+            statistics(1, 133, 6);
+            type("menu -> statistics", "");
+            returnPrompt();
+            type("statistics -> return prompt", "Y");
+
+            menu(1, 133, 6, 6);
+            type("return -> menu (same)", "2");
+            round("menu -> MEDIUM round", new int[] {50, 75, 62}, 62);
+            returnPrompt();
+            type("round over -> return prompt", "Y");
+
+            menu(2, 293, 9, 3);
+            type("return -> menu (2 games)", "2");
+            menu(3, 400, 13, 3);
+            type("menu -> menu (synthetic)", "8");
+            goodbye(3, 400, 13);
+            type("goodbye", "");
+        }
+
+        private void type(String label, String typed) throws IOException {
+            if (terminal != null) {
+                // Reading through the terminal is what sends a held screen and notes the echo
+                InputStream in = terminal.input(new ByteArrayInputStream((typed + "\n").getBytes(
+                        StandardCharsets.UTF_8)));
+                in.read(new byte[64]);
+            }
+            input.read(label, typed);
+        }
+
+        private void menu(long played, long score, long guesses, int best) {
+            screen.text(screens.menuHead)
+                    .text("  Games Played: ").num(played).newline()
+                    .text("  Total Score: ").num(score).text(" points").newline();
+            if (played > 0) {
+                screen.text("  Average Guesses: ").oneDecimal((double) guesses / played).newline()
+                        .text("  Best Game: ").num(best).text(" guesses").newline();
+            }
+            screen.text(screens.menuTail).flush();
+            if (terminal != null) {
+                terminal.keep();
+            }
+            print.print(YELLOW + BOLD + "Enter choice (1-8): " + RESET);
+        }
+
+        private void round(String label, int[] guesses, int secret) throws IOException {
+            screen.text(screens.banner(Main.Difficulty.MEDIUM));
+            screen.text(CYAN).text("💡 Commands: Type 'H' for hint, 'Q' to quit\n").text(RESET).newline();
+            for (int i = 0; i < guesses.length; i++) {
+                prompt(i + 1);
+                type(i == 0 ? label : "guess", Integer.toString(guesses[i]));
+                if (guesses[i] == secret) {
+                    break;
+                }
+                if (guesses[i] < secret) {
+                    screen.text(BLUE).text("📈 Too low!").text(RESET).newline();
+                } else {
+                    screen.text(RED).text("📉 Too high!").text(RESET).newline();
+                }
+                screen.text(YELLOW).text("  🌡️ Getting warm!").text(RESET).newline();
+            }
+            if (guesses[guesses.length - 1] != secret) {
+                prompt(guesses.length + 1);
+                type("guess", Integer.toString(secret));
+            }
+            screen.newline().text(PURPLE).text("══════════════════════════════════════════════════════════")
+                    .text(RESET).newline();
+            screen.text(GREEN).text(BOLD).text("               🎉 CONGRATULATIONS! 🎉").text(RESET).newline();
+            screen.text(GREEN).text("        You guessed the number ").num(secret).text(" in ")
+                    .num(guesses.length + 1).text(" attempts!").text(RESET).newline();
+            screen.text(PURPLE).text("══════════════════════════════════════════════════════════").text(RESET)
+                    .newline().flush();
+        }
+
+        private void prompt(int attempt) {
+            screen.text(YELLOW).text(BOLD).text("Attempt ").num(attempt).text("/15 [2 hints left]: ")
+                    .text(RESET).flush();
+        }
+
+        private void returnPrompt() {
+            print.print("\n" + CYAN + BOLD + "Return to main menu? (Y/N): " + RESET);
+        }
+
+        // As Main.showStatistics prints it
+        private void statistics(long played, long score, long guesses) {
+            print.print("\033[H\033[2J");
+            print.flush();
+            print.println(CYAN + "╔══════════════════════════════════════════════════════════╗" + RESET);
+            print.println(YELLOW + BOLD + "                  GAME STATISTICS" + RESET);
+            print.println(CYAN + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
+            print.println(YELLOW + BOLD + "📊 OVERALL PERFORMANCE:\n" + RESET);
+            print.println("  Games Played: " + played);
+            print.println("  Total Score: " + score + " points");
+            print.printf("  Average Guesses: %.1f\n", (double) guesses / played);
+            print.printf("  Win Rate: %.1f%% (%d won, %d lost)\n", 100.0, played, 0);
+            print.println("  Best Game: " + guesses + " guesses");
+            print.println("\n" + BLUE + BOLD + "🎚️ BY DIFFICULTY:\n" + RESET);
+            print.printf("  %-7s %d won, %d lost | median %d, p90 %d guesses to win\n", "MEDIUM", played, 0,
+                    guesses, guesses);
+            print.println("\n" + GREEN + BOLD + "🏆 PERFORMANCE RATING:\n" + RESET);
+            print.println(BLUE + "  🥈 EXPERT GUESSER" + RESET);
+            print.println("  Great logical thinking!");
+            print.println("\n" + PURPLE + BOLD + "💡 TIPS FOR IMPROVEMENT:\n" + RESET);
+            print.println("  1. Start with middle of the range");
+            print.println("  2. Use binary search strategy");
+            print.println("  3. Save hints for when you're stuck");
+            print.println("  4. Pay attention to proximity hints");
+            print.print("\n" + CYAN + BOLD + "Press Enter to continue..." + RESET);
+        }
+
+        private void goodbye(long played, long score, long guesses) throws IOException {
+            double average = (double) guesses / played;
+            screen.text(screens.goodbyeHead)
+                    .text("  Games Played: ").num(played).newline()
+                    .text("  Final Score: ").num(score).text(" points").newline()
+                    .text("  Average Guesses per Game: ").oneDecimal(average).newline()
+                    .text(screens.rating(average)).text(screens.goodbyeTail).flush();
+            if (terminal != null) {
+                terminal.close();
+            }
+        }
+    }
+
+    // Just enough of an xterm to see what's on the screen: cursor moves,
+    // clears, colors, the alternate buffer and UTF-8, with characters outside
+    // Terminal's known-width set two columns wide and joiners and variation
+    // selectors none
+    private static final class Vt extends OutputStream {
+        final int rows;
+        final int columns;
+        final String[][] normal;
+        String[][] cells;
+        int row;
+        int column;
+        String attributes = "";
+        private int[] saved; // cursor saved on entering the alternate buffer
+        private String savedAttributes;
+        private final StringBuilder escape = new StringBuilder();
+        private int pending; // UTF-8 continuation bytes still to come
+        private int codePoint;
+
+        Vt(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+            this.normal = new String[rows][columns];
+            this.cells = normal;
+        }
+
+        @Override
+        public void write(int b) {
+            b &= 0xFF;
+            if (escape.length() > 0) {
+                escape.append((char) b);
+                if (escape.length() > 2 && b >= 0x40 && b <= 0x7E) {
+                    control(escape.toString());
+                    escape.setLength(0);
+                }
+                return;
+            }
+            if (pending > 0) {
+                codePoint = (codePoint << 6) | (b & 0x3F);
+                if (--pending == 0) {
+                    put(codePoint);
+                }
+                return;
+            }
+            if (b == 0x1B) {
+                escape.append((char) b);
+            } else if (b == '\n') {
+                lineFeed();
+                column = 0;
+            } else if (b >= 0xC0) {
+                pending = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : 1;
+                codePoint = b & (0x3F >> pending);
+            } else {
+                put(b);
+            }
+        }
+
+        private void put(int cp) {
+            if (cp == 0xFE0F || cp == 0x200D) {
+                return;
+            }
+            byte[] bytes = new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8);
+            int width = Terminal.width(bytes, 0, bytes.length, false) == 1 ? 1 : 2;
+            if (column + width > columns) {
+                lineFeed();
+                column = 0;
+            }
+            cells[row][column] = attributes + "|" + new String(Character.toChars(cp));
+            if (width == 2) {
+                cells[row][column + 1] = attributes + "|";
+            }
+            column += width;
+        }
+
+        private void lineFeed() {
+            if (row + 1 < rows) {
+                row++;
+                return;
+            }
+            System.arraycopy(cells, 1, cells, 0, rows - 1);
+            cells[rows - 1] = new String[columns];
+        }
+
+        private void control(String code) {
+            char command = code.charAt(code.length() - 1);
+            String parameters = code.substring(2, code.length() - 1);
+            switch (command) {
+                case 'H': {
+                    String[] at = parameters.isEmpty() ? new String[0] : parameters.split(";");
+                    row = at.length > 0 ? Integer.parseInt(at[0]) - 1 : 0;
+                    column = at.length > 1 ? Integer.parseInt(at[1]) - 1 : 0;
+                    break;
+                }
+                case 'J':
+                    if (parameters.equals("2")) {
+                        for (String[] line : cells) {
+                            Arrays.fill(line, null);
+                        }
+                    } else {
+                        Arrays.fill(cells[row], column, columns, null);
+                        for (int r = row + 1; r < rows; r++) {
+                            Arrays.fill(cells[r], null);
+                        }
+                    }
+                    break;
+                case 'K':
+                    Arrays.fill(cells[row], Math.min(column, columns), columns, null);
+                    break;
+                case 'm':
+                    attributes = parameters.isEmpty() || parameters.equals("0") ? "" : attributes + code;
+                    break;
+                case 'h':
+                    if (parameters.equals("?1049") && cells == normal) {
+                        saved = new int[] {row, column};
+                        savedAttributes = attributes;
+                        cells = new String[rows][columns];
+                        break;
+                    }
+                    throw new IllegalStateException("Unexpected escape code " + code.substring(1));
+                case 'l':
+                    if (parameters.equals("?1049") && cells != normal) {
+                        cells = normal;
+                        row = saved[0];
+                        column = saved[1];
+                        attributes = savedAttributes;
+                        break;
+                    }
+                    throw new IllegalStateException("Unexpected escape code " + code.substring(1));
+                default:
+                    throw new IllegalStateException("Unexpected escape code " + code.substring(1));
+            }
+        }
+
+        boolean same(Vt other) {
+            return row == other.row && column == other.column && attributes.equals(other.attributes)
+                    && Arrays.deepEquals(cells, other.cells);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (String[] line : cells) {
+                for (String cell : line) {
+                    text.append(cell == null ? " " : cell.substring(cell.indexOf('|') + 1));
+                }
+                text.append('\n');
+            }
+            return text.toString();
+        }
+    }
+}
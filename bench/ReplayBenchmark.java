@@ -0,0 +1,93 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.random.RandomGenerator;
+
+// Builds a corpus of recorded rounds and replays it with Playback.
+//
+// Bots play real GameSessions with streams from Rng, exactly as the console
+// does, mixing preset and custom ranges, hints, invalid lines and quits, and
+// every round is recorded. The corpus is then replayed several times; every
+// pass must come back with zero mismatches.
+//
+//   java -cp out ReplayBenchmark [rounds] [file] [passes]
+public class ReplayBenchmark {
+    private static final Main.Difficulty[] PRESETS = {
+            Main.Difficulty.EASY, Main.Difficulty.MEDIUM, Main.Difficulty.HARD};
+
+    public static void main(String[] args) throws Exception {
+        long rounds = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        Path file = args.length > 1 ? Path.of(args[1]) : Files.createTempFile("rounds", ".rec");
+        int passes = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Files.deleteIfExists(file);
+
+        Rng rng = new Rng(2024);
+        RandomGenerator bot = new Rng(7).session(0);
+        long start = System.nanoTime();
+        try (RoundRecording recording = RoundRecording.open(file)) {
+            for (long i = 0; i < rounds; i++) {
+                long seed = rng.nextSeed();
+                recording.begin(seed);
+                RandomGenerator random = Rng.stream(seed);
+                GameSession session;
+                Main.Difficulty difficulty;
+                if (i % 4 == 3) {
+                    difficulty = Main.Difficulty.CUSTOM;
+                    int min = 1 + bot.nextInt(500);
+                    int max = min + 1 + bot.nextInt(1000 - min);
+                    int secret = Rng.between(random, min, max);
+                    session = GameConfig.custom(min, max).newSession(secret, random);
+                } else {
+                    difficulty = PRESETS[(int) (i % 4)];
+                    int secret = Rng.between(random, difficulty.min, difficulty.max);
+                    session = GameSession.of(difficulty, secret, random);
+                }
+                play(session, recording, bot);
+                recording.finish(difficulty, session, session.pointsEarned());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("recorded %d rounds, %.1f MB in %.2fs%n", rounds, Files.size(file) / 1e6, seconds);
+
+        for (int pass = 1; pass <= passes; pass++) {
+            Playback.Result result = Playback.replay(file, true);
+            double passSeconds = result.nanos / 1e9;
+            System.out.printf("pass %d: %d rounds, %d inputs in %.3fs: %.0f rounds/s, %d mismatches%n",
+                    pass, result.rounds, result.inputs, passSeconds, result.rounds / passSeconds, result.mismatches);
+            if (result.mismatches != 0 || result.rounds != rounds) {
+                throw new AssertionError("Playback disagreed with the recording");
+            }
+        }
+        Files.delete(file);
+    }
+
+    // A sloppy binary searcher: sometimes asks for hints, mistypes, guesses
+    // off-centre, guesses out of range or gives up
+    private static void play(GameSession session, RoundRecording recording, RandomGenerator bot) {
+        int low = session.getMin();
+        int high = session.getMax();
+        while (!session.isFinished()) {
+            int roll = bot.nextInt(100);
+            if (roll < 5) {
+                recording.input(RoundRecording.HINT, 0);
+                session.requestHint();
+            } else if (roll < 7) {
+                recording.input(RoundRecording.INVALID, 0);
+            } else if (roll < 8) {
+                recording.input(RoundRecording.GUESS, high + 1);
+                session.submitGuess(high + 1);
+            } else if (roll < 9) {
+                recording.input(RoundRecording.QUIT, 0);
+                session.cancel();
+            } else {
+                int guess = low + (high - low) / (roll < 50 ? 2 : 3);
+                recording.input(RoundRecording.GUESS, guess);
+                GameSession.Outcome outcome = session.submitGuess(guess);
+                if (outcome == GameSession.Outcome.TOO_LOW) {
+                    low = guess + 1;
+                } else if (outcome == GameSession.Outcome.TOO_HIGH) {
+                    high = guess - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+// Secret generation and hint selection under concurrency, at 1, 8 and 64
+// threads (or the counts given). One op is what a round draws: a secret
+// plus two hint picks.
+//
+//   shared Random   the old path: one static Random for secrets and a
+//                   fresh new Random() for every hint
+//   Rng sessions    one SplittableRandom per session from Rng.next()
+//   ThreadLocal     ThreadLocalRandom, as a floor (not reproducible)
+//
+//   java -cp out RngBenchmark [opsPerThread] [threads...]
+public class RngBenchmark {
+    private static final int HINTS = GameSession.Hint.values().length;
+    private static final Main.Difficulty DIFFICULTY = Main.Difficulty.MEDIUM;
+
+    private static final Random shared = new Random();
+
+    private interface Round {
+        int draw();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int[] threadCounts = {1, 8, 64};
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Rng rng = new Rng(42);
+        Round legacy = () -> Rng.between(shared, DIFFICULTY.min, DIFFICULTY.max)
+                + new Random().nextInt(HINTS) + new Random().nextInt(HINTS);
+        Round sessions = () -> {
+            RandomGenerator random = rng.next();
+            return Rng.between(random, DIFFICULTY.min, DIFFICULTY.max)
+                    + random.nextInt(HINTS) + random.nextInt(HINTS);
+        };
+        Round threadLocal = () -> {
+            RandomGenerator random = ThreadLocalRandom.current();
+            return Rng.between(random, DIFFICULTY.min, DIFFICULTY.max)
+                    + random.nextInt(HINTS) + random.nextInt(HINTS);
+        };
+
+        System.out.printf("%8s %18s %18s %18s %8s%n",
+                "threads", "shared Random/s", "Rng sessions/s", "ThreadLocal/s", "ratio");
+        for (int threads : threadCounts) {
+            // Untimed pass first so every path is compiled
+            run(threads, ops / 10, legacy);
+            run(threads, ops / 10, sessions);
+            run(threads, ops / 10, threadLocal);
+
+            double old = run(threads, ops, legacy);
+            double split = run(threads, ops, sessions);
+            double local = run(threads, ops, threadLocal);
+            System.out.printf("%8d %18.0f %18.0f %18.0f %7.2fx%n", threads, old, split, local, split / old);
+        }
+    }
+
+    // Returns rounds per second across all threads
+    private static double run(int threads, int ops, Round round) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    sum += round.draw();
+                }
+                Bench.sink = sum;
+            });
+            workers[t].start();
+        }
+        start.await();
+        long begin = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (double) threads * ops / (elapsed / 1e9);
+    }
+}
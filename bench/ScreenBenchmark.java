@@ -0,0 +1,158 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Compares showing the main menu and a mode banner the old way (String
+// concatenation and a println per line on an autoflushing PrintStream) with
+// the cached Screens bytes plus spliced-in counters through a Renderer.
+//
+//   java -cp out ScreenBenchmark [results.json]
+//
+// Besides time and allocation, reports writes and bytes per screen reaching
+// the underlying stream.
+public class ScreenBenchmark {
+    private static final String RESET = "\u001B[0m";
+    private static final String RED = "\u001B[31m";
+    private static final String GREEN = "\u001B[32m";
+    private static final String YELLOW = "\u001B[33m";
+    private static final String BLUE = "\u001B[34m";
+    private static final String PURPLE = "\u001B[35m";
+    private static final String CYAN = "\u001B[36m";
+    private static final String BOLD = "\u001B[1m";
+    private static final String ORANGE = "\u001B[38;5;214m";
+
+    private static final byte[] GAMES_PLAYED = Renderer.utf8("  Games Played: ");
+    private static final byte[] TOTAL_SCORE = Renderer.utf8("  Total Score: ");
+    private static final byte[] POINTS = Renderer.utf8(" points");
+    private static final byte[] AVERAGE_GUESSES = Renderer.utf8("  Average Guesses: ");
+    private static final byte[] BEST_GAME = Renderer.utf8("  Best Game: ");
+    private static final byte[] GUESSES = Renderer.utf8(" guesses");
+
+    // Counts writes that reach the "device"
+    private static class CountingStream extends OutputStream {
+        long writes;
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            writes++;
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            bytes += len;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromProperties();
+        Screens screens = Screens.of(true, 80);
+
+        CountingStream printDevice = new CountingStream();
+        PrintStream print = new PrintStream(printDevice, true, StandardCharsets.UTF_8);
+        long[] games = {0};
+        bench.run("menu.println", () -> {
+            long played = ++games[0];
+            printMenu(print, played);
+            return played;
+        });
+        bench.run("banner.println", () -> {
+            printBanner(print);
+            return 0;
+        });
+
+        CountingStream cachedDevice = new CountingStream();
+        Renderer renderer = new Renderer(cachedDevice, true);
+        bench.run("menu.cached", () -> {
+            long played = ++games[0];
+            renderMenu(renderer, screens, played);
+            return played;
+        });
+        bench.run("banner.cached", () -> {
+            renderer.text(screens.banner(Main.Difficulty.MEDIUM)).flush();
+            return 0;
+        });
+
+        report("println", printDevice, () -> printMenu(print, 42));
+        report("cached", cachedDevice, () -> renderMenu(renderer, screens, 42));
+
+        bench.write(Path.of(args.length > 0 ? args[0] : "bench-results-screens.json"));
+    }
+
+    // The menu as showMainMenu used to print it
+    private static void printMenu(PrintStream out, long played) {
+        out.print("\033[H\033[2J");
+        out.flush();
+        out.println(PURPLE + "══════════════════════════════════════════════════════════" + RESET);
+        out.println(CYAN + BOLD + "                     MAIN MENU" + RESET);
+        out.println(PURPLE + "══════════════════════════════════════════════════════════\n" + RESET);
+
+        out.println(YELLOW + BOLD + "📊 CURRENT STATISTICS:\n" + RESET);
+        out.println("  Games Played: " + played);
+        out.println("  Total Score: " + played * 150 + " points");
+        out.printf("  Average Guesses: %.1f\n", 6.25);
+        out.println("  Best Game: " + 3 + " guesses");
+
+        out.println("\n" + GREEN + BOLD + "🎯 SELECT DIFFICULTY:\n" + RESET);
+        out.println("  " + GREEN + "1. Easy Mode (1-50)" + RESET);
+        out.println("     • 10 attempts, 3 hints");
+        out.println("     • Base points: 100\n");
+
+        out.println("  " + BLUE + "2. Medium Mode (1-100)" + RESET);
+        out.println("     • 15 attempts, 2 hints");
+        out.println("     • Base points: 200\n");
+
+        out.println("  " + RED + "3. Hard Mode (1-200)" + RESET);
+        out.println("     • 20 attempts, 1 hint");
+        out.println("     • Base points: 300\n");
+
+        out.println("  " + PURPLE + "4. Custom Range" + RESET);
+        out.println("     • Set your own range (1-1000)");
+        out.println("     • Dynamic attempts & hints\n");
+
+        out.println("  " + ORANGE + "5. Large Range" + RESET);
+        out.println("     • Any bounds, far past 64 bits");
+        out.println("     • Attempts & hints scale with the range\n");
+
+        out.println("  " + CYAN + "6. View Detailed Statistics" + RESET + " 📊\n");
+        out.println("  " + YELLOW + "7. Leaderboard" + RESET + " 🏆\n");
+        out.println("  " + ORANGE + "8. Exit Game" + RESET + " 🚪\n");
+    }
+
+    private static void renderMenu(Renderer out, Screens screens, long played) {
+        out.text(screens.menuHead)
+                .text(GAMES_PLAYED).num(played).newline()
+                .text(TOTAL_SCORE).num(played * 150).text(POINTS).newline()
+                .text(AVERAGE_GUESSES).oneDecimal(6.25).newline()
+                .text(BEST_GAME).num(3).text(GUESSES).newline()
+                .text(screens.menuTail).flush();
+    }
+
+    // The MEDIUM banner as playGame used to print it
+    private static void printBanner(PrintStream out) {
+        Main.Difficulty difficulty = Main.Difficulty.MEDIUM;
+        out.print("\033[H\033[2J");
+        out.flush();
+        out.println(BLUE + BOLD + "╔══════════════════════════════════════════════════════════╗" + RESET);
+        out.println(BLUE + BOLD + "                       MEDIUM MODE" + RESET);
+        out.println(BLUE + BOLD + "╚══════════════════════════════════════════════════════════╝\n" + RESET);
+        out.println(YELLOW + "🎯 I'm thinking of a number between " +
+                difficulty.min + " and " + difficulty.max + RESET);
+        out.println(YELLOW + "📊 You have " + difficulty.maxGuesses +
+                " attempts and " + difficulty.hints + " hint(s)\n" + RESET);
+    }
+
+    private static void report(String name, CountingStream device, Runnable menu) {
+        int screens = 100_000;
+        device.writes = 0;
+        device.bytes = 0;
+        for (int i = 0; i < screens; i++) {
+            menu.run();
+        }
+        System.err.printf("menu.%-15s %6.2f writes/screen %8.1f bytes/screen%n",
+                name, (double) device.writes / screens, (double) device.bytes / screens);
+    }
+}
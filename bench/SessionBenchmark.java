@@ -0,0 +1,111 @@
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+// Throughput of headless GameSession rounds played by a binary-search bot.
+//
+//   javac -d out *.java bench/*.java
+//   java -cp out SessionBenchmark [threads] [seconds] [liveSessions]
+public class SessionBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int liveSessions = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+
+        interleaved(liveSessions);
+
+        // Warm up, then measure
+        run(threads, 1);
+        LongAdder rounds = run(threads, seconds);
+
+        double perSecond = rounds.sum() / (double) seconds;
+        System.out.printf("threads=%d rounds=%d sessions/s=%.0f sessions/s/core=%.0f%n",
+                threads, rounds.sum(), perSecond, perSecond / threads);
+    }
+
+    // Keep many sessions open at once and advance each by one guess per pass
+    private static void interleaved(int count) {
+        Random random = new Random(42);
+        GameSession[] sessions = new GameSession[count];
+        int[] low = new int[count];
+        int[] high = new int[count];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Main.Difficulty difficulty = Main.Difficulty.values()[i % 3];
+            int secret = random.nextInt(difficulty.max - difficulty.min + 1) + difficulty.min;
+            sessions[i] = GameSession.of(difficulty, secret, new Random(i));
+            low[i] = difficulty.min;
+            high[i] = difficulty.max;
+        }
+
+        int open = count;
+        while (open > 0) {
+            open = 0;
+            for (int i = 0; i < count; i++) {
+                GameSession session = sessions[i];
+                if (session.isFinished()) {
+                    continue;
+                }
+                int guess = (low[i] + high[i]) >>> 1;
+                GameSession.Outcome outcome = session.submitGuess(guess);
+                if (outcome == GameSession.Outcome.TOO_LOW) {
+                    low[i] = guess + 1;
+                } else if (outcome == GameSession.Outcome.TOO_HIGH) {
+                    high[i] = guess - 1;
+                }
+                if (!session.isFinished()) {
+                    open++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("interleaved: %d concurrent sessions finished in %.1f ms%n", count, elapsed / 1e6);
+    }
+
+    private static LongAdder run(int threads, int seconds) throws InterruptedException {
+        LongAdder rounds = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                long played = 0;
+                long checksum = 0;
+                while ((played & 1023) != 0 || System.nanoTime() < deadline) {
+                    checksum += playOne(random);
+                    played++;
+                }
+                rounds.add(played);
+                if (checksum == 42) {
+                    System.out.print("");
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return rounds;
+    }
+
+    private static int playOne(Random random) {
+        Main.Difficulty difficulty = Main.Difficulty.MEDIUM;
+        int secret = random.nextInt(difficulty.max - difficulty.min + 1) + difficulty.min;
+        GameSession session = GameSession.of(difficulty, secret, random);
+        int low = difficulty.min;
+        int high = difficulty.max;
+
+        while (!session.isFinished()) {
+            int guess = (low + high) >>> 1;
+            GameSession.Outcome outcome = session.submitGuess(guess);
+            if (outcome == GameSession.Outcome.TOO_LOW) {
+                low = guess + 1;
+            } else if (outcome == GameSession.Outcome.TOO_HIGH) {
+                high = guess - 1;
+            }
+        }
+        return session.pointsEarned();
+    }
+}
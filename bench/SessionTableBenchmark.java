@@ -0,0 +1,198 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+// Parks millions of rounds in a SessionTable, plays random turns on them,
+// evicts them, and compares the heap they take and the collector's work
+// against keeping the same rounds as live GameSession objects.
+//
+// Every resumed round is checked against a GameSession that was played
+// alongside it, so the table must give back exactly the game it was handed.
+//
+//   java -Xmx4g -cp out SessionTableBenchmark [sessions] [turns]
+public class SessionTableBenchmark {
+    private static final Main.Difficulty[] PRESETS = {
+            Main.Difficulty.EASY, Main.Difficulty.MEDIUM, Main.Difficulty.HARD};
+
+    public static void main(String[] args) {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : 10_000_000;
+        int turns = args.length > 1 ? Integer.parseInt(args[1].replace("_", "")) : 10_000_000;
+        Rng rng = new Rng(15);
+
+        check(rng, 100_000);
+
+        // Compact table; the ids are the callers' to keep, so they aren't counted
+        long[] ids = new long[sessions];
+        long before = usedHeap();
+        long gcBefore = gcCount();
+        long gcTimeBefore = gcMillis();
+        long start = System.nanoTime();
+        SessionTable table = new SessionTable(sessions);
+        for (int i = 0; i < sessions; i++) {
+            long seed = rng.seedOf(i);
+            Main.Difficulty difficulty = PRESETS[i % 3];
+            RandomGenerator random = Rng.stream(seed);
+            GameSession session = GameSession.of(difficulty, Rng.between(random, difficulty.min, difficulty.max), random);
+            ids[i] = table.park(difficulty, seed, session);
+        }
+        double fill = (System.nanoTime() - start) / 1e9;
+        long collections = gcCount() - gcBefore;
+        long millis = gcMillis() - gcTimeBefore;
+        long tableBytes = usedHeap() - before;
+        report("SessionTable", sessions, fill, tableBytes, collections, millis);
+        System.out.printf("%-14s %d bytes/session by layout%n", "", SessionTable.BYTES_PER_SESSION);
+
+        // Random turns: resume, guess, store
+        SplittableRandom pick = new SplittableRandom(1);
+        gcBefore = gcCount();
+        gcTimeBefore = gcMillis();
+        start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < turns; i++) {
+            long id = ids[pick.nextInt(sessions)];
+            GameSession session = table.resume(id);
+            if (session == null) {
+                continue;
+            }
+            if (session.isFinished()) {
+                table.remove(id);
+                continue;
+            }
+            session.submitGuess(session.getMin() + pick.nextInt(session.getMax() - session.getMin() + 1));
+            table.store(id, session);
+            sum += session.getAttempts();
+        }
+        Bench.sink = sum;
+        double played = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-14s %d turns in %.2fs: %.0f turns/s, %d collections, %d ms in GC, %d still parked%n",
+                "  play", turns, played, turns / played, gcCount() - gcBefore, gcMillis() - gcTimeBefore, table.size());
+
+        start = System.nanoTime();
+        int evicted = table.evictIdle(-1_000);
+        System.out.printf("%-14s %d evicted in %.3fs, %d left%n",
+                "  evict", evicted, (System.nanoTime() - start) / 1e9, table.size());
+        Bench.sink = ids.length + table.capacity();
+        table = null;
+        ids = null;
+
+        // The same rounds as objects
+        before = usedHeap();
+        gcBefore = gcCount();
+        gcTimeBefore = gcMillis();
+        start = System.nanoTime();
+        GameSession[] objects = new GameSession[sessions];
+        for (int i = 0; i < sessions; i++) {
+            Main.Difficulty difficulty = PRESETS[i % 3];
+            RandomGenerator random = Rng.stream(rng.seedOf(i));
+            objects[i] = GameSession.of(difficulty, Rng.between(random, difficulty.min, difficulty.max), random);
+        }
+        fill = (System.nanoTime() - start) / 1e9;
+        collections = gcCount() - gcBefore;
+        millis = gcMillis() - gcTimeBefore;
+        long objectBytes = usedHeap() - before;
+        report("GameSession[]", sessions, fill, objectBytes, collections, millis);
+        Bench.sink = objects.length;
+        System.out.printf("%.1fx smaller%n", (double) objectBytes / tableBytes);
+    }
+
+    private static void report(String name, int sessions, double seconds, long bytes, long collections, long millis) {
+        System.out.printf("%-14s %d parked in %.2fs: %.1f MB, %.1f bytes/session, %d collections, %d ms in GC%n",
+                name, sessions, seconds, bytes / 1e6, (double) bytes / sessions, collections, millis);
+    }
+
+    // Play rounds directly and through the table side by side; they must agree turn for turn
+    private static void check(Rng rng, int rounds) {
+        SessionTable table = new SessionTable(rounds);
+        GameSession[] direct = new GameSession[rounds];
+        long[] ids = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long seed = rng.seedOf(i);
+            Main.Difficulty difficulty = i % 4 == 3 ? Main.Difficulty.CUSTOM : PRESETS[i % 4];
+            RandomGenerator random = Rng.stream(seed);
+            if (difficulty == Main.Difficulty.CUSTOM) {
+                int min = -500 + i % 700;
+                int max = min + 10 + i % 5000;
+                direct[i] = GameConfig.custom(min, max).newSession(Rng.between(random, min, max), random);
+            } else {
+                direct[i] = GameSession.of(difficulty, Rng.between(random, difficulty.min, difficulty.max), random);
+            }
+            ids[i] = table.park(difficulty, seed, direct[i]);
+        }
+
+        SplittableRandom pick = new SplittableRandom(2);
+        for (int turn = 0; turn < rounds * 20; turn++) {
+            int i = pick.nextInt(rounds);
+            GameSession parked = table.resume(ids[i]);
+            if (direct[i].isFinished()) {
+                if (parked != null) {
+                    throw new AssertionError("Finished round " + i + " is still parked");
+                }
+                continue;
+            }
+            if (parked.getSecret() != direct[i].getSecret() || parked.getAttempts() != direct[i].getAttempts()) {
+                throw new AssertionError("Round " + i + " came back different");
+            }
+            if (pick.nextInt(5) == 0) {
+                GameSession.Hint expected = direct[i].requestHint();
+                if (parked.requestHint() != expected) {
+                    throw new AssertionError("Round " + i + " gave a different hint");
+                }
+                if (expected != null && !parked.describe(expected).equals(direct[i].describe(expected))) {
+                    throw new AssertionError("Round " + i + " described a hint differently");
+                }
+            } else {
+                int guess = direct[i].getMin() - 1 + pick.nextInt(direct[i].getMax() - direct[i].getMin() + 3);
+                if (parked.submitGuess(guess) != direct[i].submitGuess(guess)) {
+                    throw new AssertionError("Round " + i + " answered a guess differently");
+                }
+            }
+            if (parked.pointsEarned() != direct[i].pointsEarned()) {
+                throw new AssertionError("Round " + i + " scored differently");
+            }
+            if (direct[i].isFinished()) {
+                table.remove(ids[i]);
+            } else {
+                table.store(ids[i], parked);
+            }
+        }
+
+        // Freed slots are reused, and old ids to them are refused
+        long stale = -1;
+        for (int i = 0; i < rounds && stale < 0; i++) {
+            if (direct[i].isFinished()) {
+                stale = ids[i];
+            }
+        }
+        long reused = table.park(Main.Difficulty.EASY, 0, GameSession.of(Main.Difficulty.EASY, 1, Rng.stream(0)));
+        if (stale >= 0 && (table.resume(stale) != null || table.remove(stale))) {
+            throw new AssertionError("A stale id still worked");
+        }
+        Bench.sink = reused;
+        System.out.printf("check: %d rounds, %d turns matched, %d still parked%n", rounds, rounds * 20, table.size());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+}
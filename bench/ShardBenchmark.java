@@ -0,0 +1,232 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Throughput of a sharded deployment as shards are added, all on this machine
+// over loopback.
+//
+//   java -cp out ShardBenchmark [players] [seconds] [basePort] [shardCounts...]
+//
+// For each shard count (default 1 2 4) it starts that many GameServer
+// processes and as many routers, each router fronting every shard, then
+// spreads named binary-search players over the routers and counts guesses
+// answered per second. Afterwards it checks the totals a router's STATS
+// reports against the sum of each shard's own and the rounds the players
+// finished. It also reports how evenly the HashRing spreads a million ids and
+// how many change shard when one is added.
+//
+// Every process shares the machine's cores, so scaling stops at whatever the
+// clients, routers and shards together can use.
+public class ShardBenchmark {
+    private static final int WARMUP_SECONDS = 2;
+    private static final int ROUTER_OFFSET = 100;
+
+    private static volatile boolean recording;
+    private static volatile boolean stopping;
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int basePort = args.length > 2 ? Integer.parseInt(args[2]) : 7700;
+        int[] counts = {1, 2, 4};
+        if (args.length > 3) {
+            counts = new int[args.length - 3];
+            for (int i = 3; i < args.length; i++) {
+                counts[i - 3] = Integer.parseInt(args[i]);
+            }
+        }
+
+        ringBalance(8, 1_000_000);
+
+        System.out.printf("%d players, %ds per run, %d cores%n", players, seconds,
+                Runtime.getRuntime().availableProcessors());
+        double base = 0;
+        for (int shards : counts) {
+            double rate = run(shards, players, seconds, basePort);
+            if (base == 0) {
+                base = rate / shards;
+            }
+            System.out.printf("shards=%d guesses/s=%.0f scaling=%.2fx of linear%n", shards, rate,
+                    rate / (base * shards));
+        }
+    }
+
+    // Share of ids per shard, and ids moved going from n to n + 1 shards
+    private static void ringBalance(int maxShards, int ids) {
+        int[] previous = null;
+        for (int shards = 1; shards <= maxShards; shards++) {
+            HashRing ring = new HashRing(shards);
+            int[] owners = new int[ids];
+            int[] load = new int[shards];
+            for (int i = 0; i < ids; i++) {
+                owners[i] = ring.owner("player-" + i);
+                load[owners[i]]++;
+            }
+            int max = 0;
+            int min = Integer.MAX_VALUE;
+            for (int count : load) {
+                max = Math.max(max, count);
+                min = Math.min(min, count);
+            }
+            double ideal = (double) ids / shards;
+            String moved = "";
+            if (previous != null) {
+                int changed = 0;
+                for (int i = 0; i < ids; i++) {
+                    if (owners[i] != previous[i]) {
+                        changed++;
+                    }
+                }
+                moved = String.format(" moved=%.1f%% (ideal %.1f%%)", changed * 100.0 / ids, 100.0 / shards);
+            }
+            System.out.printf("ring shards=%d min=%.2f max=%.2f of an even share%s%n", shards, min / ideal,
+                    max / ideal, moved);
+            previous = owners;
+        }
+    }
+
+    private static double run(int shards, int players, int seconds, int basePort) throws Exception {
+        List<Process> processes = new ArrayList<>();
+        try {
+            String[] shardPorts = new String[shards];
+            for (int s = 0; s < shards; s++) {
+                shardPorts[s] = Integer.toString(basePort + 1 + s);
+                processes.add(start("--server", shardPorts[s]));
+            }
+            int[] routers = new int[shards];
+            for (int r = 0; r < shards; r++) {
+                routers[r] = basePort + ROUTER_OFFSET + r;
+                String[] command = new String[shards + 2];
+                command[0] = "--router";
+                command[1] = Integer.toString(routers[r]);
+                System.arraycopy(shardPorts, 0, command, 2, shards);
+                processes.add(start(command));
+            }
+
+            LongAdder guesses = new LongAdder();
+            LongAdder rounds = new LongAdder();
+            CountDownLatch done = new CountDownLatch(players);
+            recording = false;
+            stopping = false;
+            for (int p = 0; p < players; p++) {
+                int player = p;
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        play(routers[player % routers.length], "p" + player, guesses, rounds);
+                    } catch (IOException e) {
+                        System.err.println("Player " + player + " failed: " + e.getMessage());
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            Thread.sleep(WARMUP_SECONDS * 1000L);
+            recording = true;
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            long counted = guesses.sum();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            stopping = true;
+            done.await();
+
+            // Let the shards apply the last rounds, then compare what they say with what was played
+            Thread.sleep(500);
+            long played = 0;
+            for (String port : shardPorts) {
+                played += ShardRouter.queryStats(ShardRouter.address(port)).gamesPlayed;
+            }
+            long routed = ShardRouter.queryStats(ShardRouter.address(Integer.toString(routers[0]))).gamesPlayed;
+            if (routed != played || played != rounds.sum()) {
+                System.out.printf("MISMATCH rounds played=%d, shards say %d, router says %d%n", rounds.sum(),
+                        played, routed);
+            }
+            return counted / elapsed;
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+        }
+    }
+
+    // Start Main with these arguments in its own JVM and wait for its first line
+    private static Process start(String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx256m");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Main");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+        String ready = out.readLine();
+        if (ready == null) {
+            throw new IOException("Could not start " + command);
+        }
+        // Keep reading so a chatty process never blocks on a full pipe
+        Thread.ofVirtual().start(() -> {
+            try {
+                while (out.readLine() != null) {
+                    // Discard
+                }
+            } catch (IOException e) {
+                // Process ended
+            }
+        });
+        return process;
+    }
+
+    // Binary-search rounds through a router until told to stop
+    private static void play(int port, String name, LongAdder guesses, LongAdder rounds) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", port));
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+
+            String reply = in.readLine();
+            out.write(("NAME " + name + "\n").getBytes(StandardCharsets.US_ASCII));
+            in.readLine();
+            while (!stopping) {
+                String[] parts = reply.split(" ");
+                int low = Integer.parseInt(parts[1]);
+                int high = Integer.parseInt(parts[2]);
+
+                while (true) {
+                    int guess = (low + high) >>> 1;
+                    out.write((guess + "\n").getBytes(StandardCharsets.US_ASCII));
+                    reply = in.readLine();
+                    if (recording && !stopping) {
+                        guesses.increment();
+                    }
+                    if (reply.startsWith("LOW")) {
+                        low = guess + 1;
+                    } else if (reply.startsWith("HIGH")) {
+                        high = guess - 1;
+                    } else {
+                        // WIN or LOSE, followed by the next ROUND line
+                        rounds.increment();
+                        reply = in.readLine();
+                        break;
+                    }
+                }
+            }
+            out.write("Q\n".getBytes(StandardCharsets.US_ASCII));
+            in.readLine();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Checks the solver's analytic mode against playing secrets for real.
+//
+//   java -cp out SolverCheck [maxExhaustive] [samples]
+//
+// For every range size up to maxExhaustive (default 2000), the analytic
+// distribution of the binary and proximity strategies has to match playing
+// every secret. Then for ranges past int and past 2^32, the widest being
+// 10^10, the analytic mode has to account for every secret, and sampled
+// secrets, including ones further from the first guess than Integer.MAX_VALUE,
+// have to be found within the analytic worst case.
+public class SolverCheck {
+    private static final long[] WIDE = {3_000_000_000L, 5_000_000_000L, 10_000_000_000L};
+
+    public static void main(String[] args) {
+        int maxExhaustive = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Solver.Strategy[] strategies = {Solver.BINARY, Solver.PROXIMITY};
+        long failures = 0;
+
+        for (Solver.Strategy strategy : strategies) {
+            for (long size = 1; size <= maxExhaustive; size++) {
+                long[] analytic = Solver.solve(size, strategy, false).counts;
+                long[] played = new long[Solver.MAX_TRACKED];
+                for (long secret = 0; secret < size; secret++) {
+                    played[Math.min(Solver.play(size, secret, strategy, null), Solver.MAX_TRACKED - 1)]++;
+                }
+                if (!Arrays.equals(analytic, played)) {
+                    System.out.printf("%s, size %d: analytic and played distributions differ%n",
+                            strategy.name(), size);
+                    failures++;
+                }
+            }
+            System.out.printf("%s: sizes 1-%d agree%n", strategy.name(), maxExhaustive);
+        }
+
+        SplittableRandom random = new SplittableRandom(9);
+        for (Solver.Strategy strategy : strategies) {
+            for (long size : WIDE) {
+                Solver.Distribution result = Solver.solve(size, strategy, false);
+                if (result.secrets() != size) {
+                    System.out.printf("%s, size %d: analytic mode counted %d secrets%n",
+                            strategy.name(), size, result.secrets());
+                    failures++;
+                }
+                int worst = result.worst();
+                long[] secrets = new long[samples + 2];
+                secrets[0] = 0;
+                secrets[1] = size - 1;
+                for (int i = 2; i < secrets.length; i++) {
+                    secrets[i] = random.nextLong(size);
+                }
+                for (long secret : secrets) {
+                    int guesses = Solver.play(size, secret, strategy, null);
+                    if (guesses > worst) {
+                        System.out.printf("%s, size %d: secret %d took %d guesses, analytic worst %d%n",
+                                strategy.name(), size, secret, guesses, worst);
+                        failures++;
+                    }
+                }
+                System.out.printf("%s, size %d: %d secrets, worst %d, %d sampled secrets found%n",
+                        strategy.name(), size, result.secrets(), worst, secrets.length);
+            }
+        }
+
+        if (failures != 0) {
+            throw new AssertionError(failures + " solver checks failed");
+        }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.concurrent.CyclicBarrier;
+
+// Multi-threaded stress test for GameStats: every thread records finished
+// rounds as fast as it can, at 1, 2, 4 ... up to the given thread count.
+// The same load is run against a single synchronized lock for comparison,
+// and the totals are checked for lost updates afterwards.
+//
+//   java -cp out StatsBenchmark [maxThreads] [roundsPerThread]
+public class StatsBenchmark {
+    // The obvious alternative: one monitor around the old static fields
+    private static class LockedStats {
+        private long gamesPlayed;
+        private long totalGuesses;
+        private long score;
+        private int bestScore = Integer.MAX_VALUE;
+
+        synchronized void record(boolean won, int attempts, int points) {
+            gamesPlayed++;
+            totalGuesses += attempts;
+            if (won) {
+                score += points;
+                if (attempts < bestScore) {
+                    bestScore = attempts;
+                }
+            }
+        }
+    }
+
+    private interface Recorder {
+        void record(boolean won, int attempts, int points);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        System.out.printf("%8s %16s %16s %8s%n", "threads", "striped rec/s", "locked rec/s", "ratio");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            GameStats stats = new GameStats();
+            LockedStats locked = new LockedStats();
+
+            // Untimed pass first so both paths are compiled
+            run(threads, rounds / 10, striped(new GameStats()));
+            run(threads, rounds / 10, new LockedStats()::record);
+
+            double striped = run(threads, rounds, striped(stats));
+            double lock = run(threads, rounds, locked::record);
+            System.out.printf("%8d %16.0f %16.0f %7.2fx%n", threads, striped, lock, striped / lock);
+
+            GameStats.Snapshot snapshot = stats.snapshot();
+            long expected = (long) threads * rounds;
+            if (snapshot.gamesPlayed != expected || snapshot.wins + snapshot.losses != expected) {
+                throw new AssertionError("Lost updates: " + snapshot.gamesPlayed + " of " + expected);
+            }
+        }
+    }
+
+    private static Recorder striped(GameStats stats) {
+        return (won, attempts, points) -> stats.record(Main.Difficulty.MEDIUM, won, attempts, points);
+    }
+
+    // Returns records per second across all threads
+    private static double run(int threads, int rounds, Recorder recorder) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = 0; i < rounds; i++) {
+                    int attempts = 1 + ((i + seed) & 15);
+                    recorder.record(attempts < 12, attempts, 200 - attempts * 10);
+                }
+            });
+            workers[t].start();
+        }
+        start.await();
+        long begin = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (double) threads * rounds / (elapsed / 1e9);
+    }
+}